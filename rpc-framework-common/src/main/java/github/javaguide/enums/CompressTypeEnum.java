@@ -11,7 +11,13 @@ import lombok.Getter;
 @Getter
 public enum CompressTypeEnum {
 
-    GZIP((byte) 0x01, "gzip");
+    NONE((byte) 0x00, "none"),
+    GZIP((byte) 0x01, "gzip"),
+    LZ4((byte) 0x02, "lz4"),
+    SNAPPY((byte) 0x03, "snappy"),
+    ZSTD((byte) 0x04, "zstd"),
+    // 自适应模式，编码时由 AdaptiveCompressSelector 换成实际使用的压缩方式，不会出现在消息里
+    ADAPTIVE((byte) 0x7f, "adaptive");
 
     private final byte code;
     private final String name;
@@ -25,4 +31,13 @@ public enum CompressTypeEnum {
         return null;
     }
 
+    public static byte getCode(String name) {
+        for (CompressTypeEnum c : CompressTypeEnum.values()) {
+            if (c.getName().equals(name)) {
+                return c.code;
+            }
+        }
+        throw new IllegalArgumentException("Unknown compress type: " + name);
+    }
+
 }
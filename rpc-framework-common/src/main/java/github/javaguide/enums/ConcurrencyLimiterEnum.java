@@ -0,0 +1,21 @@
+package github.javaguide.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 服务端的并发限制方式
+ */
+@AllArgsConstructor
+@Getter
+public enum ConcurrencyLimiterEnum {
+
+    // 不限制
+    UNLIMITED("unlimited"),
+    // 按照估计的排队请求数调整
+    VEGAS("vegas"),
+    // 按照当前和长期平均响应时间的比值调整
+    GRADIENT("gradient");
+
+    private final String name;
+}
@@ -0,0 +1,25 @@
+package github.javaguide.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 服务端执行服务方法的调度方式
+ */
+@AllArgsConstructor
+@Getter
+public enum DispatcherEnum {
+
+    // 直接在 IO 线程里执行，只适合不会阻塞的快速方法
+    DIRECT("direct"),
+    // 共享的 work-stealing 线程池，同一个连接上的请求也并行执行
+    POOL("pool"),
+    // 同一个连接上的请求按照到达的顺序依次执行，不同的连接并行执行
+    ORDERED("ordered"),
+    // 通过无锁的环形缓冲区交给固定的工作线程
+    RING_BUFFER("ringbuffer"),
+    // 每个请求一个虚拟线程，需要 JDK 21+，否则退化为 POOL
+    VIRTUAL("virtual");
+
+    private final String name;
+}
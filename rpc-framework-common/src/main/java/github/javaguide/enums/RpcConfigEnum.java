@@ -8,7 +8,64 @@ import lombok.Getter;
 public enum RpcConfigEnum {
 
     RPC_CONFIG_PATH("rpc.properties"),
-    ZK_ADDRESS("rpc.zookeeper.address");
+    ZK_ADDRESS("rpc.zookeeper.address"),
+    // 客户端发送请求使用的协议版本，默认 1，服务端都支持 v2 之后才能配置为 2；服务端总是按照请求的版本响应
+    PROTOCOL_VERSION("rpc.protocol.version"),
+    // 没有为服务单独指定超时时间时使用的请求超时时间，单位毫秒
+    REQUEST_TIMEOUT("rpc.request.timeout"),
+    // 客户端到每个服务地址最多的连接数
+    CLIENT_MAX_CONNECTIONS("rpc.client.connections"),
+    // 最空闲的连接上未完成的请求达到这个数时建立新的连接
+    CLIENT_CONNECTION_PENDING_THRESHOLD("rpc.client.connection.pending.threshold"),
+    // 连接失败后第一次重连前等待的毫秒数，之后每失败一次翻倍
+    CLIENT_RECONNECT_BACKOFF("rpc.client.reconnect.backoff"),
+    // 重连前最多等待的毫秒数
+    CLIENT_RECONNECT_MAX_BACKOFF("rpc.client.reconnect.max.backoff"),
+    // 客户端所有连接上最多的未完成请求数，小于等于 0 时不限制
+    CLIENT_MAX_INFLIGHT("rpc.client.max.inflight"),
+    // 客户端每个连接上最多的未完成请求数，小于等于 0 时不限制
+    CLIENT_MAX_INFLIGHT_PER_CONNECTION("rpc.client.max.inflight.per.connection"),
+    // 未完成的请求达到上限时同步调用是否等待，不等待时请求直接失败；异步调用从不等待
+    CLIENT_INFLIGHT_BLOCK("rpc.client.inflight.block"),
+    // 没有为服务单独指定调度方式时使用的调度方式，见 DispatcherEnum
+    SERVER_DISPATCHER("rpc.server.dispatcher"),
+    // 调度线程池的线程数
+    SERVER_DISPATCHER_THREADS("rpc.server.dispatcher.threads"),
+    // ringbuffer 调度方式的缓冲区大小
+    SERVER_DISPATCHER_RING_BUFFER_SIZE("rpc.server.dispatcher.ringbuffer.size"),
+    // socket 服务端是否每个连接一个虚拟线程，需要 JDK 21+
+    SOCKET_SERVER_VIRTUAL_THREADS("rpc.server.socket.virtual.threads"),
+    // 服务端的并发限制方式，见 ConcurrencyLimiterEnum
+    SERVER_LIMITER("rpc.server.limiter"),
+    // 并发限制的初始值、最小值和最大值
+    SERVER_LIMITER_INITIAL_LIMIT("rpc.server.limiter.initial"),
+    SERVER_LIMITER_MIN_LIMIT("rpc.server.limiter.min"),
+    SERVER_LIMITER_MAX_LIMIT("rpc.server.limiter.max"),
+    // 连接写缓冲区的低水位和高水位，单位字节
+    WRITE_BUFFER_LOW_WATER_MARK("rpc.write.buffer.low.watermark"),
+    WRITE_BUFFER_HIGH_WATER_MARK("rpc.write.buffer.high.watermark"),
+    // 消息体小于这个字节数时不压缩
+    COMPRESS_THRESHOLD("rpc.compress.threshold"),
+    // 解压后允许的最大字节数，超过时直接拒绝，不按照消息里记录的原始长度分配内存
+    COMPRESS_MAX_DECOMPRESSED_SIZE("rpc.compress.max.decompressed.size"),
+    // 没有为服务单独指定压缩方式时使用的压缩方式
+    COMPRESS_TYPE("rpc.compress.type"),
+    // 自适应压缩模式下参与选择的压缩方式，用逗号分隔
+    COMPRESS_ADAPTIVE_CANDIDATES("rpc.compress.adaptive.candidates"),
+    // 自适应压缩模式下每隔多少条消息试一次不是当前最优的压缩方式
+    COMPRESS_ADAPTIVE_PROBE_INTERVAL("rpc.compress.adaptive.probe.interval"),
+    // 自适应压缩模式估算传输耗时用的网络带宽，单位 MB/s
+    COMPRESS_ADAPTIVE_BANDWIDTH("rpc.compress.adaptive.bandwidth"),
+    // gzip 的压缩级别
+    GZIP_LEVEL("rpc.compress.gzip.level"),
+    // zstd 的压缩级别
+    ZSTD_LEVEL("rpc.compress.zstd.level"),
+    // zstd 字典文件，多个用逗号分隔，第一个用于压缩，全部用于解压
+    ZSTD_DICTIONARIES("rpc.compress.zstd.dictionaries"),
+    // 配置后会把序列化后的消息体保存到这个目录下，作为训练 zstd 字典的样本
+    ZSTD_SAMPLE_DIR("rpc.compress.zstd.sample.dir"),
+    // 最多保存多少个样本
+    ZSTD_SAMPLE_LIMIT("rpc.compress.zstd.sample.limit");
 
     private final String propertyValue;
 
@@ -14,6 +14,11 @@ import lombok.ToString;
 public enum RpcErrorMessageEnum {
     CLIENT_CONNECT_SERVER_FAILURE("客户端连接服务端失败"),
     SERVICE_INVOCATION_FAILURE("服务调用失败"),
+    REQUEST_TIMEOUT("请求超时"),
+    CHANNEL_CLOSED("连接已断开"),
+    TOO_MANY_REQUESTS("未完成的请求太多"),
+    SERVICE_BUSY("服务端繁忙"),
+    SERVICE_OVERLOADED("服务端过载"),
     SERVICE_CAN_NOT_BE_FOUND("没有找到指定的服务"),
     SERVICE_NOT_IMPLEMENT_ANY_INTERFACE("注册的服务没有实现任何接口"),
     REQUEST_NOT_MATCH_RESPONSE("返回结果错误！请求和返回的相应不匹配");
@@ -14,7 +14,11 @@ import lombok.ToString;
 public enum RpcResponseCodeEnum {
 
     SUCCESS(200, "The remote call is successful"),
-    FAIL(500, "The remote call is fail");
+    FAIL(500, "The remote call is fail"),
+    // 服务的线程池和队列都满了，请求没有执行，客户端可以稍后重试或者换一个服务端
+    BUSY(503, "The server is busy"),
+    // 服务端过载，超过了自适应的并发限制，请求没有执行，客户端可以换一个服务端
+    OVERLOADED(429, "The server is overloaded");
     private final int code;
 
     private final String message;
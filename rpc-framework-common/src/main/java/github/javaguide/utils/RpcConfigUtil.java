@@ -0,0 +1,59 @@
+package github.javaguide.utils;
+
+import github.javaguide.enums.RpcConfigEnum;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Properties;
+
+/**
+ * 读取 rpc.properties 中的配置项，配置文件只在第一次使用时读取一次
+ */
+@Slf4j
+public final class RpcConfigUtil {
+
+    private static final Properties PROPERTIES = loadProperties();
+
+    private RpcConfigUtil() {
+    }
+
+    public static String getProperty(RpcConfigEnum rpcConfigEnum, String defaultValue) {
+        String value = PROPERTIES.getProperty(rpcConfigEnum.getPropertyValue());
+        return StringUtil.isBlank(value) ? defaultValue : value.trim();
+    }
+
+    public static int getInt(RpcConfigEnum rpcConfigEnum, int defaultValue) {
+        String value = getProperty(rpcConfigEnum, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            log.error("invalid value [{}] of [{}], use default value [{}]", value, rpcConfigEnum.getPropertyValue(), defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public static long getLong(RpcConfigEnum rpcConfigEnum, long defaultValue) {
+        String value = getProperty(rpcConfigEnum, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            log.error("invalid value [{}] of [{}], use default value [{}]", value, rpcConfigEnum.getPropertyValue(), defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public static boolean getBoolean(RpcConfigEnum rpcConfigEnum, boolean defaultValue) {
+        String value = getProperty(rpcConfigEnum, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+    private static Properties loadProperties() {
+        Properties properties = PropertiesFileUtil.readPropertiesFile(RpcConfigEnum.RPC_CONFIG_PATH.getPropertyValue());
+        return properties == null ? new Properties() : properties;
+    }
+}
@@ -3,8 +3,8 @@ package github.javaguide.utils.concurrent.threadpool;
 import lombok.Getter;
 import lombok.Setter;
 
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -24,7 +24,6 @@ public class CustomThreadPoolConfig {
     private static final int DEFAULT_KEEP_ALIVE_TIME = 1;
     private static final TimeUnit DEFAULT_TIME_UNIT = TimeUnit.MINUTES;
     private static final int DEFAULT_BLOCKING_QUEUE_CAPACITY = 100;
-    private static final int BLOCKING_QUEUE_CAPACITY = 100;
     /**
      * 可配置参数
      */
@@ -32,6 +31,8 @@ public class CustomThreadPoolConfig {
     private int maximumPoolSize = DEFAULT_MAXIMUM_POOL_SIZE_SIZE;
     private long keepAliveTime = DEFAULT_KEEP_ALIVE_TIME;
     private TimeUnit unit = DEFAULT_TIME_UNIT;
-    // 使用有界队列
-    private BlockingQueue<Runnable> workQueue = new ArrayBlockingQueue<>(BLOCKING_QUEUE_CAPACITY);
+    // 使用有界队列，容量可以在运行时修改，为 0 时不排队
+    private int queueCapacity = DEFAULT_BLOCKING_QUEUE_CAPACITY;
+    // 线程和队列都满了之后的拒绝策略，默认抛出 RejectedExecutionException
+    private RejectedExecutionHandler rejectedExecutionHandler = new ThreadPoolExecutor.AbortPolicy();
 }
@@ -0,0 +1,131 @@
+package github.javaguide.utils.concurrent.threadpool;
+
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 可以在运行时调整大小、带统计数据的线程池。
+ * <p>
+ * 核心线程数、最大线程数和队列容量都可以通过 {@link #resize(int, int, int)} 修改，不需要重启。
+ * 提交的任务会被包装一层，记录在队列里等待的时间和执行的时间，
+ * 所以 shutdownNow() 返回的和 getQueue() 里的都是包装后的任务
+ */
+public class DynamicThreadPoolExecutor extends ThreadPoolExecutor {
+
+    private final String name;
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder timedTaskCount = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final LongAdder totalRunNanos = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator maxRunNanos = new LongAccumulator(Math::max, 0);
+
+    public DynamicThreadPoolExecutor(String name, int corePoolSize, int maximumPoolSize, long keepAliveTime, TimeUnit unit,
+                                     int queueCapacity, ThreadFactory threadFactory, RejectedExecutionHandler handler) {
+        super(corePoolSize, maximumPoolSize, keepAliveTime, unit, new ResizableBlockingQueue<>(queueCapacity), threadFactory);
+        this.name = name;
+        // 先统计再交给原来的拒绝策略
+        setRejectedExecutionHandler(handler);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (command == null) {
+            throw new NullPointerException();
+        }
+        super.execute(new TimedRunnable(command));
+    }
+
+    @Override
+    public void setRejectedExecutionHandler(RejectedExecutionHandler handler) {
+        if (handler == null) {
+            throw new NullPointerException();
+        }
+        super.setRejectedExecutionHandler((r, executor) -> {
+            rejectedCount.increment();
+            handler.rejectedExecution(r, executor);
+        });
+    }
+
+    /**
+     * 修改线程数和队列容量。线程数变小时多余的线程在空闲后退出，队列容量变小时已经排队的任务不受影响
+     *
+     * @param corePoolSize    核心线程数
+     * @param maximumPoolSize 最大线程数，不能小于核心线程数
+     * @param queueCapacity   队列容量，为 0 时不排队
+     */
+    public void resize(int corePoolSize, int maximumPoolSize, int queueCapacity) {
+        if (corePoolSize < 0 || maximumPoolSize <= 0 || maximumPoolSize < corePoolSize) {
+            throw new IllegalArgumentException("corePoolSize: " + corePoolSize + ", maximumPoolSize: " + maximumPoolSize);
+        }
+        // 任何时候都要满足 core <= max，按照变化的方向决定先改哪个
+        if (corePoolSize > getMaximumPoolSize()) {
+            setMaximumPoolSize(maximumPoolSize);
+            setCorePoolSize(corePoolSize);
+        } else {
+            setCorePoolSize(corePoolSize);
+            setMaximumPoolSize(maximumPoolSize);
+        }
+        getResizableQueue().setCapacity(queueCapacity);
+    }
+
+    public ThreadPoolMetrics getMetrics() {
+        long timed = timedTaskCount.sum();
+        ResizableBlockingQueue<Runnable> queue = getResizableQueue();
+        return new ThreadPoolMetrics(name, getCorePoolSize(), getMaximumPoolSize(), getPoolSize(), getActiveCount(),
+                queue.size(), queue.getCapacity(), getCompletedTaskCount(), rejectedCount.sum(),
+                timed == 0 ? 0 : toMicros(totalWaitNanos.sum() / timed), toMicros(maxWaitNanos.get()),
+                timed == 0 ? 0 : toMicros(totalRunNanos.sum() / timed), toMicros(maxRunNanos.get()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private ResizableBlockingQueue<Runnable> getResizableQueue() {
+        return (ResizableBlockingQueue<Runnable>) getQueue();
+    }
+
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    /**
+     * 记录任务的等待时间和执行时间，被 CallerRunsPolicy 在提交线程里执行时同样统计
+     */
+    private final class TimedRunnable implements Runnable {
+        private final Runnable task;
+        private final long submitNanos = System.nanoTime();
+
+        TimedRunnable(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            try {
+                task.run();
+            } finally {
+                long end = System.nanoTime();
+                long wait = start - submitNanos;
+                long run = end - start;
+                timedTaskCount.increment();
+                totalWaitNanos.add(wait);
+                totalRunNanos.add(run);
+                maxWaitNanos.accumulate(wait);
+                maxRunNanos.accumulate(run);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return task.toString();
+        }
+    }
+}
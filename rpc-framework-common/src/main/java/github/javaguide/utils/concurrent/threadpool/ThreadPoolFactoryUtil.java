@@ -3,8 +3,11 @@ package github.javaguide.utils.concurrent.threadpool;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.*;
+import java.util.stream.Collectors;
 
 /**
  * 创建 ThreadPool(线程池) 的工具类.
@@ -21,6 +24,11 @@ public final class ThreadPoolFactoryUtil {
      * value: threadPool
      */
     private static final Map<String, ExecutorService> THREAD_POOLS = new ConcurrentHashMap<>();
+    /**
+     * 需要定时打印状态的线程池，所有线程池共用一个打印线程
+     */
+    private static final Set<ThreadPoolExecutor> PRINTED_THREAD_POOLS = ConcurrentHashMap.newKeySet();
+    private static volatile ScheduledExecutorService statusPrinter;
 
     private ThreadPoolFactoryUtil() {
 
@@ -46,6 +54,38 @@ public final class ThreadPoolFactoryUtil {
         return threadPool;
     }
 
+    /**
+     * @param threadNamePrefix 创建线程池时的 threadNamePrefix
+     * @return 对应的线程池，不存在时返回 null
+     */
+    public static DynamicThreadPoolExecutor getThreadPool(String threadNamePrefix) {
+        return (DynamicThreadPoolExecutor) THREAD_POOLS.get(threadNamePrefix);
+    }
+
+    /**
+     * 在运行时修改线程池的线程数和队列容量，不需要重启
+     *
+     * @return 线程池是否存在
+     */
+    public static boolean resizeThreadPool(String threadNamePrefix, int corePoolSize, int maximumPoolSize, int queueCapacity) {
+        DynamicThreadPoolExecutor threadPool = getThreadPool(threadNamePrefix);
+        if (threadPool == null) {
+            return false;
+        }
+        threadPool.resize(corePoolSize, maximumPoolSize, queueCapacity);
+        log.info("resize thread pool [{}]: core [{}], max [{}], queue capacity [{}]", threadNamePrefix, corePoolSize, maximumPoolSize, queueCapacity);
+        return true;
+    }
+
+    /**
+     * @return 所有线程池当前的统计数据
+     */
+    public static List<ThreadPoolMetrics> getThreadPoolMetrics() {
+        return THREAD_POOLS.values().stream()
+                .map(threadPool -> ((DynamicThreadPoolExecutor) threadPool).getMetrics())
+                .collect(Collectors.toList());
+    }
+
     /**
      * shutDown 所有线程池
      */
@@ -66,9 +106,9 @@ public final class ThreadPoolFactoryUtil {
 
     private static ExecutorService createThreadPool(CustomThreadPoolConfig customThreadPoolConfig, String threadNamePrefix, Boolean daemon) {
         ThreadFactory threadFactory = createThreadFactory(threadNamePrefix, daemon);
-        return new ThreadPoolExecutor(customThreadPoolConfig.getCorePoolSize(), customThreadPoolConfig.getMaximumPoolSize(),
-                customThreadPoolConfig.getKeepAliveTime(), customThreadPoolConfig.getUnit(), customThreadPoolConfig.getWorkQueue(),
-                threadFactory);
+        return new DynamicThreadPoolExecutor(threadNamePrefix, customThreadPoolConfig.getCorePoolSize(), customThreadPoolConfig.getMaximumPoolSize(),
+                customThreadPoolConfig.getKeepAliveTime(), customThreadPoolConfig.getUnit(), customThreadPoolConfig.getQueueCapacity(),
+                threadFactory, customThreadPoolConfig.getRejectedExecutionHandler());
     }
 
     /**
@@ -92,19 +132,36 @@ public final class ThreadPoolFactoryUtil {
     }
 
     /**
-     * 打印线程池的状态
+     * 每秒打印一次线程池的状态，所有线程池共用一个打印线程，同一个线程池多次调用只打印一份，线程池关闭后不再打印
      *
      * @param threadPool 线程池对象
      */
     public static void printThreadPoolStatus(ThreadPoolExecutor threadPool) {
-        ScheduledExecutorService scheduledExecutorService = new ScheduledThreadPoolExecutor(1, createThreadFactory("print-thread-pool-status", false));
-        scheduledExecutorService.scheduleAtFixedRate(() -> {
+        PRINTED_THREAD_POOLS.add(threadPool);
+        if (statusPrinter == null) {
+            synchronized (ThreadPoolFactoryUtil.class) {
+                if (statusPrinter == null) {
+                    ScheduledExecutorService scheduledExecutorService = new ScheduledThreadPoolExecutor(1, createThreadFactory("print-thread-pool-status", true));
+                    scheduledExecutorService.scheduleAtFixedRate(ThreadPoolFactoryUtil::printThreadPoolStatus, 0, 1, TimeUnit.SECONDS);
+                    statusPrinter = scheduledExecutorService;
+                }
+            }
+        }
+    }
+
+    private static void printThreadPoolStatus() {
+        PRINTED_THREAD_POOLS.removeIf(ThreadPoolExecutor::isTerminated);
+        for (ThreadPoolExecutor threadPool : PRINTED_THREAD_POOLS) {
+            if (threadPool instanceof DynamicThreadPoolExecutor) {
+                log.info("ThreadPool Status: {}", ((DynamicThreadPoolExecutor) threadPool).getMetrics());
+                continue;
+            }
             log.info("============ThreadPool Status=============");
             log.info("ThreadPool Size: [{}]", threadPool.getPoolSize());
             log.info("Active Threads: [{}]", threadPool.getActiveCount());
             log.info("Number of Tasks : [{}]", threadPool.getCompletedTaskCount());
             log.info("Number of Tasks in Queue: {}", threadPool.getQueue().size());
             log.info("===========================================");
-        }, 0, 1, TimeUnit.SECONDS);
+        }
     }
 }
@@ -0,0 +1,28 @@
+package github.javaguide.utils.concurrent.threadpool;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 线程池某一时刻的状态，见 {@link DynamicThreadPoolExecutor#getMetrics()}。
+ * 任务数、拒绝数和耗时从线程池创建开始累计，等待时间是任务从提交到开始执行的时间
+ */
+@AllArgsConstructor
+@Getter
+@ToString
+public class ThreadPoolMetrics {
+    private final String name;
+    private final int corePoolSize;
+    private final int maximumPoolSize;
+    private final int poolSize;
+    private final int activeCount;
+    private final int queueSize;
+    private final int queueCapacity;
+    private final long completedTaskCount;
+    private final long rejectedCount;
+    private final long averageWaitMicros;
+    private final long maxWaitMicros;
+    private final long averageRunMicros;
+    private final long maxRunMicros;
+}
@@ -0,0 +1,98 @@
+package github.javaguide.utils.concurrent.threadpool;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 虚拟线程（JDK 21+）的工具类。
+ * <p>
+ * 项目按照 Java 8 编译，虚拟线程的 API 通过反射调用，在 JDK 21 以下运行时 {@link #isSupported()} 返回 false。
+ * 每个任务一个虚拟线程，阻塞 IO 时只挂起虚拟线程不占用平台线程，适合大量阻塞的调用，不需要调整线程池大小
+ */
+@Slf4j
+public final class VirtualThreadUtil {
+
+    // Thread.ofVirtual()，不支持时为 null
+    private static final Method OF_VIRTUAL;
+    // Thread.Builder#name(String, long)
+    private static final Method NAME;
+    // Thread.Builder#factory()
+    private static final Method FACTORY;
+    // Executors.newThreadPerTaskExecutor(ThreadFactory)
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method factory = null;
+        Method newThreadPerTaskExecutor = null;
+        try {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            // 通过公开的接口拿方法，实现类不是 public 的，不能直接调用
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            name = builder.getMethod("name", String.class, long.class);
+            factory = builder.getMethod("factory");
+            newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+        } catch (ReflectiveOperationException e) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        FACTORY = factory;
+        NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+    }
+
+    private VirtualThreadUtil() {
+
+    }
+
+    /**
+     * @return 当前的 JDK 是否支持虚拟线程
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * 创建每个任务一个虚拟线程的线程池
+     *
+     * @param threadNamePrefix 作为创建的线程名字的前缀
+     * @return 当前的 JDK 不支持虚拟线程时返回 null
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor(String threadNamePrefix) {
+        ThreadFactory threadFactory = createVirtualThreadFactory(threadNamePrefix);
+        if (threadFactory == null) {
+            return null;
+        }
+        try {
+            return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, threadFactory);
+        } catch (ReflectiveOperationException e) {
+            log.warn("create virtual thread executor failed", e);
+            return null;
+        }
+    }
+
+    /**
+     * 创建虚拟线程的 ThreadFactory
+     *
+     * @param threadNamePrefix 作为创建的线程名字的前缀
+     * @return 当前的 JDK 不支持虚拟线程时返回 null
+     */
+    public static ThreadFactory createVirtualThreadFactory(String threadNamePrefix) {
+        if (!isSupported()) {
+            return null;
+        }
+        try {
+            Object builder = OF_VIRTUAL.invoke(null);
+            builder = NAME.invoke(builder, threadNamePrefix + "-", 0L);
+            return (ThreadFactory) FACTORY.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            log.warn("create virtual thread factory failed", e);
+            return null;
+        }
+    }
+}
@@ -25,4 +25,17 @@ public @interface RpcReference {
      */
     String group() default "";
 
+    /**
+     * Compress type of the messages sent for this service, such as gzip, lz4, snappy and zstd.
+     * "adaptive" picks one for each method according to live measurements.
+     * Default value is empty string, which means the value of rpc.compress.type
+     */
+    String compress() default "";
+
+    /**
+     * Timeout of each call in milliseconds.
+     * Default value is 0, which means the value of rpc.request.timeout
+     */
+    long timeout() default 0;
+
 }
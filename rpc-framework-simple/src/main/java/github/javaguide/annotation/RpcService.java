@@ -25,4 +25,30 @@ public @interface RpcService {
      */
     String group() default "";
 
+    /**
+     * Compress type of the messages sent for this service, such as gzip, lz4, snappy and zstd.
+     * "adaptive" picks one for each method according to live measurements.
+     * Default value is empty string, which means the value of rpc.compress.type
+     */
+    String compress() default "";
+
+    /**
+     * How the server runs the methods of this service: "direct" on the IO thread, "pool" on a shared work-stealing pool,
+     * "ordered" one by one per connection, or "ringbuffer" handed to fixed workers through a lock-free ring buffer.
+     * Default value is empty string, which means the value of rpc.server.dispatcher
+     */
+    String dispatcher() default "";
+
+    /**
+     * Number of threads dedicated to this service. When it is positive the methods of this service run on their own pool,
+     * and a slow service can not use up the threads of the others. Default value is 0, which means the dispatcher is used
+     */
+    int threads() default 0;
+
+    /**
+     * Queue size of the dedicated pool. Default value is 0, which means requests are rejected as soon as all threads are busy.
+     * Rejected requests are answered with a BUSY response, they never run on the IO thread
+     */
+    int queues() default 0;
+
 }
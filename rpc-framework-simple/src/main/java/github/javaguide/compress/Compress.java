@@ -1,6 +1,7 @@
 package github.javaguide.compress;
 
 import github.javaguide.extension.SPI;
+import io.netty.buffer.ByteBuf;
 
 /**
  * @author wangtao .
@@ -12,6 +13,34 @@ public interface Compress {
 
     byte[] compress(byte[] bytes);
 
+    /**
+     * 消息体小于这个长度时不压缩，默认就是配置的 rpc.compress.threshold。
+     * 有些压缩算法（比如带字典的 zstd）在很小的消息体上也有效果，可以覆盖它返回更小的值
+     *
+     * @param threshold 配置的压缩阈值
+     */
+    default int compressThreshold(int threshold) {
+        return threshold;
+    }
+
+    /**
+     * 把 in 中可读的字节压缩后写入 out，读完后 in 的 readerIndex 会移动到 writerIndex。
+     * 默认实现退化为 {@link #compress(byte[])}，具体的压缩算法应当覆盖它
+     */
+    default void compress(ByteBuf in, ByteBuf out) {
+        byte[] bytes = new byte[in.readableBytes()];
+        in.readBytes(bytes);
+        out.writeBytes(compress(bytes));
+    }
 
     byte[] decompress(byte[] bytes);
+
+    /**
+     * 把 in 中可读的字节解压后写入 out，默认实现退化为 {@link #decompress(byte[])}，具体的压缩算法应当覆盖它
+     */
+    default void decompress(ByteBuf in, ByteBuf out) {
+        byte[] bytes = new byte[in.readableBytes()];
+        in.readBytes(bytes);
+        out.writeBytes(decompress(bytes));
+    }
 }
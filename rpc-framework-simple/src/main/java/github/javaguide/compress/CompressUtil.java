@@ -0,0 +1,37 @@
+package github.javaguide.compress;
+
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.remoting.constants.RpcConstants;
+import github.javaguide.utils.RpcConfigUtil;
+
+/**
+ * 压缩算法共用的工具方法
+ */
+public final class CompressUtil {
+
+    /**
+     * 解压后允许的最大字节数
+     */
+    public static final int MAX_DECOMPRESSED_SIZE = RpcConfigUtil.getInt(RpcConfigEnum.COMPRESS_MAX_DECOMPRESSED_SIZE,
+            RpcConstants.DEFAULT_MAX_DECOMPRESSED_SIZE);
+
+    private CompressUtil() {
+
+    }
+
+    /**
+     * 校验消息里记录的原始长度，在按照它分配内存之前调用。
+     * 原始长度来自网络，伪造一个很大的值就能让 IO 线程分配几个 GB 的内存
+     *
+     * @param compressName 压缩算法的名字，用在异常信息里
+     * @param length       消息里记录的原始长度
+     * @return 校验通过的原始长度
+     */
+    public static int checkDecompressedLength(String compressName, long length) {
+        if (length < 0 || length > MAX_DECOMPRESSED_SIZE) {
+            throw new RuntimeException(compressName + " decompress error: invalid decompressed length " + length
+                    + ", max " + MAX_DECOMPRESSED_SIZE);
+        }
+        return (int) length;
+    }
+}
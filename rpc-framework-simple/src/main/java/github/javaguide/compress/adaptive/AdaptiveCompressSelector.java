@@ -0,0 +1,289 @@
+package github.javaguide.compress.adaptive;
+
+import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.utils.RpcConfigUtil;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleSupplier;
+
+/**
+ * 自适应压缩：按照服务和方法（route）分别统计各个压缩方式的压缩率和 CPU 耗时，为每条消息选出估算总耗时最小的压缩方式。
+ * <p>
+ * 每个原始字节的估算耗时：
+ * <pre>
+ *   none：                 nanosPerWireByte
+ *   其他压缩方式：           nanosPerByte * cpuWeight + ratio * nanosPerWireByte
+ * </pre>
+ * nanosPerWireByte 由 rpc.compress.adaptive.bandwidth 换算得到，cpuWeight 随着机器的负载升高而变大，
+ * CPU 紧张时会倾向于更快的压缩方式或者不压缩。
+ * 每种压缩方式先各试几次，之后每隔 rpc.compress.adaptive.probe.interval 条消息轮流试一次当前不是最优的压缩方式，
+ * 这样消息的形态变化之后统计也能跟着变化
+ */
+@Slf4j
+public class AdaptiveCompressSelector {
+
+    private static final String DEFAULT_ROUTE = "default";
+    private static final String DEFAULT_CANDIDATES = "lz4,gzip";
+    private static final int DEFAULT_PROBE_INTERVAL = 64;
+    private static final int DEFAULT_BANDWIDTH = 100;
+    // 每种压缩方式至少要有这么多样本才参与比较
+    private static final int WARMUP_SAMPLES = 4;
+    // 指数加权移动平均的权重，越大越看重最近的样本
+    private static final double EWMA_ALPHA = 0.2;
+    // 单个耗时样本最多按当前平均值的这么多倍计入，避免一次 GC 停顿或者线程调度就让 route 放弃压缩
+    private static final double MAX_NANOS_SAMPLE_FACTOR = 4;
+    private static final double MAX_CPU_UTILIZATION = 0.95;
+    private static final long CPU_WEIGHT_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final byte[] candidates;
+    private final int probeInterval;
+    private final double nanosPerWireByte;
+    /**
+     * key: route key
+     * value: 这个 route 上各个压缩方式的统计
+     */
+    private final Map<String, RouteState> routes = new ConcurrentHashMap<>();
+    /**
+     * 当前的 CPU 利用率，0-1，拿不到时返回负数
+     */
+    private final DoubleSupplier cpuUtilization;
+    private volatile double cpuWeight = 1;
+    private volatile long cpuWeightRefreshTime = System.nanoTime() - CPU_WEIGHT_REFRESH_NANOS;
+
+    public AdaptiveCompressSelector() {
+        this(parseCandidates(RpcConfigUtil.getProperty(RpcConfigEnum.COMPRESS_ADAPTIVE_CANDIDATES, DEFAULT_CANDIDATES)),
+                RpcConfigUtil.getInt(RpcConfigEnum.COMPRESS_ADAPTIVE_PROBE_INTERVAL, DEFAULT_PROBE_INTERVAL),
+                RpcConfigUtil.getInt(RpcConfigEnum.COMPRESS_ADAPTIVE_BANDWIDTH, DEFAULT_BANDWIDTH));
+    }
+
+    /**
+     * @param candidates    参与选择的压缩方式，不包括 none，none 总是参与选择
+     * @param probeInterval 每隔多少条消息试一次当前不是最优的压缩方式
+     * @param bandwidth     估算传输耗时用的网络带宽，单位 MB/s
+     */
+    public AdaptiveCompressSelector(byte[] candidates, int probeInterval, double bandwidth) {
+        this(candidates, probeInterval, bandwidth, AdaptiveCompressSelector::systemCpuUtilization);
+    }
+
+    AdaptiveCompressSelector(byte[] candidates, int probeInterval, double bandwidth, DoubleSupplier cpuUtilization) {
+        if (candidates.length == 0 || probeInterval <= 0 || bandwidth <= 0) {
+            throw new IllegalArgumentException("invalid adaptive compress config");
+        }
+        this.candidates = candidates.clone();
+        this.probeInterval = probeInterval;
+        this.nanosPerWireByte = TimeUnit.SECONDS.toNanos(1) / (bandwidth * 1024 * 1024);
+        this.cpuUtilization = cpuUtilization;
+    }
+
+    /**
+     * 为 route 上的一条消息选择压缩方式
+     *
+     * @param routeKey 消息所属的服务和方法，为 null 时所有消息共用一份统计
+     * @return 压缩方式，可能是 {@link CompressTypeEnum#NONE}
+     */
+    public byte select(String routeKey) {
+        refreshCpuWeight();
+        RouteState route = route(routeKey);
+        long messages = route.messages.incrementAndGet();
+        // 样本不够的压缩方式先试几次
+        for (byte candidate : candidates) {
+            if (route.codec(candidate).samples < WARMUP_SAMPLES) {
+                return candidate;
+            }
+        }
+        if (messages % probeInterval == 0) {
+            return candidates[(int) (messages / probeInterval % candidates.length)];
+        }
+        byte best = CompressTypeEnum.NONE.getCode();
+        double bestCost = nanosPerWireByte;
+        for (byte candidate : candidates) {
+            double cost = route.codec(candidate).cost(cpuWeight, nanosPerWireByte);
+            if (cost < bestCost) {
+                best = candidate;
+                bestCost = cost;
+            }
+        }
+        byte previous = route.current;
+        if (previous != best) {
+            route.current = best;
+            log.info("route [{}] switch compress from [{}] to [{}], cpu weight [{}], {}", routeKey,
+                    CompressTypeEnum.getName(previous), CompressTypeEnum.getName(best), cpuWeight, route.codecs.values());
+        }
+        return best;
+    }
+
+    /**
+     * 记录一次压缩的结果
+     *
+     * @param routeKey         消息所属的服务和方法
+     * @param compressType     使用的压缩方式
+     * @param originalLength   压缩前的字节数
+     * @param compressedLength 压缩后的字节数
+     * @param nanos            压缩耗时
+     */
+    public void record(String routeKey, byte compressType, int originalLength, int compressedLength, long nanos) {
+        if (compressType == CompressTypeEnum.NONE.getCode() || originalLength <= 0) {
+            return;
+        }
+        route(routeKey).codec(compressType).update((double) compressedLength / originalLength, (double) nanos / originalLength);
+    }
+
+    /**
+     * @return 所有 route 当前的统计，用来查看某个 route 为什么压缩或者不压缩
+     */
+    public List<RouteStatistics> getStatistics() {
+        List<RouteStatistics> statistics = new ArrayList<>(routes.size());
+        double weight = cpuWeight;
+        routes.forEach((routeKey, route) -> {
+            Map<String, CodecStatistics> codecs = new LinkedHashMap<>();
+            codecs.put(CompressTypeEnum.NONE.getName(), new CodecStatistics(0, 1, 0, nanosPerWireByte));
+            route.codecs.forEach((code, codec) -> codecs.put(CompressTypeEnum.getName(code), codec.snapshot(weight, nanosPerWireByte)));
+            statistics.add(new RouteStatistics(routeKey, CompressTypeEnum.getName(route.current), route.messages.get(), weight, codecs));
+        });
+        return statistics;
+    }
+
+    private RouteState route(String routeKey) {
+        return routes.computeIfAbsent(routeKey == null ? DEFAULT_ROUTE : routeKey, k -> new RouteState(candidates));
+    }
+
+    /**
+     * CPU 利用率为 u 时 CPU 耗时按照 1 / (1 - u) 放大，每秒最多刷新一次
+     */
+    private void refreshCpuWeight() {
+        long now = System.nanoTime();
+        if (now - cpuWeightRefreshTime < CPU_WEIGHT_REFRESH_NANOS) {
+            return;
+        }
+        cpuWeightRefreshTime = now;
+        double utilization = cpuUtilization.getAsDouble();
+        if (utilization >= 0) {
+            cpuWeight = 1 / (1 - Math.min(utilization, MAX_CPU_UTILIZATION));
+        }
+    }
+
+    /**
+     * 用系统负载估算 CPU 利用率，有的平台拿不到负载，返回负数
+     */
+    private static double systemCpuUtilization() {
+        OperatingSystemMXBean operatingSystem = ManagementFactory.getOperatingSystemMXBean();
+        double load = operatingSystem.getSystemLoadAverage();
+        return load < 0 ? load : load / operatingSystem.getAvailableProcessors();
+    }
+
+    private static byte[] parseCandidates(String names) {
+        String[] split = names.split(",");
+        byte[] candidates = new byte[split.length];
+        for (int i = 0; i < split.length; i++) {
+            candidates[i] = CompressTypeEnum.getCode(split[i].trim());
+        }
+        return candidates;
+    }
+
+    private static final class RouteState {
+        private final AtomicLong messages = new AtomicLong();
+        private final Map<Byte, CodecState> codecs = new LinkedHashMap<>();
+        private volatile byte current = CompressTypeEnum.NONE.getCode();
+
+        private RouteState(byte[] candidates) {
+            // 创建之后只读，不需要并发容器
+            for (byte candidate : candidates) {
+                codecs.put(candidate, new CodecState(candidate));
+            }
+        }
+
+        private CodecState codec(byte code) {
+            CodecState codec = codecs.get(code);
+            if (codec == null) {
+                throw new IllegalArgumentException("compress type [" + CompressTypeEnum.getName(code) + "] is not an adaptive candidate");
+            }
+            return codec;
+        }
+    }
+
+    private static final class CodecState {
+        private final byte code;
+        private volatile long samples;
+        private volatile double ratio;
+        private volatile double nanosPerByte;
+
+        private CodecState(byte code) {
+            this.code = code;
+        }
+
+        private synchronized void update(double sampleRatio, double sampleNanosPerByte) {
+            if (samples < WARMUP_SAMPLES) {
+                // 前几次压缩包含类加载和 JIT 的耗时，不计入平均值
+                ratio = sampleRatio;
+                nanosPerByte = sampleNanosPerByte;
+            } else {
+                ratio += EWMA_ALPHA * (sampleRatio - ratio);
+                nanosPerByte += EWMA_ALPHA * (Math.min(sampleNanosPerByte, nanosPerByte * MAX_NANOS_SAMPLE_FACTOR) - nanosPerByte);
+            }
+            samples++;
+        }
+
+        private double cost(double cpuWeight, double nanosPerWireByte) {
+            return nanosPerByte * cpuWeight + ratio * nanosPerWireByte;
+        }
+
+        private synchronized CodecStatistics snapshot(double cpuWeight, double nanosPerWireByte) {
+            return new CodecStatistics(samples, ratio, nanosPerByte, cost(cpuWeight, nanosPerWireByte));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s{ratio=%.3f, nanosPerByte=%.3f}", CompressTypeEnum.getName(code), ratio, nanosPerByte);
+        }
+    }
+
+    @AllArgsConstructor
+    @Getter
+    @ToString
+    public static class RouteStatistics {
+        private final String routeKey;
+        /**
+         * 最近一次选出的最优压缩方式
+         */
+        private final String current;
+        private final long messages;
+        private final double cpuWeight;
+        /**
+         * key: 压缩方式
+         * value: 这个压缩方式的统计
+         */
+        private final Map<String, CodecStatistics> codecs;
+    }
+
+    @AllArgsConstructor
+    @Getter
+    @ToString
+    public static class CodecStatistics {
+        private final long samples;
+        /**
+         * 压缩后的字节数 / 压缩前的字节数
+         */
+        private final double ratio;
+        /**
+         * 压缩每个字节的平均耗时
+         */
+        private final double nanosPerByte;
+        /**
+         * 每个原始字节的估算总耗时，越小越好
+         */
+        private final double cost;
+    }
+}
@@ -1,37 +1,107 @@
 package github.javaguide.compress.gzip;
 
 import github.javaguide.compress.Compress;
+import github.javaguide.compress.CompressUtil;
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.utils.RpcConfigUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 /**
+ * 标准的 GZIP 格式，和 GZIPOutputStream/GZIPInputStream 互通。
+ * <p>
+ * GZIPOutputStream/GZIPInputStream 每次都会创建新的 Deflater/Inflater，它们持有的 native zlib 状态分配代价很高，
+ * 而且要等到 finalize 或者 cleaner 才会释放。这里每个线程复用一组 Deflater/Inflater，
+ * GZIP 的头和尾自己读写，解压时根据尾部记录的原始长度分配好输出空间，解压出的数据超过这个长度时直接拒绝
+ *
  * @author wangtao .
  * @createTime on 2020/10/3
  */
 
 public class GzipCompress implements Compress {
 
-
     private static final int BUFFER_SIZE = 1024 * 4;
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int HEADER_LENGTH = 10;
+    private static final int TRAILER_LENGTH = 8;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+    // deflate 的最大压缩比是 1032:1，用来限制预先分配的输出空间
+    private static final int MAX_DEFLATE_RATIO = 1032;
+    // 和 GZIPOutputStream 写出的头一样：magic、CM = 8（deflate）、FLG = 0、MTIME = 0、XFL = 0、OS = 0
+    private static final byte[] HEADER = {(byte) GZIP_MAGIC, (byte) (GZIP_MAGIC >> 8), Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+    private final ThreadLocal<GzipContext> contexts;
+
+    public GzipCompress() {
+        this(RpcConfigUtil.getInt(RpcConfigEnum.GZIP_LEVEL, Deflater.DEFAULT_COMPRESSION));
+    }
+
+    /**
+     * @param level 压缩级别，0-9，-1 表示 zlib 的默认级别
+     */
+    public GzipCompress(int level) {
+        if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("invalid gzip level: " + level);
+        }
+        this.contexts = ThreadLocal.withInitial(() -> new GzipContext(level));
+    }
 
     @Override
     public byte[] compress(byte[] bytes) {
         if (bytes == null) {
             throw new NullPointerException("bytes is null");
         }
-        try (ByteArrayOutputStream out = new ByteArrayOutputStream();
-             GZIPOutputStream gzip = new GZIPOutputStream(out)) {
-            gzip.write(bytes);
-            gzip.flush();
-            gzip.finish();
-            return out.toByteArray();
-        } catch (IOException e) {
-            throw new RuntimeException("gzip compress error", e);
+        ByteBuf out = Unpooled.buffer(maxCompressedLength(bytes.length));
+        compress(Unpooled.wrappedBuffer(bytes), out);
+        return Arrays.copyOf(out.array(), out.writerIndex());
+    }
+
+    @Override
+    public void compress(ByteBuf in, ByteBuf out) {
+        GzipContext context = contexts.get();
+        Deflater deflater = context.deflater;
+        CRC32 crc = context.crc;
+        deflater.reset();
+        crc.reset();
+        int length = in.readableBytes();
+        out.ensureWritable(maxCompressedLength(length));
+        out.writeBytes(HEADER);
+        if (in.hasArray()) {
+            int offset = in.arrayOffset() + in.readerIndex();
+            crc.update(in.array(), offset, length);
+            deflater.setInput(in.array(), offset, length);
+            in.skipBytes(length);
+        } else {
+            // 堆外内存需要分块拷贝到 byte[] 里才能交给 Deflater
+            byte[] buffer = context.inputBuffer;
+            while (in.readableBytes() > buffer.length) {
+                in.readBytes(buffer);
+                crc.update(buffer);
+                deflater.setInput(buffer);
+                while (!deflater.needsInput()) {
+                    deflate(context, out);
+                }
+            }
+            int n = in.readableBytes();
+            in.readBytes(buffer, 0, n);
+            crc.update(buffer, 0, n);
+            deflater.setInput(buffer, 0, n);
+        }
+        deflater.finish();
+        while (!deflater.finished()) {
+            deflate(context, out);
         }
+        out.writeIntLE((int) crc.getValue());
+        out.writeIntLE(length);
     }
 
     @Override
@@ -39,16 +109,185 @@ public class GzipCompress implements Compress {
         if (bytes == null) {
             throw new NullPointerException("bytes is null");
         }
-        try (ByteArrayOutputStream out = new ByteArrayOutputStream();
-             GZIPInputStream gunzip = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
-            byte[] buffer = new byte[BUFFER_SIZE];
-            int n;
-            while ((n = gunzip.read(buffer)) > -1) {
-                out.write(buffer, 0, n);
+        ByteBuf in = Unpooled.wrappedBuffer(bytes);
+        ByteBuf out = Unpooled.buffer(initialCapacity(in, uncompressedLength(in)));
+        decompress(in, out);
+        byte[] array = out.array();
+        // 原始长度是准确的，绝大多数情况下不需要再拷贝一次
+        return out.writerIndex() == array.length ? array : Arrays.copyOf(array, out.writerIndex());
+    }
+
+    @Override
+    public void decompress(ByteBuf in, ByteBuf out) {
+        int length = uncompressedLength(in);
+        readHeader(in);
+        GzipContext context = contexts.get();
+        Inflater inflater = context.inflater;
+        CRC32 crc = context.crc;
+        inflater.reset();
+        crc.reset();
+        out.ensureWritable(initialCapacity(in, length));
+        int outputIndex = out.writerIndex();
+        int limit = outputIndex + length;
+        // 消息体里只有一个 GZIP member，尾部也一起交给 Inflater，解压结束后剩下的就是尾部
+        int inputLength = in.readableBytes();
+        try {
+            if (in.hasArray()) {
+                inflater.setInput(in.array(), in.arrayOffset() + in.readerIndex(), inputLength);
+                inflate(context, out, limit);
+            } else {
+                byte[] buffer = context.inputBuffer;
+                int index = in.readerIndex();
+                int end = in.writerIndex();
+                while (!inflater.finished() && index < end) {
+                    int n = Math.min(end - index, buffer.length);
+                    in.getBytes(index, buffer, 0, n);
+                    index += n;
+                    inflater.setInput(buffer, 0, n);
+                    inflate(context, out, limit);
+                }
+                inputLength = index - in.readerIndex();
             }
-            return out.toByteArray();
-        } catch (IOException e) {
+        } catch (DataFormatException e) {
             throw new RuntimeException("gzip decompress error", e);
         }
+        if (!inflater.finished()) {
+            throw new RuntimeException("gzip decompress error: unexpected end of data");
+        }
+        in.skipBytes(inputLength - inflater.getRemaining());
+        if (in.readableBytes() < TRAILER_LENGTH) {
+            throw new RuntimeException("gzip decompress error: unexpected end of data");
+        }
+        updateCrc(crc, out, outputIndex, out.writerIndex() - outputIndex);
+        if (in.readIntLE() != (int) crc.getValue() || in.readIntLE() != out.writerIndex() - outputIndex) {
+            throw new RuntimeException("gzip decompress error: corrupt gzip trailer");
+        }
+    }
+
+    private static void deflate(GzipContext context, ByteBuf out) {
+        Deflater deflater = context.deflater;
+        if (!out.isWritable()) {
+            out.ensureWritable(BUFFER_SIZE);
+        }
+        if (out.hasArray()) {
+            int n = deflater.deflate(out.array(), out.arrayOffset() + out.writerIndex(), out.writableBytes());
+            out.writerIndex(out.writerIndex() + n);
+        } else {
+            int n = deflater.deflate(context.outputBuffer);
+            out.writeBytes(context.outputBuffer, 0, n);
+        }
+    }
+
+    /**
+     * @param limit 输出的 writerIndex 不能超过的位置，也就是尾部记录的原始长度
+     */
+    private static void inflate(GzipContext context, ByteBuf out, int limit) throws DataFormatException {
+        Inflater inflater = context.inflater;
+        while (!inflater.finished() && !inflater.needsInput()) {
+            int remaining = limit - out.writerIndex();
+            if (remaining == 0) {
+                // 已经解压出了原始长度的数据，再试着解压一个字节，能解压出来说明数据比尾部记录的长
+                if (inflater.inflate(context.outputBuffer, 0, 1) > 0) {
+                    throw new DataFormatException("gzip data exceeds the length in the trailer");
+                }
+                continue;
+            }
+            if (!out.isWritable()) {
+                out.ensureWritable(Math.min(BUFFER_SIZE, remaining));
+            }
+            int n;
+            if (out.hasArray()) {
+                n = inflater.inflate(out.array(), out.arrayOffset() + out.writerIndex(), Math.min(out.writableBytes(), remaining));
+                out.writerIndex(out.writerIndex() + n);
+            } else {
+                n = inflater.inflate(context.outputBuffer, 0, Math.min(BUFFER_SIZE, remaining));
+                out.writeBytes(context.outputBuffer, 0, n);
+            }
+            if (n == 0 && inflater.needsDictionary()) {
+                throw new DataFormatException("gzip stream needs a preset dictionary");
+            }
+        }
+    }
+
+    private static void updateCrc(CRC32 crc, ByteBuf buf, int index, int length) {
+        if (buf.hasArray()) {
+            crc.update(buf.array(), buf.arrayOffset() + index, length);
+        } else {
+            crc.update(buf.nioBuffer(index, length));
+        }
+    }
+
+    /**
+     * 读取并跳过 GZIP 头，兼容其他工具写出的带 FEXTRA/FNAME/FCOMMENT/FHCRC 的头
+     */
+    private static void readHeader(ByteBuf in) {
+        if (in.readableBytes() < HEADER_LENGTH + TRAILER_LENGTH || in.readUnsignedShortLE() != GZIP_MAGIC) {
+            throw new RuntimeException("gzip decompress error: not in gzip format");
+        }
+        if (in.readByte() != Deflater.DEFLATED) {
+            throw new RuntimeException("gzip decompress error: unsupported compression method");
+        }
+        int flags = in.readUnsignedByte();
+        // MTIME、XFL、OS
+        in.skipBytes(6);
+        if ((flags & FEXTRA) == FEXTRA) {
+            in.skipBytes(in.readUnsignedShortLE());
+        }
+        if ((flags & FNAME) == FNAME) {
+            skipZeroTerminatedString(in);
+        }
+        if ((flags & FCOMMENT) == FCOMMENT) {
+            skipZeroTerminatedString(in);
+        }
+        if ((flags & FHCRC) == FHCRC) {
+            in.skipBytes(2);
+        }
+        if (in.readableBytes() < TRAILER_LENGTH) {
+            throw new RuntimeException("gzip decompress error: not in gzip format");
+        }
+    }
+
+    private static void skipZeroTerminatedString(ByteBuf in) {
+        while (in.readByte() != 0) {
+            // skip
+        }
+    }
+
+    /**
+     * GZIP 尾部的 ISIZE 记录了原始长度（对 2^32 取模），超过上限时直接拒绝。
+     * 解压出的数据不能超过它，所以它同时也是解压时输出空间的上限
+     */
+    private static int uncompressedLength(ByteBuf in) {
+        if (in.readableBytes() < HEADER_LENGTH + TRAILER_LENGTH) {
+            throw new RuntimeException("gzip decompress error: not in gzip format");
+        }
+        return CompressUtil.checkDecompressedLength("gzip", in.getUnsignedIntLE(in.writerIndex() - 4));
+    }
+
+    /**
+     * 预先分配的输出空间，ISIZE 是伪造的也只会按照 deflate 的最大压缩比分配，不够时再按需扩容
+     */
+    private static int initialCapacity(ByteBuf in, int length) {
+        return (int) Math.min(length, (long) in.readableBytes() * MAX_DEFLATE_RATIO);
+    }
+
+    /**
+     * 和 zlib 的 deflateBound 一致，再加上 GZIP 的头和尾
+     */
+    private static int maxCompressedLength(int length) {
+        return length + (length >> 12) + (length >> 14) + (length >> 25) + 13 + HEADER_LENGTH + TRAILER_LENGTH;
+    }
+
+    private static final class GzipContext {
+        // nowrap = true：只处理原始的 deflate 数据，GZIP 的头和尾自己处理
+        private final Deflater deflater;
+        private final Inflater inflater = new Inflater(true);
+        private final CRC32 crc = new CRC32();
+        private final byte[] inputBuffer = new byte[BUFFER_SIZE];
+        private final byte[] outputBuffer = new byte[BUFFER_SIZE];
+
+        private GzipContext(int level) {
+            this.deflater = new Deflater(level, true);
+        }
     }
 }
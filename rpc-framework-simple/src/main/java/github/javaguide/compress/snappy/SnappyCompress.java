@@ -0,0 +1,108 @@
+package github.javaguide.compress.snappy;
+
+import github.javaguide.compress.Compress;
+import github.javaguide.compress.CompressUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.compression.DecompressionException;
+import io.netty.handler.codec.compression.Snappy;
+
+/**
+ * Snappy 压缩，直接使用 netty 自带的纯 java 实现，在 ByteBuf 上原地压缩和解压。
+ * <p>
+ * netty 的 {@link Snappy} 一次最多只能编码 {@link Short#MAX_VALUE} 个字节（SnappyFrameEncoder 也是按这个大小分块的），
+ * 所以数据被切成多个块，每个块的格式为：4B 块压缩后的长度 + raw snappy 数据。
+ * raw snappy 数据以 varint 编码的原始长度开头，解码器按照它分配输出空间，所以解压前先校验它不超过块的最大长度，
+ * 所有块加起来不超过解压的上限，解压出的长度也必须和它一致
+ */
+public class SnappyCompress implements Compress {
+
+    private static final int MAX_BLOCK_LENGTH = Short.MAX_VALUE;
+
+    @Override
+    public byte[] compress(byte[] bytes) {
+        if (bytes == null) {
+            throw new NullPointerException("bytes is null");
+        }
+        ByteBuf out = Unpooled.buffer(bytes.length);
+        try {
+            compress(Unpooled.wrappedBuffer(bytes), out);
+            byte[] result = new byte[out.readableBytes()];
+            out.readBytes(result);
+            return result;
+        } finally {
+            out.release();
+        }
+    }
+
+    @Override
+    public void compress(ByteBuf in, ByteBuf out) {
+        // Snappy 对象记录了解码状态，不是线程安全的，每次使用新的对象
+        Snappy snappy = new Snappy();
+        while (in.isReadable()) {
+            int lengthIndex = out.writerIndex();
+            out.writeInt(0);
+            // Snappy 假设输入的 readerIndex 为 0，所以每个块都传入一个切片
+            int blockLength = Math.min(in.readableBytes(), MAX_BLOCK_LENGTH);
+            snappy.encode(in.readSlice(blockLength), out, blockLength);
+            out.setInt(lengthIndex, out.writerIndex() - lengthIndex - 4);
+        }
+    }
+
+    @Override
+    public byte[] decompress(byte[] bytes) {
+        if (bytes == null) {
+            throw new NullPointerException("bytes is null");
+        }
+        ByteBuf out = Unpooled.buffer(bytes.length * 2);
+        try {
+            decompress(Unpooled.wrappedBuffer(bytes), out);
+            byte[] result = new byte[out.readableBytes()];
+            out.readBytes(result);
+            return result;
+        } finally {
+            out.release();
+        }
+    }
+
+    @Override
+    public void decompress(ByteBuf in, ByteBuf out) {
+        Snappy snappy = new Snappy();
+        long total = 0;
+        try {
+            while (in.isReadable()) {
+                ByteBuf block = in.readSlice(in.readInt());
+                int length = readPreamble(block);
+                if (length > MAX_BLOCK_LENGTH) {
+                    // 压缩时每个块最多 MAX_BLOCK_LENGTH 个字节，更长的块一定是伪造的
+                    throw new RuntimeException("snappy decompress error: invalid block length " + length);
+                }
+                total = CompressUtil.checkDecompressedLength("snappy", total + length);
+                int outputIndex = out.writerIndex();
+                snappy.decode(block, out);
+                snappy.reset();
+                if (out.writerIndex() - outputIndex != length) {
+                    throw new RuntimeException("snappy decompress error: block length " + length
+                            + ", actual " + (out.writerIndex() - outputIndex));
+                }
+            }
+        } catch (DecompressionException e) {
+            throw new RuntimeException("snappy decompress error", e);
+        }
+    }
+
+    /**
+     * 读取块开头 varint 编码的原始长度（小端，每个字节 7 位），不移动 readerIndex
+     */
+    private static int readPreamble(ByteBuf block) {
+        long length = 0;
+        for (int i = 0; i < 5 && i < block.readableBytes(); i++) {
+            int b = block.getUnsignedByte(block.readerIndex() + i);
+            length |= (long) (b & 0x7f) << (7 * i);
+            if ((b & 0x80) == 0) {
+                return CompressUtil.checkDecompressedLength("snappy", length);
+            }
+        }
+        throw new RuntimeException("snappy decompress error: invalid preamble");
+    }
+}
@@ -0,0 +1,245 @@
+package github.javaguide.compress.zstd;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDecompressCtx;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdException;
+import github.javaguide.compress.Compress;
+import github.javaguide.compress.CompressUtil;
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.utils.RpcConfigUtil;
+import github.javaguide.utils.StringUtil;
+import io.netty.buffer.ByteBuf;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * zstd 压缩，支持预先训练好的字典。
+ * <p>
+ * RPC 的消息体通常很小，而且每次都是相同的类名、字段名和接口名，通用的压缩算法在这种数据上几乎没有效果，
+ * 用 {@link ZstdDictionaryTrainer} 从真实流量里训练出的字典可以把它们压缩到原来的几分之一。
+ * <p>
+ * 字典 id 由 zstd 写在每个帧的帧头里，解压时按照帧头里的字典 id 选择字典，所以两端不需要额外约定。
+ * 更换字典时先把新字典追加到所有节点的 rpc.compress.zstd.dictionaries 末尾，
+ * 等所有节点都能解压之后再把它挪到第一个，开始用它压缩。
+ * <p>
+ * 配置了字典时不受 rpc.compress.threshold 的限制，几十个字节的消息体用字典也能压缩掉一大半
+ */
+@Slf4j
+public class ZstdCompress implements Compress {
+
+    private static final int DEFAULT_LEVEL = 3;
+    // zstd 帧头的最大长度，原始长度和字典 id 都在帧头里
+    private static final int FRAME_HEADER_MAX_LENGTH = 18;
+
+    private final int level;
+    /**
+     * 压缩时使用的字典，没有配置字典时为 null
+     */
+    private final ZstdDictCompress dictCompress;
+    /**
+     * key: 字典 id
+     * value: 解压用的字典
+     */
+    private final Map<Long, ZstdDictDecompress> dictDecompressMap = new HashMap<>();
+    /**
+     * 每个线程复用一个压缩上下文，压缩级别和字典只需要设置一次
+     */
+    private final ThreadLocal<ZstdCompressCtx> compressCtx = ThreadLocal.withInitial(this::newCompressCtx);
+    /**
+     * 每个线程复用一个解压上下文，每次按照帧头里的字典 id 重新加载字典
+     */
+    private final ThreadLocal<ZstdDecompressCtx> decompressCtx = ThreadLocal.withInitial(ZstdDecompressCtx::new);
+
+    public ZstdCompress() {
+        this(RpcConfigUtil.getInt(RpcConfigEnum.ZSTD_LEVEL, DEFAULT_LEVEL), loadDictionaries());
+    }
+
+    /**
+     * @param level        压缩级别
+     * @param dictionaries 字典，第一个用于压缩，全部用于解压
+     */
+    public ZstdCompress(int level, List<byte[]> dictionaries) {
+        this.level = level;
+        for (byte[] dictionary : dictionaries) {
+            long dictId = Zstd.getDictIdFromDict(dictionary);
+            if (dictId == 0) {
+                throw new IllegalArgumentException("zstd dictionary has no id, please train it with ZstdDictionaryTrainer");
+            }
+            dictDecompressMap.put(dictId, new ZstdDictDecompress(dictionary));
+        }
+        this.dictCompress = dictionaries.isEmpty() ? null : new ZstdDictCompress(dictionaries.get(0), level);
+    }
+
+    @Override
+    public byte[] compress(byte[] bytes) {
+        if (bytes == null) {
+            throw new NullPointerException("bytes is null");
+        }
+        try {
+            return dictCompress == null ? Zstd.compress(bytes, level) : Zstd.compress(bytes, dictCompress);
+        } catch (ZstdException e) {
+            throw new RuntimeException("zstd compress error", e);
+        }
+    }
+
+    @Override
+    public void compress(ByteBuf in, ByteBuf out) {
+        int length = in.readableBytes();
+        int maxLength = (int) Zstd.compressBound(length);
+        out.ensureWritable(maxLength);
+        try {
+            int n;
+            if (in.hasArray() && out.hasArray()) {
+                n = compressCtx.get().compressByteArray(out.array(), out.arrayOffset() + out.writerIndex(), maxLength,
+                        in.array(), in.arrayOffset() + in.readerIndex(), length);
+            } else if (isDirect(in) && isDirect(out)) {
+                n = compressCtx.get().compressDirectByteBuffer(out.nioBuffer(out.writerIndex(), maxLength), 0, maxLength,
+                        in.nioBuffer(), 0, length);
+            } else {
+                Compress.super.compress(in, out);
+                return;
+            }
+            in.skipBytes(length);
+            out.writerIndex(out.writerIndex() + n);
+        } catch (ZstdException e) {
+            throw new RuntimeException("zstd compress error", e);
+        }
+    }
+
+    @Override
+    public int compressThreshold(int threshold) {
+        return dictCompress == null ? threshold : 0;
+    }
+
+    @Override
+    public byte[] decompress(byte[] bytes) {
+        if (bytes == null) {
+            throw new NullPointerException("bytes is null");
+        }
+        // 帧头里记录了原始长度，一次性分配好输出空间
+        int length = CompressUtil.checkDecompressedLength("zstd", Zstd.getFrameContentSize(bytes));
+        long dictId = Zstd.getDictIdFromFrame(bytes);
+        try {
+            if (dictId == 0) {
+                return Zstd.decompress(bytes, length);
+            }
+            return Zstd.decompress(bytes, getDictDecompress(dictId), length);
+        } catch (ZstdException e) {
+            throw new RuntimeException("zstd decompress error", e);
+        }
+    }
+
+    @Override
+    public void decompress(ByteBuf in, ByteBuf out) {
+        int inputLength = in.readableBytes();
+        byte[] header = new byte[Math.min(inputLength, FRAME_HEADER_MAX_LENGTH)];
+        in.getBytes(in.readerIndex(), header);
+        int length = CompressUtil.checkDecompressedLength("zstd", Zstd.getFrameContentSize(header));
+        long dictId = Zstd.getDictIdFromFrame(header);
+        out.ensureWritable(length);
+        try {
+            ZstdDecompressCtx ctx = decompressCtx.get();
+            int n;
+            if (in.hasArray() && out.hasArray()) {
+                n = loadDict(ctx, dictId).decompressByteArray(out.array(), out.arrayOffset() + out.writerIndex(), length,
+                        in.array(), in.arrayOffset() + in.readerIndex(), inputLength);
+            } else if (isDirect(in) && isDirect(out)) {
+                n = loadDict(ctx, dictId).decompressDirectByteBuffer(out.nioBuffer(out.writerIndex(), length), 0, length,
+                        in.nioBuffer(), 0, inputLength);
+            } else {
+                Compress.super.decompress(in, out);
+                return;
+            }
+            if (n != length) {
+                throw new RuntimeException("zstd decompress error: frame content size " + length + ", actual " + n);
+            }
+            in.skipBytes(inputLength);
+            out.writerIndex(out.writerIndex() + n);
+        } catch (ZstdException e) {
+            throw new RuntimeException("zstd decompress error", e);
+        }
+    }
+
+    private ZstdCompressCtx newCompressCtx() {
+        ZstdCompressCtx ctx = new ZstdCompressCtx();
+        ctx.setLevel(level);
+        if (dictCompress != null) {
+            ctx.loadDict(dictCompress);
+        }
+        return ctx;
+    }
+
+    /**
+     * 清掉上一次解压用的字典，再加载这一帧需要的字典
+     */
+    private ZstdDecompressCtx loadDict(ZstdDecompressCtx ctx, long dictId) {
+        ctx.reset();
+        return dictId == 0 ? ctx : ctx.loadDict(getDictDecompress(dictId));
+    }
+
+    private ZstdDictDecompress getDictDecompress(long dictId) {
+        ZstdDictDecompress dictDecompress = dictDecompressMap.get(dictId);
+        if (dictDecompress == null) {
+            throw new RuntimeException("zstd decompress error: unknown dictionary id " + dictId);
+        }
+        return dictDecompress;
+    }
+
+    /**
+     * zstd-jni 只能直接处理单个连续的堆外内存
+     */
+    private static boolean isDirect(ByteBuf buf) {
+        return buf.isDirect() && buf.nioBufferCount() == 1;
+    }
+
+    private static List<byte[]> loadDictionaries() {
+        String paths = RpcConfigUtil.getProperty(RpcConfigEnum.ZSTD_DICTIONARIES, null);
+        if (StringUtil.isBlank(paths)) {
+            return Collections.emptyList();
+        }
+        List<byte[]> dictionaries = new ArrayList<>();
+        for (String path : paths.split(",")) {
+            if (!StringUtil.isBlank(path)) {
+                dictionaries.add(readDictionary(path.trim()));
+            }
+        }
+        return dictionaries;
+    }
+
+    /**
+     * 先从 classpath 中查找字典，找不到再当作文件路径读取
+     */
+    private static byte[] readDictionary(String path) {
+        try (InputStream in = Thread.currentThread().getContextClassLoader().getResourceAsStream(path)) {
+            byte[] dictionary;
+            if (in != null) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                int n;
+                while ((n = in.read(buffer)) > -1) {
+                    out.write(buffer, 0, n);
+                }
+                dictionary = out.toByteArray();
+            } else {
+                dictionary = Files.readAllBytes(Paths.get(path));
+            }
+            log.info("load zstd dictionary [{}], dictionary id [{}]", path, Zstd.getDictIdFromDict(dictionary));
+            return dictionary;
+        } catch (IOException e) {
+            throw new IllegalStateException("read zstd dictionary [" + path + "] fail", e);
+        }
+    }
+}
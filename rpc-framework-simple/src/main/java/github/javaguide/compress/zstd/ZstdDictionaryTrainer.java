@@ -0,0 +1,66 @@
+package github.javaguide.compress.zstd;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictTrainer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 从序列化后的 RpcRequest/RpcResponse 样本中训练 zstd 字典。
+ * <p>
+ * 样本可以通过配置 rpc.compress.zstd.sample.dir 由 {@link ZstdSampleRecorder} 从线上流量中采集，
+ * 训练出来的字典通过 rpc.compress.zstd.dictionaries 配置给 {@link ZstdCompress}：
+ * <pre>
+ *   java -cp ... github.javaguide.compress.zstd.ZstdDictionaryTrainer &lt;sampleDir&gt; &lt;dictionaryFile&gt; [dictionarySize]
+ * </pre>
+ */
+public final class ZstdDictionaryTrainer {
+
+    public static final int DEFAULT_DICTIONARY_SIZE = 16 * 1024;
+
+    private ZstdDictionaryTrainer() {
+    }
+
+    /**
+     * @param samples        样本，每个样本是一个序列化后的消息体
+     * @param dictionarySize 字典的最大字节数
+     * @return 训练好的字典
+     */
+    public static byte[] train(Collection<byte[]> samples, int dictionarySize) {
+        int totalSize = 0;
+        for (byte[] sample : samples) {
+            totalSize += sample.length;
+        }
+        ZstdDictTrainer trainer = new ZstdDictTrainer(totalSize, dictionarySize);
+        for (byte[] sample : samples) {
+            trainer.addSample(sample);
+        }
+        return trainer.trainSamples();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: ZstdDictionaryTrainer <sampleDir> <dictionaryFile> [dictionarySize]");
+            System.exit(1);
+        }
+        int dictionarySize = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_DICTIONARY_SIZE;
+        List<byte[]> samples = new ArrayList<>();
+        try (Stream<Path> files = Files.list(Paths.get(args[0]))) {
+            for (Path file : files.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                samples.add(Files.readAllBytes(file));
+            }
+        }
+        byte[] dictionary = train(samples, dictionarySize);
+        Files.write(Paths.get(args[1]), dictionary);
+        System.out.printf("trained dictionary [%d] from %d samples, %d bytes%n",
+                Zstd.getDictIdFromDict(dictionary), samples.size(), dictionary.length);
+    }
+}
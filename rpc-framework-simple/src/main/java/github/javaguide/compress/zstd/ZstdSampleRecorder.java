@@ -0,0 +1,116 @@
+package github.javaguide.compress.zstd;
+
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.remoting.constants.RpcConstants;
+import github.javaguide.utils.RpcConfigUtil;
+import github.javaguide.utils.StringUtil;
+import github.javaguide.utils.concurrent.threadpool.CustomThreadPoolConfig;
+import github.javaguide.utils.concurrent.threadpool.ThreadPoolFactoryUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 把序列化后、压缩前的消息体保存到 rpc.compress.zstd.sample.dir 下，作为 {@link ZstdDictionaryTrainer} 的训练样本。
+ * 没有配置目录时什么都不做，保存的样本数达到 rpc.compress.zstd.sample.limit 后停止采集。
+ * <p>
+ * 采集在编码消息的时候进行，采集失败不能影响消息的发送：写文件的线程忙不过来时直接丢掉样本，只记一个数
+ */
+@Slf4j
+public class ZstdSampleRecorder {
+
+    private static final int DEFAULT_SAMPLE_LIMIT = 1000;
+    private static final int QUEUE_CAPACITY = 16;
+
+    private final Path sampleDir;
+    private final int sampleLimit;
+    private final AtomicInteger sampleCount = new AtomicInteger(0);
+    // 因为写文件的线程忙不过来而丢掉的样本数
+    private final AtomicInteger skippedCount = new AtomicInteger(0);
+    private final ExecutorService executor;
+
+    public ZstdSampleRecorder() {
+        this(blankToNull(RpcConfigUtil.getProperty(RpcConfigEnum.ZSTD_SAMPLE_DIR, null)),
+                RpcConfigUtil.getInt(RpcConfigEnum.ZSTD_SAMPLE_LIMIT, DEFAULT_SAMPLE_LIMIT));
+    }
+
+    /**
+     * @param sampleDir   样本保存的目录，为 null 时不采集
+     * @param sampleLimit 最多保存的样本数
+     */
+    ZstdSampleRecorder(String sampleDir, int sampleLimit) {
+        this.sampleDir = sampleDir == null ? null : Paths.get(sampleDir);
+        this.sampleLimit = sampleLimit;
+        // 写文件放到单独的一个线程里做，不阻塞 IO 线程；队列满了直接丢掉样本，不抛出异常
+        CustomThreadPoolConfig customThreadPoolConfig = new CustomThreadPoolConfig();
+        customThreadPoolConfig.setCorePoolSize(1);
+        customThreadPoolConfig.setMaximumPoolSize(1);
+        customThreadPoolConfig.setQueueCapacity(QUEUE_CAPACITY);
+        customThreadPoolConfig.setRejectedExecutionHandler((task, threadPool) -> skippedCount.incrementAndGet());
+        this.executor = this.sampleDir == null ? null
+                : ThreadPoolFactoryUtil.createCustomThreadPoolIfAbsent(customThreadPoolConfig, "zstd-sample-recorder-" + sampleDir, true);
+    }
+
+    /**
+     * 保存一个消息体样本，不会改变 body 的 readerIndex
+     *
+     * @param messageType 消息类型
+     * @param body        序列化后的消息体
+     */
+    public void record(byte messageType, ByteBuf body) {
+        if (sampleDir == null) {
+            return;
+        }
+        int index = sampleCount.getAndIncrement();
+        if (index >= sampleLimit) {
+            return;
+        }
+        byte[] bytes = ByteBufUtil.getBytes(body, body.readerIndex(), body.readableBytes());
+        String prefix = prefix(messageType);
+        try {
+            executor.execute(() -> {
+                try {
+                    Files.createDirectories(sampleDir);
+                    Files.write(sampleDir.resolve(prefix + index + ".bin"), bytes);
+                } catch (IOException e) {
+                    log.error("record zstd sample fail", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 线程池已经关闭
+            skippedCount.incrementAndGet();
+        }
+    }
+
+    public int getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    /**
+     * 不同类型的消息体结构不同，用文件名区分开，训练时可以按类型挑选样本
+     */
+    private static String prefix(byte messageType) {
+        switch (messageType) {
+            case RpcConstants.REQUEST_TYPE:
+                return "request-";
+            case RpcConstants.INVOCATION_TYPE:
+                return "invocation-";
+            case RpcConstants.RESPONSE_TYPE:
+                return "response-";
+            default:
+                return "message-" + messageType + "-";
+        }
+    }
+
+    private static String blankToNull(String s) {
+        return StringUtil.isBlank(s) ? null : s;
+    }
+}
@@ -1,5 +1,11 @@
 package github.javaguide.config;
 
+import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.enums.DispatcherEnum;
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.remoting.constants.RpcConstants;
+import github.javaguide.utils.RpcConfigUtil;
+import github.javaguide.utils.StringUtil;
 import lombok.*;
 
 /**
@@ -13,6 +19,10 @@ import lombok.*;
 @Builder
 @ToString
 public class RpcServiceConfig {
+    private static final String DEFAULT_COMPRESS = RpcConfigUtil.getProperty(RpcConfigEnum.COMPRESS_TYPE, CompressTypeEnum.GZIP.getName());
+    private static final String DEFAULT_DISPATCHER = RpcConfigUtil.getProperty(RpcConfigEnum.SERVER_DISPATCHER, DispatcherEnum.POOL.getName());
+    private static final long DEFAULT_TIMEOUT = RpcConfigUtil.getInt(RpcConfigEnum.REQUEST_TIMEOUT, RpcConstants.DEFAULT_REQUEST_TIMEOUT);
+
     /**
      * service version
      */
@@ -22,6 +32,34 @@ public class RpcServiceConfig {
      */
     private String group = "";
 
+    /**
+     * compress type of the messages sent for this service, such as gzip, lz4, snappy, zstd and adaptive.
+     * rpc.compress.type is used when it is null or empty
+     */
+    private String compress;
+
+    /**
+     * timeout of each call in milliseconds, rpc.request.timeout is used when it is not positive
+     */
+    private long timeout;
+
+    /**
+     * how the server runs the methods of this service, such as direct, pool, ordered and ringbuffer.
+     * rpc.server.dispatcher is used when it is null or empty
+     */
+    private String dispatcher;
+
+    /**
+     * number of threads dedicated to this service. When it is positive the service runs on its own pool
+     * instead of the dispatcher, so a slow service can not use up the threads of the others
+     */
+    private int threads;
+
+    /**
+     * queue size of the dedicated pool, requests are rejected as soon as all threads are busy when it is not positive
+     */
+    private int queues;
+
     /**
      * target service
      */
@@ -31,6 +69,18 @@ public class RpcServiceConfig {
         return this.getServiceName() + this.getGroup() + this.getVersion();
     }
 
+    public byte getCompressCode() {
+        return CompressTypeEnum.getCode(StringUtil.isBlank(this.compress) ? DEFAULT_COMPRESS : this.compress);
+    }
+
+    public String getDispatcherName() {
+        return StringUtil.isBlank(this.dispatcher) ? DEFAULT_DISPATCHER : this.dispatcher;
+    }
+
+    public long getTimeoutMillis() {
+        return this.timeout > 0 ? this.timeout : DEFAULT_TIMEOUT;
+    }
+
     public String getServiceName() {
         return this.service.getClass().getInterfaces()[0].getCanonicalName();
     }
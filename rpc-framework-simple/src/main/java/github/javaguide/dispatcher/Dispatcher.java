@@ -0,0 +1,22 @@
+package github.javaguide.dispatcher;
+
+import github.javaguide.extension.SPI;
+import io.netty.channel.Channel;
+
+/**
+ * 服务端的请求调度，决定服务方法在哪个线程里执行。
+ * <p>
+ * 请求在 IO 线程里解码、找到要调用的方法之后交给发布服务时选择的 Dispatcher，见 {@link github.javaguide.enums.DispatcherEnum}
+ */
+@SPI
+public interface Dispatcher {
+
+    /**
+     * 执行一个请求
+     *
+     * @param channel 请求所在的连接，按连接保序的调度方式用它区分请求
+     * @param task    调用服务方法并写回响应，不会抛出异常
+     * @throws java.util.concurrent.RejectedExecutionException 没有容量执行这个请求，客户端会收到 BUSY 响应
+     */
+    void dispatch(Channel channel, Runnable task);
+}
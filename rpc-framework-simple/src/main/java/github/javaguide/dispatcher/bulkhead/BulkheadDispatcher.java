@@ -0,0 +1,42 @@
+package github.javaguide.dispatcher.bulkhead;
+
+import github.javaguide.dispatcher.Dispatcher;
+import github.javaguide.utils.concurrent.threadpool.CustomThreadPoolConfig;
+import github.javaguide.utils.concurrent.threadpool.ThreadPoolFactoryUtil;
+import io.netty.channel.Channel;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 服务独占的线程池（舱壁隔离），一个慢的服务用满了自己的线程和队列也不会影响其他服务。
+ * <p>
+ * 线程池按照服务名通过 {@link ThreadPoolFactoryUtil} 创建，同一个服务的所有方法共用一个。
+ * 线程和队列都满了之后抛出 RejectedExecutionException，客户端收到 BUSY 响应。
+ * 不能在调用线程里执行，调用线程是 IO 线程，会把这个 event loop 上的所有连接都卡住
+ */
+public class BulkheadDispatcher implements Dispatcher {
+
+    private static final String THREAD_NAME_PREFIX = "bulkhead-";
+
+    private final ExecutorService executor;
+
+    /**
+     * @param rpcServiceName 服务名，同名的服务共用一个线程池
+     * @param threads        线程数
+     * @param queues         队列长度，不大于 0 时不排队，线程都在忙时直接拒绝
+     */
+    public BulkheadDispatcher(String rpcServiceName, int threads, int queues) {
+        CustomThreadPoolConfig customThreadPoolConfig = new CustomThreadPoolConfig();
+        customThreadPoolConfig.setCorePoolSize(threads);
+        customThreadPoolConfig.setMaximumPoolSize(threads);
+        customThreadPoolConfig.setQueueCapacity(Math.max(0, queues));
+        customThreadPoolConfig.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        this.executor = ThreadPoolFactoryUtil.createCustomThreadPoolIfAbsent(customThreadPoolConfig, THREAD_NAME_PREFIX + rpcServiceName, true);
+    }
+
+    @Override
+    public void dispatch(Channel channel, Runnable task) {
+        executor.execute(task);
+    }
+}
@@ -0,0 +1,16 @@
+package github.javaguide.dispatcher.direct;
+
+import github.javaguide.dispatcher.Dispatcher;
+import io.netty.channel.Channel;
+
+/**
+ * 直接在 IO 线程里执行，没有线程切换的开销。
+ * 服务方法阻塞时同一个 event loop 上的所有连接都会停下来，只适合很快并且不会阻塞的方法
+ */
+public class DirectDispatcher implements Dispatcher {
+
+    @Override
+    public void dispatch(Channel channel, Runnable task) {
+        task.run();
+    }
+}
@@ -0,0 +1,102 @@
+package github.javaguide.dispatcher.ordered;
+
+import github.javaguide.dispatcher.Dispatcher;
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.utils.RpcConfigUtil;
+import github.javaguide.utils.RuntimeUtil;
+import io.netty.channel.Channel;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 同一个连接上的请求按照到达的顺序依次执行，不同的连接在共享的线程池里并行执行。
+ * <p>
+ * 和 DefaultEventExecutorGroup 不同，连接不绑定在某一个线程上：每个连接有自己的任务队列，
+ * 有任务时整个队列作为一个任务交给线程池，哪个线程空闲就由哪个线程执行，一个连接上的慢调用不会挡住别的连接
+ */
+@Slf4j
+public class OrderedDispatcher implements Dispatcher {
+
+    private static final AttributeKey<SerialExecutor> KEY = AttributeKey.valueOf("orderedDispatcher");
+    // 一次最多连续执行一个连接上的多少个请求，之后让出线程，避免一个很忙的连接一直占着线程
+    private static final int BATCH = 16;
+
+    private final ForkJoinPool pool;
+
+    public OrderedDispatcher() {
+        this(RpcConfigUtil.getInt(RpcConfigEnum.SERVER_DISPATCHER_THREADS, RuntimeUtil.cpus() * 2));
+    }
+
+    public OrderedDispatcher(int threads) {
+        this.pool = new ForkJoinPool(threads, OrderedDispatcher::newThread, null, true);
+    }
+
+    @Override
+    public void dispatch(Channel channel, Runnable task) {
+        Attribute<SerialExecutor> attribute = channel.attr(KEY);
+        SerialExecutor serialExecutor = attribute.get();
+        if (serialExecutor == null) {
+            SerialExecutor created = new SerialExecutor(pool);
+            serialExecutor = attribute.setIfAbsent(created);
+            if (serialExecutor == null) {
+                serialExecutor = created;
+            }
+        }
+        serialExecutor.execute(task);
+    }
+
+    private static ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("dispatcher-ordered-" + thread.getPoolIndex());
+        return thread;
+    }
+
+    /**
+     * 一个连接的任务队列，同一时间最多只有一个线程在执行它
+     */
+    private static final class SerialExecutor implements Runnable {
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        // 队列是否已经交给了线程池
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final Executor executor;
+
+        private SerialExecutor(Executor executor) {
+            this.executor = executor;
+        }
+
+        private void execute(Runnable task) {
+            tasks.add(task);
+            if (scheduled.compareAndSet(false, true)) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < BATCH; i++) {
+                Runnable task = tasks.poll();
+                if (task == null) {
+                    break;
+                }
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    log.error("dispatched task failed", t);
+                }
+            }
+            scheduled.set(false);
+            // 清除 scheduled 之前进来的任务，提交它的线程以为队列还在执行，这里要重新提交
+            if (!tasks.isEmpty() && scheduled.compareAndSet(false, true)) {
+                executor.execute(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package github.javaguide.dispatcher.pool;
+
+import github.javaguide.dispatcher.Dispatcher;
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.utils.RpcConfigUtil;
+import github.javaguide.utils.RuntimeUtil;
+import io.netty.channel.Channel;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * 所有连接共享一个 work-stealing 线程池，同一个连接上的请求也会并行执行，
+ * 一个慢的调用不会挡住这个连接后面的请求，空闲的线程会从忙的线程那里拿任务
+ */
+public class PoolDispatcher implements Dispatcher {
+
+    private final ForkJoinPool pool;
+
+    public PoolDispatcher() {
+        this(RpcConfigUtil.getInt(RpcConfigEnum.SERVER_DISPATCHER_THREADS, RuntimeUtil.cpus() * 2));
+    }
+
+    public PoolDispatcher(int threads) {
+        // asyncMode 为 true 时每个线程的本地队列先进先出，适合互相独立、不会再 fork 的请求
+        this.pool = new ForkJoinPool(threads, PoolDispatcher::newThread, null, true);
+    }
+
+    @Override
+    public void dispatch(Channel channel, Runnable task) {
+        pool.execute(task);
+    }
+
+    private static ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("dispatcher-pool-" + thread.getPoolIndex());
+        return thread;
+    }
+}
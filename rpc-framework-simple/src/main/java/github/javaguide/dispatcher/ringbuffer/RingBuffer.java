@@ -0,0 +1,90 @@
+package github.javaguide.dispatcher.ringbuffer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 固定容量的多生产者多消费者环形缓冲区，没有锁。
+ * <p>
+ * 和 Disruptor 一样，槽位是预先分配好的数组，生产者和消费者各自通过 CAS 推进自己的序号，
+ * 每个槽位再记录一个序号，用来判断这个槽位现在是可写还是可读，不需要额外的节点对象
+ */
+final class RingBuffer<E> {
+
+    private final int mask;
+    private final Object[] elements;
+    // 槽位 i 的序号等于 pos 时可以写入第 pos 个元素，等于 pos + 1 时第 pos 个元素可以读取
+    private final AtomicLongArray sequences;
+    // 下一个写入的位置
+    private final AtomicLong tail = new AtomicLong();
+    // 下一个读取的位置
+    private final AtomicLong head = new AtomicLong();
+
+    RingBuffer(int capacity) {
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.mask = size - 1;
+        this.elements = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @return 缓冲区满了时返回 false
+     */
+    boolean offer(E element) {
+        long pos = tail.get();
+        for (; ; ) {
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    elements[index] = element;
+                    // 发布：消费者读到新的序号时一定能看到写入的元素
+                    sequences.lazySet(index, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                // 这个槽位上一轮的元素还没有被读走
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * @return 缓冲区空时返回 null
+     */
+    @SuppressWarnings("unchecked")
+    E poll() {
+        long pos = head.get();
+        for (; ; ) {
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - (pos + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    E element = (E) elements[index];
+                    elements[index] = null;
+                    // 槽位留给下一轮的生产者
+                    sequences.lazySet(index, pos + mask + 1);
+                    return element;
+                }
+                pos = head.get();
+            } else if (diff < 0) {
+                return null;
+            } else {
+                pos = head.get();
+            }
+        }
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,117 @@
+package github.javaguide.dispatcher.ringbuffer;
+
+import github.javaguide.dispatcher.Dispatcher;
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.remoting.constants.RpcConstants;
+import github.javaguide.utils.RpcConfigUtil;
+import github.javaguide.utils.RuntimeUtil;
+import github.javaguide.utils.concurrent.threadpool.ThreadPoolFactoryUtil;
+import io.netty.channel.Channel;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * IO 线程把请求放进无锁的环形缓冲区，固定数量的工作线程从里面取出来执行，交接时没有锁，也不为每个请求创建队列节点。
+ * <p>
+ * 工作线程没有任务时先自旋，再 yield，最后登记自己并 park，生产者放入任务后唤醒一个登记过的线程，空闲的线程不会反复醒来。
+ * 缓冲区满了时 IO 线程只短暂地重试几次，仍然没有空位就抛出 RejectedExecutionException，客户端收到 BUSY 响应，
+ * 不会卡住这个 event loop 上的其他连接
+ */
+@Slf4j
+public class RingBufferDispatcher implements Dispatcher {
+
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    // 缓冲区满了时 IO 线程最多重试的次数
+    private static final int OFFER_TRIES = 64;
+    // 正常情况下由生产者唤醒，这个时间只是防止意外漏掉唤醒
+    private static final long PARK_NANOS = 10_000_000L;
+
+    private final RingBuffer<Runnable> ringBuffer;
+    // park 中等待任务的工作线程
+    private final Queue<Thread> parkedConsumers = new ConcurrentLinkedQueue<>();
+
+    public RingBufferDispatcher() {
+        this(RpcConfigUtil.getInt(RpcConfigEnum.SERVER_DISPATCHER_THREADS, RuntimeUtil.cpus() * 2),
+                RpcConfigUtil.getInt(RpcConfigEnum.SERVER_DISPATCHER_RING_BUFFER_SIZE, RpcConstants.DEFAULT_DISPATCHER_RING_BUFFER_SIZE));
+    }
+
+    public RingBufferDispatcher(int threads, int bufferSize) {
+        this.ringBuffer = new RingBuffer<>(bufferSize);
+        ThreadFactory threadFactory = ThreadPoolFactoryUtil.createThreadFactory("dispatcher-ringbuffer", true);
+        for (int i = 0; i < threads; i++) {
+            threadFactory.newThread(this::consume).start();
+        }
+    }
+
+    @Override
+    public void dispatch(Channel channel, Runnable task) {
+        int tries = 0;
+        while (!ringBuffer.offer(task)) {
+            if (++tries >= OFFER_TRIES) {
+                // 工作线程都很忙，不在 IO 线程里一直等下去
+                throw new RejectedExecutionException("ring buffer is full, capacity: " + ringBuffer.capacity());
+            }
+            Thread.yield();
+        }
+        if (!parkedConsumers.isEmpty()) {
+            Thread consumer = parkedConsumers.poll();
+            if (consumer != null) {
+                LockSupport.unpark(consumer);
+            }
+        }
+    }
+
+    private void consume() {
+        int idle = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            Runnable task = ringBuffer.poll();
+            if (task == null) {
+                if (idle < SPIN_TRIES + YIELD_TRIES) {
+                    idle = spinOrYield(idle);
+                    continue;
+                }
+                task = park();
+                if (task == null) {
+                    continue;
+                }
+            }
+            idle = 0;
+            try {
+                task.run();
+            } catch (Throwable t) {
+                log.error("dispatched task failed", t);
+            }
+        }
+    }
+
+    private static int spinOrYield(int idle) {
+        if (idle >= SPIN_TRIES) {
+            Thread.yield();
+        }
+        return idle + 1;
+    }
+
+    /**
+     * 先登记再检查一次缓冲区：生产者放入任务之后才检查登记的线程，
+     * 所以要么这里能取到任务，要么生产者能看到登记并唤醒这个线程，不会漏掉唤醒
+     *
+     * @return 登记之后取到的任务，没有时 park 到被唤醒，返回 null
+     */
+    private Runnable park() {
+        Thread current = Thread.currentThread();
+        parkedConsumers.offer(current);
+        Runnable task = ringBuffer.poll();
+        if (task == null) {
+            LockSupport.parkNanos(this, PARK_NANOS);
+        }
+        // 被生产者唤醒时已经不在队列里了，超时或者取到任务时自己移除
+        parkedConsumers.remove(current);
+        return task;
+    }
+}
@@ -0,0 +1,40 @@
+package github.javaguide.dispatcher.virtual;
+
+import github.javaguide.dispatcher.Dispatcher;
+import github.javaguide.dispatcher.pool.PoolDispatcher;
+import github.javaguide.utils.concurrent.threadpool.VirtualThreadUtil;
+import io.netty.channel.Channel;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 每个请求一个虚拟线程（JDK 21+），服务方法里的阻塞 IO 只挂起虚拟线程，
+ * 几万个同时阻塞的请求也不需要调整线程池大小。JDK 21 以下退化为 {@link PoolDispatcher}
+ */
+@Slf4j
+public class VirtualThreadDispatcher implements Dispatcher {
+
+    private final ExecutorService executor;
+    private final Dispatcher fallback;
+
+    public VirtualThreadDispatcher() {
+        this.executor = VirtualThreadUtil.newVirtualThreadPerTaskExecutor("dispatcher-virtual");
+        if (executor == null) {
+            log.warn("virtual threads require JDK 21+, current is [{}], fall back to pool dispatcher",
+                    System.getProperty("java.version"));
+            this.fallback = new PoolDispatcher();
+        } else {
+            this.fallback = null;
+        }
+    }
+
+    @Override
+    public void dispatch(Channel channel, Runnable task) {
+        if (executor == null) {
+            fallback.dispatch(channel, task);
+            return;
+        }
+        executor.execute(task);
+    }
+}
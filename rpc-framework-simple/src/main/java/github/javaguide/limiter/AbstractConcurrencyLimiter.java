@@ -0,0 +1,110 @@
+package github.javaguide.limiter;
+
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.remoting.constants.RpcConstants;
+import github.javaguide.utils.RpcConfigUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 计数和限制的检查在这里，子类只需要按照采样计算新的限制。
+ * 获得许可是无锁的，采样更新限制时加锁，计算很简单，持有锁的时间很短
+ */
+@Slf4j
+public abstract class AbstractConcurrencyLimiter implements ConcurrencyLimiter {
+
+    protected final int minLimit;
+    protected final int maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // 计算出的限制，保留小数部分，每次很小的增长也能累积起来；只在锁里访问
+    private double estimate;
+    // estimate 取整之后的值，获得许可时不加锁读取
+    private volatile int limit;
+
+    protected AbstractConcurrencyLimiter() {
+        this(RpcConfigUtil.getInt(RpcConfigEnum.SERVER_LIMITER_INITIAL_LIMIT, RpcConstants.DEFAULT_LIMITER_INITIAL_LIMIT),
+                RpcConfigUtil.getInt(RpcConfigEnum.SERVER_LIMITER_MIN_LIMIT, RpcConstants.DEFAULT_LIMITER_MIN_LIMIT),
+                RpcConfigUtil.getInt(RpcConfigEnum.SERVER_LIMITER_MAX_LIMIT, RpcConstants.DEFAULT_LIMITER_MAX_LIMIT));
+    }
+
+    protected AbstractConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = clamp(initialLimit);
+        this.estimate = this.limit;
+    }
+
+    @Override
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void onSuccess(long rttNanos) {
+        // 采样时的并发数包括这个请求自己
+        int current = inFlight.getAndDecrement();
+        synchronized (this) {
+            update(newLimit(estimate, rttNanos, current));
+        }
+    }
+
+    @Override
+    public void onDropped() {
+        inFlight.decrementAndGet();
+        synchronized (this) {
+            update(dropLimit(estimate));
+        }
+    }
+
+    @Override
+    public void onIgnore() {
+        inFlight.decrementAndGet();
+    }
+
+    @Override
+    public int getLimit() {
+        return limit;
+    }
+
+    @Override
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * 按照一次采样计算新的限制，在锁里调用
+     *
+     * @param limit    当前的限制
+     * @param rttNanos 响应时间
+     * @param inFlight 这个请求完成时正在执行的请求数，包括它自己
+     * @return 新的限制，超出 [minLimit, maxLimit] 的部分会被截掉
+     */
+    protected abstract double newLimit(double limit, long rttNanos, int inFlight);
+
+    /**
+     * 请求因为过载被丢弃时的新限制，在锁里调用
+     */
+    protected abstract double dropLimit(double limit);
+
+    private void update(double newLimit) {
+        estimate = Math.min(maxLimit, Math.max(minLimit, newLimit));
+        int updated = clamp((int) estimate);
+        if (updated != limit) {
+            log.debug("concurrency limit [{}] -> [{}]", limit, updated);
+            limit = updated;
+        }
+    }
+
+    private int clamp(int value) {
+        return Math.min(maxLimit, Math.max(minLimit, value));
+    }
+}
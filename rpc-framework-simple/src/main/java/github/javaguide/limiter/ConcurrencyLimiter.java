@@ -0,0 +1,46 @@
+package github.javaguide.limiter;
+
+import github.javaguide.extension.SPI;
+
+/**
+ * 服务端的自适应并发限制，放在 RpcRequestHandler 执行服务方法之前。
+ * <p>
+ * 按照观察到的响应时间调整允许同时执行的请求数，超过的请求立即返回 OVERLOADED 响应，客户端可以换一个服务端，
+ * 不会在线程池的队列里一直排到超时。流量突增时被接受的请求的响应时间保持在接近最小值的水平。
+ * 每个请求 {@link #tryAcquire()} 成功之后必须调用且只调用一次 onSuccess、onDropped 或 onIgnore
+ */
+@SPI
+public interface ConcurrencyLimiter {
+
+    /**
+     * @return 获得许可时返回 true，否则应当立即拒绝这个请求
+     */
+    boolean tryAcquire();
+
+    /**
+     * 请求正常完成，响应时间作为一次采样
+     *
+     * @param rttNanos 从获得许可到得到结果的时间，包括在线程池里排队的时间，单位纳秒
+     */
+    void onSuccess(long rttNanos);
+
+    /**
+     * 请求因为过载被丢弃，比如线程池满了，限制应当变小
+     */
+    void onDropped();
+
+    /**
+     * 请求结束但是不作为采样，比如服务方法抛出了异常
+     */
+    void onIgnore();
+
+    /**
+     * @return 当前允许同时执行的请求数
+     */
+    int getLimit();
+
+    /**
+     * @return 正在执行的请求数
+     */
+    int getInFlight();
+}
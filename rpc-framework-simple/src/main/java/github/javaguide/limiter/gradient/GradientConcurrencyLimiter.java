@@ -0,0 +1,62 @@
+package github.javaguide.limiter.gradient;
+
+import github.javaguide.limiter.AbstractConcurrencyLimiter;
+
+/**
+ * 梯度方式的并发限制。
+ * <p>
+ * 用长期的平均响应时间作为基准，和当前的响应时间比较得到梯度：当前的响应时间比基准长时梯度小于 1，限制按比例变小，
+ * 否则限制保持不变再加上一个小的排队余量，逐渐增大。新的限制和旧的限制做平滑，单次采样的抖动不会让限制大幅变化。
+ * 响应时间长期变长后基准会跟上来，这时限制重新开始增长，找到新的响应时间下合适的并发数
+ */
+public class GradientConcurrencyLimiter extends AbstractConcurrencyLimiter {
+
+    // 当前的响应时间不超过基准的 TOLERANCE 倍时不减小限制
+    private static final double TOLERANCE = 1.5;
+    // 每次最多减小一半
+    private static final double MIN_GRADIENT = 0.5;
+    // 新的限制在结果里的比重
+    private static final double SMOOTHING = 0.2;
+    // 长期平均响应时间的窗口，单位是采样次数
+    private static final int LONG_WINDOW = 600;
+    // 请求被丢弃时限制乘上这个系数
+    private static final double DROP_FACTOR = 0.9;
+
+    // 以下字段只在锁里访问，单位纳秒
+    private double longRtt;
+
+    public GradientConcurrencyLimiter() {
+        super();
+    }
+
+    public GradientConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        super(initialLimit, minLimit, maxLimit);
+    }
+
+    @Override
+    protected double newLimit(double limit, long rttNanos, int inFlight) {
+        if (longRtt == 0) {
+            longRtt = rttNanos;
+        } else {
+            longRtt += (rttNanos - longRtt) / LONG_WINDOW;
+            // 负载下降后基准会偏高，比当前高出太多时加快回落
+            if (longRtt > rttNanos * 2) {
+                longRtt *= 0.95;
+            }
+        }
+        // 并发还没用到一半说明请求量本来就少，响应时间不能说明限制是否合适
+        if (inFlight * 2 < limit) {
+            return limit;
+        }
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, TOLERANCE * longRtt / rttNanos));
+        // 允许少量排队，限制才能增长
+        double queueSize = Math.sqrt(limit);
+        double newLimit = limit * gradient + queueSize;
+        return limit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+    }
+
+    @Override
+    protected double dropLimit(double limit) {
+        return limit * DROP_FACTOR;
+    }
+}
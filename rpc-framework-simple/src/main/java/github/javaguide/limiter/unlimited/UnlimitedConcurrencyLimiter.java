@@ -0,0 +1,36 @@
+package github.javaguide.limiter.unlimited;
+
+import github.javaguide.limiter.ConcurrencyLimiter;
+
+/**
+ * 不限制并发，默认的方式
+ */
+public class UnlimitedConcurrencyLimiter implements ConcurrencyLimiter {
+
+    @Override
+    public boolean tryAcquire() {
+        return true;
+    }
+
+    @Override
+    public void onSuccess(long rttNanos) {
+    }
+
+    @Override
+    public void onDropped() {
+    }
+
+    @Override
+    public void onIgnore() {
+    }
+
+    @Override
+    public int getLimit() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public int getInFlight() {
+        return 0;
+    }
+}
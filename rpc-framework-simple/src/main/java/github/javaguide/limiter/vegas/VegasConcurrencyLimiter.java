@@ -0,0 +1,75 @@
+package github.javaguide.limiter.vegas;
+
+import github.javaguide.limiter.AbstractConcurrencyLimiter;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * TCP Vegas 风格的并发限制。
+ * <p>
+ * 记录没有排队时的最小响应时间 rttNoLoad，用 limit * (1 - rttNoLoad / rtt) 估计正在排队的请求数：
+ * 排队少于 alpha 时增大限制，多于 beta 时减小限制，在两者之间时保持不变。
+ * 负载长期变化后 rttNoLoad 可能不再准确，每隔一段采样重新测一次
+ */
+public class VegasConcurrencyLimiter extends AbstractConcurrencyLimiter {
+
+    // 大约每 PROBE_MULTIPLIER * limit 个采样重新测一次 rttNoLoad
+    private static final int PROBE_MULTIPLIER = 30;
+
+    // 以下字段只在锁里访问
+    private long rttNoLoad;
+    private long samplesUntilProbe;
+
+    public VegasConcurrencyLimiter() {
+        super();
+        this.samplesUntilProbe = nextProbe(getLimit());
+    }
+
+    public VegasConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        super(initialLimit, minLimit, maxLimit);
+        this.samplesUntilProbe = nextProbe(getLimit());
+    }
+
+    @Override
+    protected double newLimit(double limit, long rttNanos, int inFlight) {
+        if (--samplesUntilProbe <= 0) {
+            // 用当前的响应时间作为新的基准，重新开始测量
+            samplesUntilProbe = nextProbe(limit);
+            rttNoLoad = rttNanos;
+            return limit;
+        }
+        if (rttNoLoad == 0 || rttNanos < rttNoLoad) {
+            rttNoLoad = rttNanos;
+            return limit;
+        }
+        // 并发还没用到一半说明请求量本来就少，响应时间不能说明限制是否合适
+        if (inFlight * 2 < limit) {
+            return limit;
+        }
+        double log = log10(limit);
+        int queueSize = (int) Math.ceil(limit * (1 - (double) rttNoLoad / rttNanos));
+        if (queueSize <= log) {
+            // 几乎没有排队，快速增大
+            return limit + 6 * log;
+        } else if (queueSize < 3 * log) {
+            return limit + log;
+        } else if (queueSize > 6 * log) {
+            return limit - log;
+        }
+        return limit;
+    }
+
+    @Override
+    protected double dropLimit(double limit) {
+        return limit - log10(limit);
+    }
+
+    private static double log10(double limit) {
+        return Math.max(1, Math.log10(limit));
+    }
+
+    private static long nextProbe(double limit) {
+        // 加一点随机，多个服务端不会同时重新测量
+        return (long) (PROBE_MULTIPLIER * limit * (1 + ThreadLocalRandom.current().nextDouble()));
+    }
+}
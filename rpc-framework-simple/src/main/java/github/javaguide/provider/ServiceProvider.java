@@ -1,6 +1,7 @@
 package github.javaguide.provider;
 
 import github.javaguide.config.RpcServiceConfig;
+import github.javaguide.remoting.handler.ServiceMethod;
 
 /**
  * zk的对外接口，后面我们要干什么只需要通过单例模式获得这个类，然后用这个类的方法
@@ -17,6 +18,20 @@ public interface ServiceProvider {
 
     Object getService(String rpcServiceName);
 
+    /**
+     * 获取服务发布时的配置，例如服务端响应使用的压缩方式
+     */
+    RpcServiceConfig getServiceConfig(String rpcServiceName);
+
+    /**
+     * 获取服务发布时解析好的方法
+     *
+     * @param rpcServiceName interface name + group + version
+     * @param methodName     method name
+     * @param paramTypes     parameter types, used to distinguish overloaded methods
+     */
+    ServiceMethod getServiceMethod(String rpcServiceName, String methodName, Class<?>[] paramTypes);
+
     /**
      * 注册服务到 zookeeper 中（服务发现与注册）
      */
@@ -7,12 +7,18 @@ import github.javaguide.exception.RpcException;
 import github.javaguide.extension.ExtensionLoader;
 import github.javaguide.provider.ServiceProvider;
 import github.javaguide.registry.ServiceRegistry;
+import github.javaguide.remoting.handler.ServiceMethod;
 import github.javaguide.remoting.transport.netty.server.NettyRpcServer;
 import lombok.extern.slf4j.Slf4j;
 
+import java.lang.reflect.Method;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -26,14 +32,20 @@ public class ZkServiceProviderImpl implements ServiceProvider {
 
     /**
      * key: rpc service name(interface name + version + group)
-     * value: service object
+     * value: service config, which holds the service object
      */
-    private final Map<String, Object> serviceMap;
+    private final Map<String, RpcServiceConfig> serviceMap;
+    /**
+     * key: rpc service name
+     * value: 服务接口的方法，key 是方法名，value 是这个名字的所有重载
+     */
+    private final Map<String, Map<String, ServiceMethod[]>> serviceMethodMap;
     private final Set<String> registeredService;
     private final ServiceRegistry serviceRegistry;
 
     public ZkServiceProviderImpl() {
         serviceMap = new ConcurrentHashMap<>();
+        serviceMethodMap = new ConcurrentHashMap<>();
         registeredService = ConcurrentHashMap.newKeySet();
         serviceRegistry = ExtensionLoader.getExtensionLoader(ServiceRegistry.class).getExtension(ServiceRegistryEnum.ZK.getName());
     }
@@ -45,17 +57,40 @@ public class ZkServiceProviderImpl implements ServiceProvider {
             return;
         }
         registeredService.add(rpcServiceName);
-        serviceMap.put(rpcServiceName, rpcServiceConfig.getService());
+        serviceMethodMap.put(rpcServiceName, resolveServiceMethods(rpcServiceConfig));
+        serviceMap.put(rpcServiceName, rpcServiceConfig);
         log.info("Add service: {} and interfaces:{}", rpcServiceName, rpcServiceConfig.getService().getClass().getInterfaces());
     }
 
     @Override
     public Object getService(String rpcServiceName) {
-        Object service = serviceMap.get(rpcServiceName);
-        if (null == service) {
+        return getServiceConfig(rpcServiceName).getService();
+    }
+
+    @Override
+    public RpcServiceConfig getServiceConfig(String rpcServiceName) {
+        RpcServiceConfig rpcServiceConfig = serviceMap.get(rpcServiceName);
+        if (null == rpcServiceConfig) {
+            throw new RpcException(RpcErrorMessageEnum.SERVICE_CAN_NOT_BE_FOUND);
+        }
+        return rpcServiceConfig;
+    }
+
+    @Override
+    public ServiceMethod getServiceMethod(String rpcServiceName, String methodName, Class<?>[] paramTypes) {
+        Map<String, ServiceMethod[]> serviceMethods = serviceMethodMap.get(rpcServiceName);
+        if (null == serviceMethods) {
             throw new RpcException(RpcErrorMessageEnum.SERVICE_CAN_NOT_BE_FOUND);
         }
-        return service;
+        ServiceMethod[] overloads = serviceMethods.get(methodName);
+        if (null != overloads) {
+            for (ServiceMethod serviceMethod : overloads) {
+                if (serviceMethod.matches(paramTypes)) {
+                    return serviceMethod;
+                }
+            }
+        }
+        throw new RpcException(RpcErrorMessageEnum.SERVICE_CAN_NOT_BE_FOUND, rpcServiceName + "#" + methodName + Arrays.toString(paramTypes));
     }
 
     @Override
@@ -71,4 +106,18 @@ public class ZkServiceProviderImpl implements ServiceProvider {
         }
     }
 
+    /**
+     * 服务发布时为接口的每个方法创建调用器，处理请求时只需要按照方法名和参数类型查表
+     */
+    private static Map<String, ServiceMethod[]> resolveServiceMethods(RpcServiceConfig rpcServiceConfig) {
+        Class<?> serviceInterface = rpcServiceConfig.getService().getClass().getInterfaces()[0];
+        Map<String, List<ServiceMethod>> overloads = new HashMap<>();
+        for (Method method : serviceInterface.getMethods()) {
+            overloads.computeIfAbsent(method.getName(), k -> new ArrayList<>()).add(new ServiceMethod(rpcServiceConfig, method));
+        }
+        Map<String, ServiceMethod[]> serviceMethods = new HashMap<>(overloads.size() * 2);
+        overloads.forEach((name, methods) -> serviceMethods.put(name, methods.toArray(new ServiceMethod[0])));
+        return serviceMethods;
+    }
+
 }
@@ -0,0 +1,58 @@
+package github.javaguide.proxy;
+
+import github.javaguide.config.RpcServiceConfig;
+import github.javaguide.remoting.transport.RpcRequestTransport;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+
+/**
+ * 不需要服务接口的异步客户端，按照接口名、方法名和参数类型调用远程方法。
+ * <p>
+ * 调用线程只负责发出请求，返回的 future 在收到响应的 Netty 线程里完成，等待响应期间不占用任何线程。
+ * 回调里有耗时操作时，使用 {@link #invoke(String, String, Class[], Object[], BiConsumer)}，回调在构造时指定的线程池里执行
+ */
+public class AsyncRpcClient {
+
+    private final RpcServiceConfig rpcServiceConfig;
+    private final RpcClientProxy rpcClientProxy;
+    private final Executor callbackExecutor;
+
+    public AsyncRpcClient(RpcRequestTransport rpcRequestTransport, RpcServiceConfig rpcServiceConfig) {
+        this(rpcRequestTransport, rpcServiceConfig, null);
+    }
+
+    /**
+     * @param callbackExecutor 执行回调的线程池，为空时回调在 Netty 的 IO 线程里执行
+     */
+    public AsyncRpcClient(RpcRequestTransport rpcRequestTransport, RpcServiceConfig rpcServiceConfig, Executor callbackExecutor) {
+        this.rpcServiceConfig = rpcServiceConfig;
+        this.rpcClientProxy = new RpcClientProxy(rpcRequestTransport, rpcServiceConfig);
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    /**
+     * @return 收到成功的响应时完成，值是远程方法的返回值
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> invoke(String interfaceName, String methodName, Class<?>[] paramTypes, Object[] args) {
+        RpcMethod rpcMethod = new RpcMethod(interfaceName, methodName, paramTypes, true, rpcServiceConfig);
+        return (CompletableFuture<T>) rpcClientProxy.invokeAsync(rpcMethod, args);
+    }
+
+    /**
+     * @param callback 调用完成后在 callbackExecutor 里执行，成功时 throwable 为空，失败时 result 为空
+     */
+    public <T> void invoke(String interfaceName, String methodName, Class<?>[] paramTypes, Object[] args,
+                           BiConsumer<? super T, ? super Throwable> callback) {
+        Objects.requireNonNull(callback, "callback");
+        CompletableFuture<T> future = invoke(interfaceName, methodName, paramTypes, args);
+        if (callbackExecutor == null) {
+            future.whenComplete(callback);
+        } else {
+            future.whenCompleteAsync(callback, callbackExecutor);
+        }
+    }
+}
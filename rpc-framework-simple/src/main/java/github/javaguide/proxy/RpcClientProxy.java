@@ -7,19 +7,20 @@ import github.javaguide.exception.RpcException;
 import github.javaguide.remoting.dto.RpcRequest;
 import github.javaguide.remoting.dto.RpcResponse;
 import github.javaguide.remoting.transport.RpcRequestTransport;
-import github.javaguide.remoting.transport.netty.client.NettyRpcClient;
-import github.javaguide.remoting.transport.socket.SocketRpcClient;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
-import java.util.UUID;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 
 /**
- * 动态代理类
+ * 动态代理类，也是生成的 stub 发送请求的入口，见 {@link RpcStubGenerator}
  * When a dynamic proxy object calls a method, it actually calls the following invoke method.
  * It is precisely because of the dynamic proxy that the remote method called by the client is like calling the local method (the intermediate process is shielded)
  *
@@ -35,73 +36,139 @@ public class RpcClientProxy implements InvocationHandler {
     private final RpcRequestTransport rpcRequestTransport;
     // 配置类
     private final RpcServiceConfig rpcServiceConfig;
+    // 异步方法返回的 future 在这个线程池里完成，为空时在收到响应的 Netty 线程里直接完成
+    private final Executor callbackExecutor;
+    // JDK 动态代理使用，每个方法的元数据只创建一次
+    private final Map<Method, RpcMethod> rpcMethods = new ConcurrentHashMap<>();
 
     public RpcClientProxy(RpcRequestTransport rpcRequestTransport, RpcServiceConfig rpcServiceConfig) {
+        this(rpcRequestTransport, rpcServiceConfig, null);
+    }
+
+    /**
+     * @param callbackExecutor 异步方法的回调在这个线程池里执行，避免耗时的回调阻塞 Netty 的 IO 线程
+     */
+    public RpcClientProxy(RpcRequestTransport rpcRequestTransport, RpcServiceConfig rpcServiceConfig, Executor callbackExecutor) {
         this.rpcRequestTransport = rpcRequestTransport;
         this.rpcServiceConfig = rpcServiceConfig;
+        this.callbackExecutor = callbackExecutor;
     }
 
 
     public RpcClientProxy(RpcRequestTransport rpcRequestTransport) {
-        this.rpcRequestTransport = rpcRequestTransport;
-        this.rpcServiceConfig = new RpcServiceConfig();
+        this(rpcRequestTransport, new RpcServiceConfig());
     }
 
     /**
-     * 得到代理对象
+     * 得到代理对象，public 接口使用生成的 stub，其他接口使用 JDK 动态代理
      */
-    @SuppressWarnings("unchecked")
     public <T> T getProxy(Class<T> clazz) {
+        if (RpcStubGenerator.isSupported(clazz)) {
+            return RpcStubGenerator.newStub(clazz, this);
+        }
+        return getJdkProxy(clazz);
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> T getJdkProxy(Class<T> clazz) {
         // 通过工厂方法获得代理类实例
         return (T) Proxy.newProxyInstance(clazz.getClassLoader(), new Class<?>[]{clazz}, this);
     }
 
+    /**
+     * 创建这个代理调用方法时使用的元数据
+     */
+    public RpcMethod newRpcMethod(Method method) {
+        return new RpcMethod(method, rpcServiceConfig);
+    }
+
     /**
      * This method is actually called when you use a proxy object to call a method.
      * The proxy object is the object you get through the getProxy method.
      */
-    @SneakyThrows
-    @SuppressWarnings("unchecked")
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) {
-        log.info("invoked method: [{}]", method.getName());
-        RpcRequest rpcRequest = RpcRequest.builder().methodName(method.getName())
-                .parameters(args)
-                // 获得 Method 所属的接口
-                .interfaceName(method.getDeclaringClass().getName())
-                // 与参数对应的参数类型数组
-                .paramTypes(method.getParameterTypes())
-                // 唯一的请求id
-                .requestId(UUID.randomUUID().toString())
-                .group(rpcServiceConfig.getGroup())
-                .version(rpcServiceConfig.getVersion())
-                .build();
-        RpcResponse<Object> rpcResponse = null;
-        // 本项目支持 netty 和 socket 两种通信方式
-        if (rpcRequestTransport instanceof NettyRpcClient) {
-            // 代理类并没有执行原生类的方法，只是把原来的 method 的信息传入到 rpcRequest 里，然后作为一个参数去发送请求给服务端
-            // CompletableFuture 来异步发送 RPC 请求，然后通过 get() 方法等待异步结果返回，最终得到 rpcResponse
-            CompletableFuture<RpcResponse<Object>> completableFuture = (CompletableFuture<RpcResponse<Object>>) rpcRequestTransport.sendRpcRequest(rpcRequest);
-            rpcResponse = completableFuture.get();
+        return invoke(rpcMethods.computeIfAbsent(method, this::newRpcMethod), args);
+    }
+
+    /**
+     * 生成的 stub 直接调用这个方法，方法的元数据都是提前算好的
+     */
+    @SneakyThrows
+    public Object invoke(RpcMethod rpcMethod, Object[] args) {
+        if (rpcMethod.isAsync()) {
+            return invokeAsync(rpcMethod, args);
         }
-        if (rpcRequestTransport instanceof SocketRpcClient) {
-            rpcResponse = (RpcResponse<Object>) rpcRequestTransport.sendRpcRequest(rpcRequest);
+        // 同步方法通过 get() 方法等待异步结果返回，最终得到 rpcResponse；超时由传输层完成 future，这里不会一直等待
+        RpcResponse<Object> rpcResponse;
+        try {
+            rpcResponse = send(rpcMethod, args, false).get();
+        } catch (ExecutionException e) {
+            // 抛出超时、发送失败等原始的异常
+            throw e.getCause();
         }
-        this.check(rpcResponse, rpcRequest);
+        this.check(rpcResponse, rpcMethod);
         return rpcResponse.getData();
     }
 
-    private void check(RpcResponse<Object> rpcResponse, RpcRequest rpcRequest) {
+    /**
+     * 发送请求，不阻塞调用线程
+     *
+     * @return 收到成功的响应时完成，值是方法的返回值；调用失败时异常完成
+     */
+    public CompletableFuture<Object> invokeAsync(RpcMethod rpcMethod, Object[] args) {
+        CompletableFuture<RpcResponse<Object>> responseFuture;
+        try {
+            responseFuture = send(rpcMethod, args, true);
+        } catch (RuntimeException e) {
+            // 连接不上等发送前的失败也通过 future 通知，异步调用不直接抛出异常
+            responseFuture = new CompletableFuture<>();
+            responseFuture.completeExceptionally(e);
+        }
+        CompletableFuture<Object> future = responseFuture.thenApply(rpcResponse -> {
+            this.check(rpcResponse, rpcMethod);
+            return rpcResponse.getData();
+        });
+        if (callbackExecutor == null) {
+            return future;
+        }
+        // whenCompleteAsync 返回的 future 在 callbackExecutor 里完成，正常和异常的结果都是，
+        // 调用方注册的回调也就都在 callbackExecutor 里执行
+        return future.whenCompleteAsync((data, throwable) -> {
+        }, callbackExecutor);
+    }
+
+    /**
+     * @param async 异步调用不能阻塞调用线程，未完成的请求达到上限时直接失败
+     */
+    @SuppressWarnings("unchecked")
+    private CompletableFuture<RpcResponse<Object>> send(RpcMethod rpcMethod, Object[] args, boolean async) {
+        log.info("invoked method: [{}]", rpcMethod.getMethodName());
+        RpcRequest rpcRequest = new RpcRequest(rpcMethod.getInterfaceName(), rpcMethod.getMethodName(), args,
+                rpcMethod.getParamTypes(), rpcServiceConfig.getVersion(), rpcServiceConfig.getGroup(), null, rpcMethod.getRouteKey(), rpcMethod.getMethodKey());
+        // 本项目支持 netty 和 socket 两种通信方式，netty 返回 CompletableFuture，socket 直接返回 RpcResponse
+        Object result = async ? rpcRequestTransport.sendRpcRequestAsync(rpcRequest, rpcServiceConfig)
+                : rpcRequestTransport.sendRpcRequest(rpcRequest, rpcServiceConfig);
+        if (result instanceof CompletableFuture) {
+            return (CompletableFuture<RpcResponse<Object>>) result;
+        }
+        return CompletableFuture.completedFuture((RpcResponse<Object>) result);
+    }
+
+    private void check(RpcResponse<Object> rpcResponse, RpcMethod rpcMethod) {
         if (rpcResponse == null) {
-            throw new RpcException(RpcErrorMessageEnum.SERVICE_INVOCATION_FAILURE, INTERFACE_NAME + ":" + rpcRequest.getInterfaceName());
+            throw new RpcException(RpcErrorMessageEnum.SERVICE_INVOCATION_FAILURE, INTERFACE_NAME + ":" + rpcMethod.getInterfaceName());
+        }
+        // 服务端繁忙或者过载，请求没有执行，调用方可以重试或者换一个服务端
+        if (rpcResponse.getCode() != null && rpcResponse.getCode().equals(RpcResponseCodeEnum.BUSY.getCode())) {
+            throw new RpcException(RpcErrorMessageEnum.SERVICE_BUSY, INTERFACE_NAME + ":" + rpcMethod.getInterfaceName());
         }
-        // 是否是对应请求的响应
-        if (!rpcRequest.getRequestId().equals(rpcResponse.getRequestId())) {
-            throw new RpcException(RpcErrorMessageEnum.REQUEST_NOT_MATCH_RESPONSE, INTERFACE_NAME + ":" + rpcRequest.getInterfaceName());
+        if (rpcResponse.getCode() != null && rpcResponse.getCode().equals(RpcResponseCodeEnum.OVERLOADED.getCode())) {
+            throw new RpcException(RpcErrorMessageEnum.SERVICE_OVERLOADED, INTERFACE_NAME + ":" + rpcMethod.getInterfaceName());
         }
         // 是否是成功请求
         if (rpcResponse.getCode() == null || !rpcResponse.getCode().equals(RpcResponseCodeEnum.SUCCESS.getCode())) {
-            throw new RpcException(RpcErrorMessageEnum.SERVICE_INVOCATION_FAILURE, INTERFACE_NAME + ":" + rpcRequest.getInterfaceName());
+            throw new RpcException(RpcErrorMessageEnum.SERVICE_INVOCATION_FAILURE, INTERFACE_NAME + ":" + rpcMethod.getInterfaceName());
         }
     }
 }
@@ -0,0 +1,44 @@
+package github.javaguide.proxy;
+
+import github.javaguide.config.RpcServiceConfig;
+import github.javaguide.remoting.dto.MethodKey;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 客户端调用一个远程方法需要的元数据，创建代理时为每个方法算好，调用时不再取接口名、拷贝参数类型数组、拼接 route key
+ */
+@Getter
+@ToString
+public class RpcMethod {
+    private final String interfaceName;
+    private final String methodName;
+    private final Class<?>[] paramTypes;
+    // interfaceName + group + version + "#" + methodName
+    private final String routeKey;
+    // 查连接上的方法 id 用的 key，哈希值已经算好
+    private final MethodKey methodKey;
+    // 返回值是 CompletableFuture（或者它的父接口）的方法不阻塞调用线程，收到响应时直接完成返回的 future
+    private final boolean async;
+
+    public RpcMethod(Method method, RpcServiceConfig rpcServiceConfig) {
+        this(method.getDeclaringClass().getName(), method.getName(), method.getParameterTypes(), isAsync(method), rpcServiceConfig);
+    }
+
+    public RpcMethod(String interfaceName, String methodName, Class<?>[] paramTypes, boolean async, RpcServiceConfig rpcServiceConfig) {
+        this.interfaceName = interfaceName;
+        this.methodName = methodName;
+        this.paramTypes = paramTypes;
+        this.async = async;
+        this.routeKey = interfaceName + rpcServiceConfig.getGroup() + rpcServiceConfig.getVersion() + "#" + methodName;
+        this.methodKey = new MethodKey(interfaceName, methodName, rpcServiceConfig.getGroup(), rpcServiceConfig.getVersion(), paramTypes);
+    }
+
+    private static boolean isAsync(Method method) {
+        Class<?> returnType = method.getReturnType();
+        return returnType != Object.class && returnType.isAssignableFrom(CompletableFuture.class);
+    }
+}
@@ -0,0 +1,269 @@
+package github.javaguide.proxy;
+
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.Type;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 为服务接口生成客户端 stub，代替 JDK 动态代理。
+ * <p>
+ * 生成的类实现服务接口，第 i 个方法的实现相当于：
+ * <pre>
+ *   public String hello(Hello hello) {
+ *       return (String) this.proxy.invoke(this.methods[i], new Object[]{hello});
+ *   }
+ * </pre>
+ * 方法的元数据（接口名、方法名、参数类型、route key）在创建 stub 时就算好了，调用时没有反射，也没有 InvocationHandler 的分发。
+ * 每个接口只生成一个类，不同的 group、version 共用这个类，只是 methods 不同
+ */
+public final class RpcStubGenerator {
+
+    private static final String PROXY_INTERNAL_NAME = Type.getInternalName(RpcClientProxy.class);
+    private static final String PROXY_DESCRIPTOR = Type.getDescriptor(RpcClientProxy.class);
+    private static final String METHODS_DESCRIPTOR = Type.getDescriptor(RpcMethod[].class);
+    private static final String INVOKE_DESCRIPTOR = Type.getMethodDescriptor(Type.getType(Object.class),
+            Type.getType(RpcMethod.class), Type.getType(Object[].class));
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+    /**
+     * key: 服务接口
+     * value: 为它生成的 stub 类
+     */
+    private static final Map<Class<?>, StubClass> STUB_CLASSES = new ConcurrentHashMap<>();
+
+    private RpcStubGenerator() {
+    }
+
+    /**
+     * 生成的类和接口不在同一个包里，只能实现 public 的接口，返回值也要是 public 的类型
+     */
+    public static boolean isSupported(Class<?> serviceInterface) {
+        if (!serviceInterface.isInterface() || !Modifier.isPublic(serviceInterface.getModifiers())
+                || serviceInterface.getClassLoader() == null) {
+            return false;
+        }
+        for (Method method : serviceInterface.getMethods()) {
+            Class<?> returnType = method.getReturnType();
+            while (returnType.isArray()) {
+                returnType = returnType.getComponentType();
+            }
+            if (!returnType.isPrimitive() && !Modifier.isPublic(returnType.getModifiers())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param serviceInterface 服务接口
+     * @param proxy            发送请求的代理，决定了 group、version 等配置
+     */
+    public static <T> T newStub(Class<T> serviceInterface, RpcClientProxy proxy) {
+        if (!isSupported(serviceInterface)) {
+            throw new IllegalArgumentException("can not generate stub for " + serviceInterface);
+        }
+        StubClass stubClass = STUB_CLASSES.computeIfAbsent(serviceInterface, RpcStubGenerator::generate);
+        RpcMethod[] rpcMethods = new RpcMethod[stubClass.methods.length];
+        for (int i = 0; i < rpcMethods.length; i++) {
+            rpcMethods[i] = proxy.newRpcMethod(stubClass.methods[i]);
+        }
+        try {
+            return serviceInterface.cast(stubClass.constructor.newInstance(proxy, rpcMethods));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("create stub for " + serviceInterface + " failed", e);
+        }
+    }
+
+    private static StubClass generate(Class<?> serviceInterface) {
+        List<Method> methods = new ArrayList<>();
+        Set<String> signatures = new HashSet<>();
+        for (Method method : serviceInterface.getMethods()) {
+            // default 方法和 static 方法保留接口自己的实现，多个父接口里签名相同的方法只实现一次
+            if (Modifier.isAbstract(method.getModifiers()) && signatures.add(method.getName() + Type.getMethodDescriptor(method))) {
+                methods.add(method);
+            }
+        }
+        String className = RpcStubGenerator.class.getPackage().getName() + ".stub."
+                + serviceInterface.getSimpleName() + "$RpcStub$" + SEQUENCE.incrementAndGet();
+        byte[] bytes = generateBytes(className.replace('.', '/'), serviceInterface, methods);
+        Class<?> clazz = new StubClassLoader(serviceInterface.getClassLoader()).define(className, bytes);
+        try {
+            Constructor<?> constructor = clazz.getConstructor(RpcClientProxy.class, RpcMethod[].class);
+            return new StubClass(constructor, methods.toArray(new Method[0]));
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] generateBytes(String internalName, Class<?> serviceInterface, List<Method> methods) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, internalName, null,
+                "java/lang/Object", new String[]{Type.getInternalName(serviceInterface)});
+        cw.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "proxy", PROXY_DESCRIPTOR, null, null).visitEnd();
+        cw.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "methods", METHODS_DESCRIPTOR, null, null).visitEnd();
+
+        // 构造方法：保存 proxy 和 methods
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>",
+                Type.getMethodDescriptor(Type.VOID_TYPE, Type.getType(RpcClientProxy.class), Type.getType(RpcMethod[].class)), null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitFieldInsn(Opcodes.PUTFIELD, internalName, "proxy", PROXY_DESCRIPTOR);
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitVarInsn(Opcodes.ALOAD, 2);
+        mv.visitFieldInsn(Opcodes.PUTFIELD, internalName, "methods", METHODS_DESCRIPTOR);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        for (int i = 0; i < methods.size(); i++) {
+            generateMethod(cw, internalName, methods.get(i), i);
+        }
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static void generateMethod(ClassWriter cw, String internalName, Method method, int index) {
+        String[] exceptions = new String[method.getExceptionTypes().length];
+        for (int i = 0; i < exceptions.length; i++) {
+            exceptions[i] = Type.getInternalName(method.getExceptionTypes()[i]);
+        }
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, method.getName(), Type.getMethodDescriptor(method), null, exceptions);
+        mv.visitCode();
+        // this.proxy.invoke(this.methods[index], args)
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitFieldInsn(Opcodes.GETFIELD, internalName, "proxy", PROXY_DESCRIPTOR);
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitFieldInsn(Opcodes.GETFIELD, internalName, "methods", METHODS_DESCRIPTOR);
+        pushInt(mv, index);
+        mv.visitInsn(Opcodes.AALOAD);
+        Type[] argumentTypes = Type.getArgumentTypes(method);
+        if (argumentTypes.length == 0) {
+            // 和 JDK 动态代理一样，没有参数时传 null
+            mv.visitInsn(Opcodes.ACONST_NULL);
+        } else {
+            pushInt(mv, argumentTypes.length);
+            mv.visitTypeInsn(Opcodes.ANEWARRAY, "java/lang/Object");
+            int slot = 1;
+            for (int i = 0; i < argumentTypes.length; i++) {
+                mv.visitInsn(Opcodes.DUP);
+                pushInt(mv, i);
+                mv.visitVarInsn(argumentTypes[i].getOpcode(Opcodes.ILOAD), slot);
+                box(mv, argumentTypes[i]);
+                mv.visitInsn(Opcodes.AASTORE);
+                slot += argumentTypes[i].getSize();
+            }
+        }
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, PROXY_INTERNAL_NAME, "invoke", INVOKE_DESCRIPTOR, false);
+        Type returnType = Type.getReturnType(method);
+        if (returnType.getSort() == Type.VOID) {
+            mv.visitInsn(Opcodes.POP);
+            mv.visitInsn(Opcodes.RETURN);
+        } else {
+            unbox(mv, returnType);
+            mv.visitInsn(returnType.getOpcode(Opcodes.IRETURN));
+        }
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void pushInt(MethodVisitor mv, int value) {
+        if (value <= 5) {
+            mv.visitInsn(Opcodes.ICONST_0 + value);
+        } else if (value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(Opcodes.BIPUSH, value);
+        } else if (value <= Short.MAX_VALUE) {
+            mv.visitIntInsn(Opcodes.SIPUSH, value);
+        } else {
+            mv.visitLdcInsn(value);
+        }
+    }
+
+    private static void box(MethodVisitor mv, Type type) {
+        Type boxed = boxedType(type);
+        if (boxed != null) {
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, boxed.getInternalName(), "valueOf",
+                    Type.getMethodDescriptor(boxed, type), false);
+        }
+    }
+
+    private static void unbox(MethodVisitor mv, Type type) {
+        Type boxed = boxedType(type);
+        if (boxed == null) {
+            mv.visitTypeInsn(Opcodes.CHECKCAST, type.getInternalName());
+        } else {
+            // 和 JDK 动态代理一样，基本类型的返回值为 null 时抛出 NullPointerException
+            mv.visitTypeInsn(Opcodes.CHECKCAST, boxed.getInternalName());
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, boxed.getInternalName(), type.getClassName() + "Value",
+                    Type.getMethodDescriptor(type), false);
+        }
+    }
+
+    /**
+     * @return 基本类型对应的包装类型，不是基本类型时返回 null
+     */
+    private static Type boxedType(Type type) {
+        switch (type.getSort()) {
+            case Type.BOOLEAN:
+                return Type.getType(Boolean.class);
+            case Type.CHAR:
+                return Type.getType(Character.class);
+            case Type.BYTE:
+                return Type.getType(Byte.class);
+            case Type.SHORT:
+                return Type.getType(Short.class);
+            case Type.INT:
+                return Type.getType(Integer.class);
+            case Type.FLOAT:
+                return Type.getType(Float.class);
+            case Type.LONG:
+                return Type.getType(Long.class);
+            case Type.DOUBLE:
+                return Type.getType(Double.class);
+            default:
+                return null;
+        }
+    }
+
+    private static final class StubClass {
+        private final Constructor<?> constructor;
+        // 下标和生成的 stub 里的 methods 一一对应
+        private final Method[] methods;
+
+        private StubClass(Constructor<?> constructor, Method[] methods) {
+            this.constructor = constructor;
+            this.methods = methods;
+        }
+    }
+
+    /**
+     * 以接口的类加载器为父加载器，生成的类能看到接口和参数类型；父加载器找不到的框架类从框架自己的类加载器加载
+     */
+    private static final class StubClassLoader extends ClassLoader {
+        private StubClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            return RpcStubGenerator.class.getClassLoader().loadClass(name);
+        }
+
+        private Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length, RpcStubGenerator.class.getProtectionDomain());
+        }
+    }
+}
@@ -16,17 +16,50 @@ public class RpcConstants {
     public static final byte[] MAGIC_NUMBER = {(byte) 'g', (byte) 'r', (byte) 'p', (byte) 'c'};
     public static final Charset DEFAULT_CHARSET = StandardCharsets.UTF_8;
     // version information
-    public static final byte VERSION = 1;
+    public static final byte VERSION_1 = 1;
+    // 64 位 requestId、varint 长度和附加信息（attachments）
+    public static final byte VERSION_2 = 2;
+    // 旧版本的服务端只认识 v1，默认使用 v1，所有服务端都升级之后再通过 rpc.protocol.version 开启 v2
+    public static final byte DEFAULT_VERSION = VERSION_1;
     public static final byte TOTAL_LENGTH = 16;
+    // v2 最短的帧：magic code(4B) + version(1B) + full length(1B) + messageType(1B) + codec(1B) + compress(1B) + requestId(8B) + attachment count(1B)
+    public static final byte V2_MIN_LENGTH = 18;
     public static final byte REQUEST_TYPE = 1;
     public static final byte RESPONSE_TYPE = 2;
     // ping
     public static final byte HEARTBEAT_REQUEST_TYPE = 3;
     // pong
     public static final byte HEARTBEAT_RESPONSE_TYPE = 4;
+    // 只带方法 id 和参数的请求，消息体是 RpcInvocation
+    public static final byte INVOCATION_TYPE = 5;
     public static final int HEAD_LENGTH = 16;
     public static final String PING = "ping";
     public static final String PONG = "pong";
     public static final int MAX_FRAME_LENGTH = 8 * 1024 * 1024;
+    // 默认的压缩阈值，序列化后小于这个字节数的消息体不压缩
+    public static final int DEFAULT_COMPRESS_THRESHOLD = 1024;
+    // 默认解压后允许的最大字节数
+    public static final int DEFAULT_MAX_DECOMPRESSED_SIZE = 8 * MAX_FRAME_LENGTH;
+    // 默认的请求超时时间，单位毫秒
+    public static final int DEFAULT_REQUEST_TIMEOUT = 5000;
+    // 客户端到每个服务地址默认最多的连接数
+    public static final int DEFAULT_CLIENT_MAX_CONNECTIONS = 4;
+    // 最空闲的连接上未完成的请求默认达到这个数时建立新的连接
+    public static final int DEFAULT_CLIENT_CONNECTION_PENDING_THRESHOLD = 32;
+    // 连接失败后默认的重连退避时间，单位毫秒
+    public static final int DEFAULT_CLIENT_RECONNECT_BACKOFF = 100;
+    public static final int DEFAULT_CLIENT_RECONNECT_MAX_BACKOFF = 30000;
+    // 客户端默认最多的未完成请求数
+    public static final int DEFAULT_CLIENT_MAX_INFLIGHT = 10000;
+    public static final int DEFAULT_CLIENT_MAX_INFLIGHT_PER_CONNECTION = 2000;
+    // ringbuffer 调度方式默认的缓冲区大小
+    public static final int DEFAULT_DISPATCHER_RING_BUFFER_SIZE = 4096;
+    // 自适应并发限制默认的初始值、最小值和最大值
+    public static final int DEFAULT_LIMITER_INITIAL_LIMIT = 20;
+    public static final int DEFAULT_LIMITER_MIN_LIMIT = 1;
+    public static final int DEFAULT_LIMITER_MAX_LIMIT = 1000;
+    // 默认的写缓冲区水位，和 Netty 的默认值相同
+    public static final int DEFAULT_WRITE_BUFFER_LOW_WATER_MARK = 32 * 1024;
+    public static final int DEFAULT_WRITE_BUFFER_HIGH_WATER_MARK = 64 * 1024;
 
 }
@@ -0,0 +1,58 @@
+package github.javaguide.remoting.dto;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * 一个远程方法的标识：服务（接口名 + group + version）+ 方法名 + 参数类型。
+ * <p>
+ * 客户端代理为每个方法创建一次，哈希值在构造时算好，调用时直接拿它查表，不用每次都比较和哈希这些字符串
+ */
+public final class MethodKey {
+    private final String interfaceName;
+    private final String methodName;
+    private final String group;
+    private final String version;
+    private final Class<?>[] paramTypes;
+    private final int hash;
+
+    public MethodKey(String interfaceName, String methodName, String group, String version, Class<?>[] paramTypes) {
+        this.interfaceName = interfaceName;
+        this.methodName = methodName;
+        this.group = group;
+        this.version = version;
+        this.paramTypes = paramTypes;
+        int h = Objects.hashCode(interfaceName);
+        h = 31 * h + Objects.hashCode(methodName);
+        h = 31 * h + Objects.hashCode(group);
+        h = 31 * h + Objects.hashCode(version);
+        this.hash = 31 * h + Arrays.hashCode(paramTypes);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MethodKey)) {
+            return false;
+        }
+        MethodKey that = (MethodKey) o;
+        return hash == that.hash
+                && Objects.equals(interfaceName, that.interfaceName)
+                && Objects.equals(methodName, that.methodName)
+                && Objects.equals(group, that.group)
+                && Objects.equals(version, that.version)
+                && Arrays.equals(paramTypes, that.paramTypes);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return interfaceName + group + version + "#" + methodName + Arrays.toString(paramTypes);
+    }
+}
@@ -0,0 +1,22 @@
+package github.javaguide.remoting.dto;
+
+import lombok.*;
+
+import java.io.Serializable;
+
+/**
+ * 精简的请求：方法已经用 {@link RpcRequest#getMethodId()} 在当前连接上登记过，之后的调用只发送方法 id 和参数，
+ * 不再重复发送接口名、方法名、group、version 和参数类型
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Builder
+@ToString
+public class RpcInvocation implements Serializable {
+    private static final long serialVersionUID = -2373410512404286174L;
+    // 连接内登记的方法 id
+    private int methodId;
+    // 要传递给方法的参数数组
+    private Object[] parameters;
+}
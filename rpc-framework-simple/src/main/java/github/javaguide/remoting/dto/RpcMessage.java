@@ -3,6 +3,8 @@ package github.javaguide.remoting.dto;
 
 import lombok.*;
 
+import java.util.Map;
+
 /**
  * @author wangtao
  * @createTime 2020年10月2日 12:33
@@ -15,6 +17,10 @@ import lombok.*;
 @ToString
 public class RpcMessage {
 
+    /**
+     * protocol version, 0 means the default version of the encoder
+     */
+    private byte version;
     /**
      * rpc message type
      */
@@ -30,10 +36,19 @@ public class RpcMessage {
     /**
      * request id
      */
-    private int requestId;
+    private long requestId;
     /**
      * request data
      */
     private Object data;
+    /**
+     * extensible key/value pairs carried in the header, such as deadlines and trace ids. only supported by v2
+     */
+    private Map<String, String> attachments;
+    /**
+     * service and method this message belongs to, such as interfaceName + group + version + "#" + methodName.
+     * used to collect statistics of adaptive compression, not written to the wire
+     */
+    private String routeKey;
 
 }
@@ -15,8 +15,6 @@ import java.io.Serializable;
 @ToString
 public class RpcRequest implements Serializable {
     private static final long serialVersionUID = 1905122041950251207L;
-    // RPC请求的唯一标识符
-    private String requestId;
     // RPC调用的接口名称
     private String interfaceName;
     // 要调用的方法名称
@@ -29,8 +27,29 @@ public class RpcRequest implements Serializable {
     private String version;
     // 用于处理一个接口有多个类实现的情况
     private String group;
+    // 不为空时服务端在当前连接上把这个方法登记为 methodId，之后的请求只发送 RpcInvocation
+    @Setter
+    private Integer methodId;
+    // 客户端代理预先算好的 route key，不参与序列化
+    private transient String routeKey;
+    // 客户端代理预先算好的方法标识，用来查连接上的方法 id，不参与序列化
+    private transient MethodKey methodKey;
 
     public String getRpcServiceName() {
         return this.getInterfaceName() + this.getGroup() + this.getVersion();
     }
+
+    public String getRouteKey() {
+        if (this.routeKey == null) {
+            this.routeKey = this.getRpcServiceName() + "#" + this.getMethodName();
+        }
+        return this.routeKey;
+    }
+
+    public MethodKey getMethodKey() {
+        if (this.methodKey == null) {
+            this.methodKey = new MethodKey(this.getInterfaceName(), this.getMethodName(), this.getGroup(), this.getVersion(), this.getParamTypes());
+        }
+        return this.methodKey;
+    }
 }
@@ -18,8 +18,6 @@ import java.io.Serializable;
 public class RpcResponse<T> implements Serializable {
 
     private static final long serialVersionUID = 715745410605631233L;
-    // RPC响应的唯一标识符
-    private String requestId;
     // [RpcResponseCodeEnum]请求码 200成功 500失败
     private Integer code;
     // [RpcResponseCodeEnum]请求信息
@@ -27,11 +25,10 @@ public class RpcResponse<T> implements Serializable {
     // 消息内容
     private T data;
 
-    public static <T> RpcResponse<T> success(T data, String requestId) {
+    public static <T> RpcResponse<T> success(T data) {
         RpcResponse<T> response = new RpcResponse<>();
         response.setCode(RpcResponseCodeEnum.SUCCESS.getCode());
         response.setMessage(RpcResponseCodeEnum.SUCCESS.getMessage());
-        response.setRequestId(requestId);
         if (null != data) {
             response.setData(data);
         }
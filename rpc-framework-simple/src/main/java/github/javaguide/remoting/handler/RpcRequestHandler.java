@@ -1,15 +1,17 @@
 package github.javaguide.remoting.handler;
 
+import github.javaguide.enums.ConcurrencyLimiterEnum;
+import github.javaguide.enums.RpcConfigEnum;
 import github.javaguide.exception.RpcException;
+import github.javaguide.extension.ExtensionLoader;
 import github.javaguide.factory.SingletonFactory;
+import github.javaguide.limiter.ConcurrencyLimiter;
 import github.javaguide.provider.ServiceProvider;
 import github.javaguide.provider.impl.ZkServiceProviderImpl;
 import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.utils.RpcConfigUtil;
 import lombok.extern.slf4j.Slf4j;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-
 /**
  * 真正去调用方法的 Handler
  *
@@ -19,37 +21,58 @@ import java.lang.reflect.Method;
 @Slf4j
 public class RpcRequestHandler {
     private final ServiceProvider serviceProvider;
+    // 执行服务方法之前先获得许可，整个服务端共用一个
+    private final ConcurrencyLimiter concurrencyLimiter;
 
     public RpcRequestHandler() {
         serviceProvider = SingletonFactory.getInstance(ZkServiceProviderImpl.class);
+        concurrencyLimiter = ExtensionLoader.getExtensionLoader(ConcurrencyLimiter.class)
+                .getExtension(RpcConfigUtil.getProperty(RpcConfigEnum.SERVER_LIMITER, ConcurrencyLimiterEnum.UNLIMITED.getName()));
+    }
+
+    /**
+     * 服务端的并发限制，请求交给线程池之前获得许可，得到结果之后释放
+     */
+    public ConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
     }
 
     /**
      * Processing rpcRequest: call the corresponding method, and then return the method
      */
     public Object handle(RpcRequest rpcRequest) {
-        Object service = serviceProvider.getService(rpcRequest.getRpcServiceName());
-        // 通过反射执行方法（为什么采用反射？因为方法名不固定但实现类固定，通过方法名获取方法 Method，然后执行） 
-        return invokeTargetMethod(rpcRequest, service);
+        // 按照服务名、方法名和参数类型找到发布时创建好的调用器，然后执行
+        return handle(resolve(rpcRequest), rpcRequest.getParameters());
+    }
+
+    /**
+     * 调用已经解析好的方法，按照方法 id 发来的请求走这里
+     */
+    public Object handle(ServiceMethod serviceMethod, Object[] parameters) {
+        return invokeTargetMethod(serviceMethod, parameters);
+    }
+
+    /**
+     * 根据请求里的服务名、方法名和参数类型找到服务发布时解析好的方法
+     */
+    public ServiceMethod resolve(RpcRequest rpcRequest) {
+        return serviceProvider.getServiceMethod(rpcRequest.getRpcServiceName(), rpcRequest.getMethodName(), rpcRequest.getParamTypes());
     }
 
     /**
      * get method execution results
      *
-     * @param rpcRequest client request
-     * @param service    service object
+     * @param serviceMethod the method to invoke
+     * @param parameters    method parameters
      * @return the result of the target method execution
      */
-    private Object invokeTargetMethod(RpcRequest rpcRequest, Object service) {
+    private Object invokeTargetMethod(ServiceMethod serviceMethod, Object[] parameters) {
         Object result;
         try {
-            // 获取类中指定方法的对象，需要类、方法名和方法参数
-            Method method = service.getClass().getMethod(rpcRequest.getMethodName(), rpcRequest.getParamTypes());
-            // 反射，需要方法、实例类和参数
-            result = method.invoke(service, rpcRequest.getParameters());
-            log.info("service:[{}] successful invoke method:[{}]", rpcRequest.getInterfaceName(), rpcRequest.getMethodName());
-        } catch (NoSuchMethodException | IllegalArgumentException | InvocationTargetException |
-                 IllegalAccessException e) {
+            // 通过服务发布时创建的 MethodHandle 调用，不再每次反射查找方法
+            result = serviceMethod.invoke(parameters);
+            log.info("service:[{}] successful invoke", serviceMethod.getRouteKey());
+        } catch (Throwable e) {
             throw new RpcException(e.getMessage(), e);
         }
         return result;
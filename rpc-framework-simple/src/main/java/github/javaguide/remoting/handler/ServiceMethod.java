@@ -0,0 +1,78 @@
+package github.javaguide.remoting.handler;
+
+import github.javaguide.config.RpcServiceConfig;
+import github.javaguide.dispatcher.Dispatcher;
+import github.javaguide.dispatcher.bulkhead.BulkheadDispatcher;
+import github.javaguide.extension.ExtensionLoader;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/**
+ * 解析好的服务方法，按照方法 id 调用时不需要再拼接服务名、查找服务和反射查找 Method。
+ * <p>
+ * 服务发布时为接口的每个方法创建一个，调用通过绑定了服务对象的 MethodHandle 完成，
+ * 没有 Method.invoke 每次调用的访问检查和参数数组的拷贝
+ */
+@Getter
+@ToString(exclude = {"invoker", "dispatcher"})
+public class ServiceMethod {
+    // 服务发布时的配置，持有服务对象
+    private final RpcServiceConfig serviceConfig;
+    // interfaceName + group + version + "#" + methodName
+    private final String routeKey;
+    private final Method method;
+    // 缓存下来，Method.getParameterTypes() 每次都会拷贝数组
+    private final Class<?>[] paramTypes;
+    // (Object[])Object，参数数组按位置展开，基本类型自动拆箱，返回值自动装箱，void 方法返回 null
+    private final MethodHandle invoker;
+    // 服务发布时选择的调度方式，服务配置了独占的线程数时是服务自己的线程池
+    private final Dispatcher dispatcher;
+
+    public ServiceMethod(RpcServiceConfig serviceConfig, Method method) {
+        this.serviceConfig = serviceConfig;
+        this.routeKey = serviceConfig.getRpcServiceName() + "#" + method.getName();
+        this.method = method;
+        this.paramTypes = method.getParameterTypes();
+        this.invoker = createInvoker(serviceConfig.getService(), method);
+        this.dispatcher = createDispatcher(serviceConfig);
+    }
+
+    public Object getService() {
+        return serviceConfig.getService();
+    }
+
+    public boolean matches(Class<?>[] types) {
+        return types == null ? paramTypes.length == 0 : Arrays.equals(paramTypes, types);
+    }
+
+    public Object invoke(Object[] parameters) throws Throwable {
+        return (Object) invoker.invokeExact(parameters);
+    }
+
+    private static Dispatcher createDispatcher(RpcServiceConfig serviceConfig) {
+        if (serviceConfig.getThreads() > 0) {
+            return new BulkheadDispatcher(serviceConfig.getRpcServiceName(), serviceConfig.getThreads(),
+                    serviceConfig.getQueues());
+        }
+        return ExtensionLoader.getExtensionLoader(Dispatcher.class).getExtension(serviceConfig.getDispatcherName());
+    }
+
+    private static MethodHandle createInvoker(Object service, Method method) {
+        // 接口或者实现类不是 public 的时候也能调用
+        method.setAccessible(true);
+        try {
+            return MethodHandles.lookup().unreflect(method)
+                    .bindTo(service)
+                    .asSpreader(Object[].class, method.getParameterCount())
+                    .asType(MethodType.methodType(Object.class, Object[].class));
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("can not access method " + method, e);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package github.javaguide.remoting.transport;
 
+import github.javaguide.config.RpcServiceConfig;
 import github.javaguide.extension.SPI;
 import github.javaguide.remoting.dto.RpcRequest;
 
@@ -18,4 +19,26 @@ public interface RpcRequestTransport {
      * @return data from server
      */
     Object sendRpcRequest(RpcRequest rpcRequest);
+
+    /**
+     * send rpc request to server with the settings of the service reference, such as the compress type
+     *
+     * @param rpcRequest       message body
+     * @param rpcServiceConfig settings of the service reference
+     * @return data from server
+     */
+    default Object sendRpcRequest(RpcRequest rpcRequest, RpcServiceConfig rpcServiceConfig) {
+        return sendRpcRequest(rpcRequest);
+    }
+
+    /**
+     * send rpc request for an async invocation, the caller must never be blocked, for example by the in flight limit
+     *
+     * @param rpcRequest       message body
+     * @param rpcServiceConfig settings of the service reference
+     * @return data from server
+     */
+    default Object sendRpcRequestAsync(RpcRequest rpcRequest, RpcServiceConfig rpcServiceConfig) {
+        return sendRpcRequest(rpcRequest, rpcServiceConfig);
+    }
 }
@@ -0,0 +1,180 @@
+package github.javaguide.remoting.transport.netty.client;
+
+import github.javaguide.enums.RpcErrorMessageEnum;
+import github.javaguide.exception.RpcException;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+/**
+ * 一个服务地址上的多个连接。
+ * <p>
+ * 每次调用选择未完成请求最少的连接，请求不会都挤在一个 socket 和一个 event loop 上。
+ * 连接池从一个连接开始，最空闲的连接上未完成的请求也达到 pendingThreshold 时说明并发上来了，
+ * 或者所有连接的写缓冲区都超过了高水位时，再建立新的连接，最多 maxSize 个。连接关闭后自动从池里移除。
+ * <p>
+ * 建立连接是异步的，同一时间每个地址只有一次连接在进行，没有可用连接时到来的请求都等待这一次连接完成，不阻塞调用线程。
+ * 连接失败后按照指数退避等待一段时间才再次尝试，在这段时间内（熔断打开）请求直接失败，不会反复连接一个已经挂掉的地址；
+ * 时间到了之后的第一个请求去尝试连接，成功后恢复正常
+ */
+@Slf4j
+public class ChannelPool {
+
+    private final InetSocketAddress address;
+    private final int maxSize;
+    private final int pendingThreshold;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+    // 选择连接远比增减连接频繁，遍历时不加锁
+    private final List<Channel> channels = new CopyOnWriteArrayList<>();
+    // 以下字段由 this 保护
+    // 正在进行的连接，没有时为 null
+    private CompletableFuture<Channel> connecting;
+    // 连续失败的次数
+    private int failures;
+    // 熔断打开时，在这个时间之前不再尝试连接
+    private long retryAt;
+
+    public ChannelPool(InetSocketAddress address, int maxSize, int pendingThreshold, long baseBackoffMillis, long maxBackoffMillis) {
+        this.address = address;
+        this.maxSize = Math.max(1, maxSize);
+        this.pendingThreshold = Math.max(1, pendingThreshold);
+        this.baseBackoffMillis = Math.max(1, baseBackoffMillis);
+        this.maxBackoffMillis = Math.max(this.baseBackoffMillis, maxBackoffMillis);
+    }
+
+    /**
+     * 获得一个可用的连接，没有时建立连接
+     *
+     * @param connector 发起到指定地址的连接
+     * @return 有可用连接时是已经完成的 future；连接失败或者熔断打开时异常完成
+     */
+    public CompletableFuture<Channel> acquire(Function<InetSocketAddress, ChannelFuture> connector) {
+        // 选择这个地址上未完成请求最少的连接
+        Channel channel = select();
+        if (channel == null) {
+            return connect(connector);
+        }
+        if (shouldGrow(channel)) {
+            // 连接都很忙，在后台再建立一个连接，这次调用仍然使用选中的连接
+            connect(connector);
+        }
+        return CompletableFuture.completedFuture(channel);
+    }
+
+    /**
+     * 优先选择可写的连接，写缓冲区超过高水位的连接只在所有连接都不可写时才会被选中
+     *
+     * @return 未完成请求最少的可用连接，没有可用的连接时返回 null
+     */
+    public Channel select() {
+        Channel selected = null;
+        boolean selectedWritable = false;
+        int minPending = Integer.MAX_VALUE;
+        for (Channel channel : channels) {
+            if (!channel.isActive()) {
+                continue;
+            }
+            boolean writable = channel.isWritable();
+            if (selectedWritable && !writable) {
+                continue;
+            }
+            int pending = pending(channel);
+            if (pending < minPending || (writable && !selectedWritable)) {
+                selected = channel;
+                selectedWritable = writable;
+                minPending = pending;
+            }
+        }
+        return selected;
+    }
+
+    public void add(Channel channel) {
+        channels.add(channel);
+        channel.closeFuture().addListener(future -> {
+            channels.remove(channel);
+            log.info("channel [{}] removed from pool, pool size: [{}]", address, channels.size());
+        });
+        log.info("channel [{}] added to pool, pool size: [{}]", address, channels.size());
+    }
+
+    /**
+     * @return 连接数，包括还没来得及移除的已关闭的连接
+     */
+    public int size() {
+        return channels.size();
+    }
+
+    /**
+     * @return 熔断是否打开，也就是最近一次连接失败后还在退避的时间内
+     */
+    public synchronized boolean isCircuitOpen() {
+        return failures > 0 && System.currentTimeMillis() < retryAt;
+    }
+
+    private boolean shouldGrow(Channel selected) {
+        // 选中的是不可写的连接说明所有连接的写缓冲区都满了
+        return (pending(selected) >= pendingThreshold || !selected.isWritable()) && size() < maxSize;
+    }
+
+    private CompletableFuture<Channel> connect(Function<InetSocketAddress, ChannelFuture> connector) {
+        CompletableFuture<Channel> future;
+        synchronized (this) {
+            if (connecting != null) {
+                // 已经有连接在进行了，等它完成
+                return connecting;
+            }
+            long now = System.currentTimeMillis();
+            if (failures > 0 && now < retryAt) {
+                CompletableFuture<Channel> failed = new CompletableFuture<>();
+                failed.completeExceptionally(new RpcException(RpcErrorMessageEnum.CLIENT_CONNECT_SERVER_FAILURE,
+                        address + ", circuit open for another " + (retryAt - now) + "ms after " + failures + " failures"));
+                return failed;
+            }
+            future = new CompletableFuture<>();
+            connecting = future;
+        }
+        // 在锁外面发起连接，连接的回调可能在当前线程里直接执行
+        connector.apply(address).addListener((ChannelFutureListener) channelFuture -> {
+            if (channelFuture.isSuccess()) {
+                log.info("The client has connected [{}] successful!", address);
+                add(channelFuture.channel());
+                synchronized (this) {
+                    connecting = null;
+                    failures = 0;
+                }
+                future.complete(channelFuture.channel());
+            } else {
+                long backoff;
+                synchronized (this) {
+                    connecting = null;
+                    failures++;
+                    backoff = backoffMillis(failures);
+                    retryAt = System.currentTimeMillis() + backoff;
+                }
+                log.warn("connect [{}] failed, retry after [{}]ms", address, backoff, channelFuture.cause());
+                future.completeExceptionally(new RpcException(RpcErrorMessageEnum.CLIENT_CONNECT_SERVER_FAILURE.getMessage() + ":" + address,
+                        channelFuture.cause()));
+            }
+        });
+        return future;
+    }
+
+    private long backoffMillis(int failures) {
+        // 每失败一次等待时间翻倍，限制移位次数避免溢出
+        long backoff = baseBackoffMillis << Math.min(failures - 1, 30);
+        return Math.min(backoff, maxBackoffMillis);
+    }
+
+    private static int pending(Channel channel) {
+        UnprocessedRequests unprocessedRequests = channel.attr(UnprocessedRequests.KEY).get();
+        return unprocessedRequests == null ? 0 : unprocessedRequests.size();
+    }
+}
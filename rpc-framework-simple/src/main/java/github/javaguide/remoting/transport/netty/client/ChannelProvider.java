@@ -1,5 +1,8 @@
 package github.javaguide.remoting.transport.netty.client;
 
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.remoting.constants.RpcConstants;
+import github.javaguide.utils.RpcConfigUtil;
 import io.netty.channel.Channel;
 import lombok.extern.slf4j.Slf4j;
 
@@ -9,7 +12,7 @@ import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 管理 channel
- * 每一个ip:port（也就是注册的服务)有一个channel
+ * 每一个ip:port（也就是注册的服务)有一个连接池，见 {@link ChannelPool}
  *
  * @author shuang.kou
  * @createTime 2020年05月29日 16:36:00
@@ -17,39 +20,44 @@ import java.util.concurrent.ConcurrentHashMap;
 @Slf4j
 public class ChannelProvider {
 
-    private final Map<String, Channel> channelMap;
+    private final Map<String, ChannelPool> poolMap;
+    // 每个地址最多的连接数
+    private final int maxConnections;
+    // 最空闲的连接上未完成的请求达到这个数时建立新的连接
+    private final int pendingThreshold;
+    // 连接失败后的重连退避时间
+    private final long reconnectBackoff;
+    private final long reconnectMaxBackoff;
 
     public ChannelProvider() {
         // 使用 ConcurrentHashMap 作为存储通道映射关系的容器
         // ConcurrentHashMap 是线程安全的，适用于并发环境
-        channelMap = new ConcurrentHashMap<>();
+        poolMap = new ConcurrentHashMap<>();
+        maxConnections = RpcConfigUtil.getInt(RpcConfigEnum.CLIENT_MAX_CONNECTIONS, RpcConstants.DEFAULT_CLIENT_MAX_CONNECTIONS);
+        pendingThreshold = RpcConfigUtil.getInt(RpcConfigEnum.CLIENT_CONNECTION_PENDING_THRESHOLD, RpcConstants.DEFAULT_CLIENT_CONNECTION_PENDING_THRESHOLD);
+        reconnectBackoff = RpcConfigUtil.getLong(RpcConfigEnum.CLIENT_RECONNECT_BACKOFF, RpcConstants.DEFAULT_CLIENT_RECONNECT_BACKOFF);
+        reconnectMaxBackoff = RpcConfigUtil.getLong(RpcConfigEnum.CLIENT_RECONNECT_MAX_BACKOFF, RpcConstants.DEFAULT_CLIENT_RECONNECT_MAX_BACKOFF);
     }
 
-    // 获得 channel
+    // 获得地址对应的连接池
+    public ChannelPool getPool(InetSocketAddress inetSocketAddress) {
+        return poolMap.computeIfAbsent(inetSocketAddress.toString(),
+                k -> new ChannelPool(inetSocketAddress, maxConnections, pendingThreshold, reconnectBackoff, reconnectMaxBackoff));
+    }
+
+    // 获得 channel，选择连接池里最空闲的可用连接
     public Channel get(InetSocketAddress inetSocketAddress) {
-        String key = inetSocketAddress.toString();
-        // 确定是否有对应地址的连接
-        if (channelMap.containsKey(key)) {
-            Channel channel = channelMap.get(key);
-            // if so, determine if the connection is available, and if so, get it directly
-            if (channel != null && channel.isActive()) {
-                return channel;
-            } else {
-                channelMap.remove(key);
-            }
-        }
-        return null;
+        return getPool(inetSocketAddress).select();
     }
 
-    // 设置 channel
+    // 设置 channel，加入地址对应的连接池
     public void set(InetSocketAddress inetSocketAddress, Channel channel) {
-        String key = inetSocketAddress.toString();
-        channelMap.put(key, channel);
+        getPool(inetSocketAddress).add(channel);
     }
 
     public void remove(InetSocketAddress inetSocketAddress) {
         String key = inetSocketAddress.toString();
-        channelMap.remove(key);
-        log.info("Channel map size :[{}]", channelMap.size());
+        poolMap.remove(key);
+        log.info("Channel map size :[{}]", poolMap.size());
     }
 }
@@ -0,0 +1,59 @@
+package github.javaguide.remoting.transport.netty.client;
+
+import github.javaguide.remoting.dto.MethodKey;
+import github.javaguide.remoting.dto.RpcRequest;
+import io.netty.util.AttributeKey;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 客户端每个连接上的方法 id 表，挂在 channel 的 {@link #KEY} 属性上。
+ * <p>
+ * 第一次调用某个方法（服务 + 方法名 + 参数类型）时分配一个连接内的 id，完整的 RpcRequest 带着这个 id 发给服务端登记；
+ * 收到成功的响应后说明服务端已经登记好了，之后这个方法的调用只发送 id 和参数。
+ * 在收到响应之前的调用仍然发送完整的请求，所以不依赖多个线程写入 channel 的先后顺序
+ */
+public class MethodIdTable {
+
+    public static final AttributeKey<MethodIdTable> KEY = AttributeKey.valueOf("methodIdTable");
+
+    private final AtomicInteger sequence = new AtomicInteger();
+    private final Map<MethodKey, MethodId> methodIds = new ConcurrentHashMap<>();
+
+    /**
+     * @return 请求的方法在这个连接上的 id，第一次调用时分配
+     */
+    public MethodId get(RpcRequest rpcRequest) {
+        // 代理发出的请求带着 RpcMethod 里算好的 key，不用再哈希请求里的字段
+        MethodKey methodKey = rpcRequest.getMethodKey();
+        // 绝大多数调用时 id 已经分配好了，先 get，避免 computeIfAbsent 在 Java 8 里命中时也要加锁
+        MethodId methodId = methodIds.get(methodKey);
+        return methodId != null ? methodId : methodIds.computeIfAbsent(methodKey, k -> new MethodId(sequence.incrementAndGet()));
+    }
+
+    public static final class MethodId {
+        private final int id;
+        private volatile boolean registered;
+
+        private MethodId(int id) {
+            this.id = id;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * @return 服务端是否已经登记了这个 id
+         */
+        public boolean isRegistered() {
+            return registered;
+        }
+
+        public void markRegistered() {
+            registered = true;
+        }
+    }
+}
@@ -1,19 +1,25 @@
 package github.javaguide.remoting.transport.netty.client;
 
 
-import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.config.RpcServiceConfig;
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.enums.RpcErrorMessageEnum;
+import github.javaguide.enums.RpcResponseCodeEnum;
 import github.javaguide.enums.SerializationTypeEnum;
 import github.javaguide.enums.ServiceDiscoveryEnum;
+import github.javaguide.exception.RpcException;
 import github.javaguide.extension.ExtensionLoader;
 import github.javaguide.factory.SingletonFactory;
 import github.javaguide.registry.ServiceDiscovery;
 import github.javaguide.remoting.constants.RpcConstants;
+import github.javaguide.remoting.dto.RpcInvocation;
 import github.javaguide.remoting.dto.RpcMessage;
 import github.javaguide.remoting.dto.RpcRequest;
 import github.javaguide.remoting.dto.RpcResponse;
 import github.javaguide.remoting.transport.RpcRequestTransport;
 import github.javaguide.remoting.transport.netty.codec.RpcMessageDecoder;
 import github.javaguide.remoting.transport.netty.codec.RpcMessageEncoder;
+import github.javaguide.utils.RpcConfigUtil;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.*;
 import io.netty.channel.nio.NioEventLoopGroup;
@@ -22,11 +28,11 @@ import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
 import io.netty.handler.timeout.IdleStateHandler;
-import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 
 import java.net.InetSocketAddress;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -39,16 +45,29 @@ import java.util.concurrent.TimeUnit;
 public final class NettyRpcClient implements RpcRequestTransport {
     // 服务发现的实例，用于查找服务的地址
     private final ServiceDiscovery serviceDiscovery;
-    // 未处理的请求实例，用于存储未完成的 RPC 请求
-    private final UnprocessedRequests unprocessedRequests;
+    // 请求使用的协议版本，决定了 requestId 的位数
+    private final byte protocolVersion;
     // 通道提供者的实例，用于管理和提供与服务器地址相关联的通道
     private final ChannelProvider channelProvider;
     // Netty的Bootstrap实例，用于配置和初始化Netty客户端
     private final Bootstrap bootstrap;
     // Netty的EventLoopGroup实例，用于处理事件循环
     private final EventLoopGroup eventLoopGroup;
+    // 所有连接上未完成请求的名额，为 null 时不限制
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    // 名额用完时同步调用是否等待，异步调用从不等待
+    private final boolean inFlightBlock;
 
     public NettyRpcClient() {
+        protocolVersion = (byte) RpcConfigUtil.getInt(RpcConfigEnum.PROTOCOL_VERSION, RpcConstants.DEFAULT_VERSION);
+        maxInFlight = RpcConfigUtil.getInt(RpcConfigEnum.CLIENT_MAX_INFLIGHT, RpcConstants.DEFAULT_CLIENT_MAX_INFLIGHT);
+        inFlight = maxInFlight > 0 ? new Semaphore(maxInFlight) : null;
+        inFlightBlock = RpcConfigUtil.getBoolean(RpcConfigEnum.CLIENT_INFLIGHT_BLOCK, true);
+        int maxInFlightPerConnection = RpcConfigUtil.getInt(RpcConfigEnum.CLIENT_MAX_INFLIGHT_PER_CONNECTION, RpcConstants.DEFAULT_CLIENT_MAX_INFLIGHT_PER_CONNECTION);
+        WriteBufferWaterMark writeBufferWaterMark = new WriteBufferWaterMark(
+                RpcConfigUtil.getInt(RpcConfigEnum.WRITE_BUFFER_LOW_WATER_MARK, RpcConstants.DEFAULT_WRITE_BUFFER_LOW_WATER_MARK),
+                RpcConfigUtil.getInt(RpcConfigEnum.WRITE_BUFFER_HIGH_WATER_MARK, RpcConstants.DEFAULT_WRITE_BUFFER_HIGH_WATER_MARK));
         // initialize resources such as EventLoopGroup, Bootstrap
         eventLoopGroup = new NioEventLoopGroup();
         bootstrap = new Bootstrap();
@@ -58,12 +77,17 @@ public final class NettyRpcClient implements RpcRequestTransport {
                 //  The timeout period of the connection.
                 //  If this time is exceeded or the connection cannot be established, the connection fails.
                 .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 5000)
+                // 写缓冲区超过高水位时 channel 变成不可写，连接池优先把请求发到别的连接上
+                .option(ChannelOption.WRITE_BUFFER_WATER_MARK, writeBufferWaterMark)
                 // ChannelInitializer 在某个 Channel 注册到 EventLoop 后，对这个 Channel 执行一些初始化操作  https://www.cnblogs.com/myitnews/p/12213602.html
                 .handler(new ChannelInitializer<SocketChannel>() {
                     // 在 ServerBootstrap 初始化时，为监听端口 accept 事件的 Channel 添加 ServerBootstrapAcceptor
                     // 在有新链接进入时，为监听客户端read/write事件的Channel添加用户自定义的ChannelHandler
                     @Override
                     protected void initChannel(SocketChannel ch) {
+                        // 每个连接有自己的 requestId 序列、未完成请求表和方法 id 表
+                        ch.attr(UnprocessedRequests.KEY).set(new UnprocessedRequests(protocolVersion, maxInFlightPerConnection));
+                        ch.attr(MethodIdTable.KEY).set(new MethodIdTable());
                         ChannelPipeline p = ch.pipeline();
                         // If no data is sent to the server within 15 seconds, a heartbeat request is sent
                         p.addLast(new IdleStateHandler(0, 5, 0, TimeUnit.SECONDS));
@@ -73,69 +97,141 @@ public final class NettyRpcClient implements RpcRequestTransport {
                     }
                 });
         this.serviceDiscovery = ExtensionLoader.getExtensionLoader(ServiceDiscovery.class).getExtension(ServiceDiscoveryEnum.ZK.getName());
-        this.unprocessedRequests = SingletonFactory.getInstance(UnprocessedRequests.class);
         this.channelProvider = SingletonFactory.getInstance(ChannelProvider.class);
     }
 
-    /**
-     * 连接服务器并获取通道，以便您可以向服务器发送 RPC 消息
-     *
-     * @param inetSocketAddress server address
-     * @return the channel
-     */
-    @SneakyThrows
-    public Channel doConnect(InetSocketAddress inetSocketAddress) {
-        CompletableFuture<Channel> completableFuture = new CompletableFuture<>();
-        bootstrap.connect(inetSocketAddress).addListener((ChannelFutureListener) future -> {
-            if (future.isSuccess()) {
-                log.info("The client has connected [{}] successful!", inetSocketAddress.toString());
-                completableFuture.complete(future.channel());
-            } else {
-                throw new IllegalStateException();
-            }
-        });
-        return completableFuture.get();
+    @Override
+    public Object sendRpcRequest(RpcRequest rpcRequest) {
+        return sendRpcRequest(rpcRequest, new RpcServiceConfig());
     }
 
     @Override
-    public Object sendRpcRequest(RpcRequest rpcRequest) {
+    public Object sendRpcRequest(RpcRequest rpcRequest, RpcServiceConfig rpcServiceConfig) {
+        return sendRpcRequest(rpcRequest, rpcServiceConfig, inFlightBlock);
+    }
+
+    @Override
+    public Object sendRpcRequestAsync(RpcRequest rpcRequest, RpcServiceConfig rpcServiceConfig) {
+        // 异步调用的线程可能是 IO 线程或者其他请求的回调线程，等待名额会把它们卡住，名额用完时直接失败
+        return sendRpcRequest(rpcRequest, rpcServiceConfig, false);
+    }
+
+    private CompletableFuture<RpcResponse<Object>> sendRpcRequest(RpcRequest rpcRequest, RpcServiceConfig rpcServiceConfig, boolean block) {
         // 这个异步操作的结果是一个包含泛型类型为 Object 的 RpcResponse 对象
         CompletableFuture<RpcResponse<Object>> resultFuture = new CompletableFuture<>();
+        // 未完成的请求太多时等待或者直接失败，下游变慢时请求不会在内存里无限堆积
+        if (!acquireInFlight(rpcServiceConfig.getTimeoutMillis(), block)) {
+            resultFuture.completeExceptionally(new RpcException(RpcErrorMessageEnum.TOO_MANY_REQUESTS, "max in flight " + maxInFlight));
+            return resultFuture;
+        }
+        if (inFlight != null) {
+            // 请求完成时归还名额，成功、失败、超时都会完成 resultFuture
+            resultFuture.whenComplete((rpcResponse, throwable) -> inFlight.release());
+        }
         // 使用 serviceDiscovery（服务发现）查找并获取RPC请求的服务地址
-        InetSocketAddress inetSocketAddress = serviceDiscovery.lookupService(rpcRequest);
-        // 通过 getChannel 方法获取与指定服务器地址关联的 Channel
-        Channel channel = getChannel(inetSocketAddress);
-        if (channel.isActive()) {
-            // 将 RPC 请求放入未处理请求的集合中，以便后续处理响应
-            unprocessedRequests.put(rpcRequest.getRequestId(), resultFuture);
-            RpcMessage rpcMessage = RpcMessage.builder().data(rpcRequest)
-                    .codec(SerializationTypeEnum.HESSIAN.getCode())
-                    .compress(CompressTypeEnum.GZIP.getCode())
-                    .messageType(RpcConstants.REQUEST_TYPE).build();
-            channel.writeAndFlush(rpcMessage).addListener((ChannelFutureListener) future -> {
-                if (future.isSuccess()) {
-                    log.info("client send message: [{}]", rpcMessage);
-                } else {
-                    future.channel().close();
-                    resultFuture.completeExceptionally(future.cause());
-                    log.error("Send failed:", future.cause());
-                }
-            });
-        } else {
-            throw new IllegalStateException();
+        InetSocketAddress inetSocketAddress;
+        try {
+            inetSocketAddress = serviceDiscovery.lookupService(rpcRequest);
+        } catch (RuntimeException e) {
+            resultFuture.completeExceptionally(e);
+            throw e;
         }
-
+        // 有可用连接时直接发送；正在建立连接时请求挂在这次连接上，连上之后在 IO 线程里发送，调用线程不等待
+        getChannel(inetSocketAddress).whenComplete((channel, throwable) -> {
+            if (throwable != null) {
+                resultFuture.completeExceptionally(throwable);
+            } else {
+                try {
+                    send(channel, rpcRequest, rpcServiceConfig, resultFuture);
+                } catch (RuntimeException e) {
+                    // 回调里抛出的异常没有人处理，通过 resultFuture 通知调用方
+                    resultFuture.completeExceptionally(e);
+                }
+            }
+        });
         // 在这里不对响应进行处理，而是到unprocessedRequests的complete方法里面才处理，也就是说这里返回的resultFuture啥也没有
         return resultFuture;
     }
 
-    public Channel getChannel(InetSocketAddress inetSocketAddress) {
-        Channel channel = channelProvider.get(inetSocketAddress);
-        if (channel == null) {
-            channel = doConnect(inetSocketAddress);
-            channelProvider.set(inetSocketAddress, channel);
+    private void send(Channel channel, RpcRequest rpcRequest, RpcServiceConfig rpcServiceConfig, CompletableFuture<RpcResponse<Object>> resultFuture) {
+        if (!channel.isActive()) {
+            resultFuture.completeExceptionally(new RpcException(RpcErrorMessageEnum.CHANNEL_CLOSED, String.valueOf(channel.remoteAddress())));
+            return;
+        }
+        // 将 RPC 请求放入这个连接未处理请求的集合中，以便后续处理响应，得到的 requestId 写在协议头里，
+        // 超时还没有收到响应时 resultFuture 异常完成
+        UnprocessedRequests unprocessedRequests = channel.attr(UnprocessedRequests.KEY).get();
+        long requestId = unprocessedRequests.put(resultFuture, rpcServiceConfig.getTimeoutMillis());
+        if (requestId == 0) {
+            // 这个连接上未完成的请求达到了上限
+            resultFuture.completeExceptionally(new RpcException(RpcErrorMessageEnum.TOO_MANY_REQUESTS, String.valueOf(channel.remoteAddress())));
+            return;
+        }
+        RpcMessage rpcMessage = RpcMessage.builder()
+                .version(protocolVersion)
+                .requestId(requestId)
+                .codec(SerializationTypeEnum.HESSIAN.getCode())
+                .compress(rpcServiceConfig.getCompressCode())
+                .routeKey(rpcRequest.getRouteKey()).build();
+        MethodIdTable.MethodId methodId = channel.attr(MethodIdTable.KEY).get().get(rpcRequest);
+        if (methodId.isRegistered()) {
+            // 服务端已经登记了这个方法，只发送方法 id 和参数
+            rpcMessage.setMessageType(RpcConstants.INVOCATION_TYPE);
+            rpcMessage.setData(new RpcInvocation(methodId.getId(), rpcRequest.getParameters()));
+        } else {
+            // 发送完整的请求，同时让服务端登记方法 id，成功响应之后就可以只发送 id 了
+            rpcRequest.setMethodId(methodId.getId());
+            rpcMessage.setMessageType(RpcConstants.REQUEST_TYPE);
+            rpcMessage.setData(rpcRequest);
+            resultFuture.thenAccept(rpcResponse -> {
+                if (rpcResponse.getCode() != null && rpcResponse.getCode() == RpcResponseCodeEnum.SUCCESS.getCode()) {
+                    methodId.markRegistered();
+                }
+            });
+        }
+        channel.writeAndFlush(rpcMessage).addListener((ChannelFutureListener) future -> {
+            if (future.isSuccess()) {
+                log.info("client send message: [{}]", rpcMessage);
+            } else {
+                future.channel().close();
+                unprocessedRequests.remove(requestId);
+                resultFuture.completeExceptionally(future.cause());
+                log.error("Send failed:", future.cause());
+            }
+        });
+    }
+
+    /**
+     * 获得一个未完成请求的名额
+     *
+     * @param timeoutMillis 等待模式下最多等待的时间，调用不会等得比它的超时时间还长
+     * @param block         名额用完时是否等待
+     * @return 没有得到名额时返回 false
+     */
+    private boolean acquireInFlight(long timeoutMillis, boolean block) {
+        if (inFlight == null) {
+            return true;
+        }
+        if (!block) {
+            return inFlight.tryAcquire();
+        }
+        try {
+            return inFlight.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
         }
-        return channel;
+    }
+
+    /**
+     * 获得到指定地址的连接，连接的建立是异步的，同一个地址同一时间只有一次连接在进行
+     *
+     * @param inetSocketAddress server address
+     * @return 连接可用时完成；连接失败或者这个地址还在重连退避的时间内时异常完成
+     */
+    public CompletableFuture<Channel> getChannel(InetSocketAddress inetSocketAddress) {
+        // 新连接注册到 eventLoopGroup 里的下一个 event loop 上，同一个地址的连接分散在不同的线程里
+        return channelProvider.getPool(inetSocketAddress).acquire(bootstrap::connect);
     }
 
     public void close() {
@@ -1,8 +1,9 @@
 package github.javaguide.remoting.transport.netty.client;
 
 import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.enums.RpcErrorMessageEnum;
 import github.javaguide.enums.SerializationTypeEnum;
-import github.javaguide.factory.SingletonFactory;
+import github.javaguide.exception.RpcException;
 import github.javaguide.remoting.constants.RpcConstants;
 import github.javaguide.remoting.dto.RpcMessage;
 import github.javaguide.remoting.dto.RpcResponse;
@@ -12,8 +13,6 @@ import io.netty.handler.timeout.IdleStateEvent;
 import io.netty.util.ReferenceCountUtil;
 import lombok.extern.slf4j.Slf4j;
 
-import java.net.InetSocketAddress;
-
 /**
  * Customize the client ChannelHandler to process the data sent by the server
  *
@@ -27,14 +26,6 @@ import java.net.InetSocketAddress;
 @Slf4j
 // 继承了 ChannelInboundHandlerAdapter 说明它是一个入站处理器
 public class NettyRpcClientHandler extends ChannelInboundHandlerAdapter {
-    private final UnprocessedRequests unprocessedRequests;
-    private final NettyRpcClient nettyRpcClient;
-
-    public NettyRpcClientHandler() {
-        this.unprocessedRequests = SingletonFactory.getInstance(UnprocessedRequests.class);
-        this.nettyRpcClient = SingletonFactory.getInstance(NettyRpcClient.class);
-    }
-
     /**
      * 读取服务器发送的消息
      */
@@ -54,7 +45,10 @@ public class NettyRpcClientHandler extends ChannelInboundHandlerAdapter {
                     // 如果是响应的话，那么就把他转成 RpcResponse 对象，然后调用complete方法，来存到对应的future里面
                 } else if (messageType == RpcConstants.RESPONSE_TYPE) {
                     RpcResponse<Object> rpcResponse = (RpcResponse<Object>) tmp.getData();
-                    unprocessedRequests.complete(rpcResponse);
+                    UnprocessedRequests unprocessedRequests = ctx.channel().attr(UnprocessedRequests.KEY).get();
+                    if (!unprocessedRequests.complete(tmp.getRequestId(), rpcResponse)) {
+                        log.warn("no unprocessed request for response [{}], discarded", tmp.getRequestId());
+                    }
                 }
             }
         } finally {
@@ -70,7 +64,8 @@ public class NettyRpcClientHandler extends ChannelInboundHandlerAdapter {
             if (state == IdleState.WRITER_IDLE) {
                 // 写空闲状态表示一段时间内没有向服务器发送数据。,则发送心跳请求以维持与服务器的连接
                 log.info("write idle happen [{}]", ctx.channel().remoteAddress());
-                Channel channel = nettyRpcClient.getChannel((InetSocketAddress) ctx.channel().remoteAddress());
+                // 心跳发在空闲的这个连接上，同一个地址可能有多个连接
+                Channel channel = ctx.channel();
                 RpcMessage rpcMessage = new RpcMessage();
                 rpcMessage.setCodec(SerializationTypeEnum.PROTOSTUFF.getCode());
                 rpcMessage.setCompress(CompressTypeEnum.GZIP.getCode());
@@ -84,15 +79,35 @@ public class NettyRpcClientHandler extends ChannelInboundHandlerAdapter {
         }
     }
 
+    /**
+     * 连接断开了，这个连接上的请求不会再有响应，立即让它们失败
+     */
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        failPendingRequests(ctx, new RpcException(RpcErrorMessageEnum.CHANNEL_CLOSED, String.valueOf(ctx.channel().remoteAddress())));
+        super.channelInactive(ctx);
+    }
+
     /**
      * Called when an exception occurs in processing a client message
      */
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
         log.error("client catch exception：", cause);
-        cause.printStackTrace();
+        // 连接马上就关闭了，让调用方拿到真正的原因
+        failPendingRequests(ctx, new RpcException(RpcErrorMessageEnum.CHANNEL_CLOSED.getMessage(), cause));
         ctx.close();
     }
 
+    private void failPendingRequests(ChannelHandlerContext ctx, Throwable cause) {
+        UnprocessedRequests unprocessedRequests = ctx.channel().attr(UnprocessedRequests.KEY).get();
+        if (unprocessedRequests != null) {
+            int failed = unprocessedRequests.failAll(cause);
+            if (failed > 0) {
+                log.warn("channel [{}] closed, [{}] unprocessed requests failed", ctx.channel().remoteAddress(), failed);
+            }
+        }
+    }
+
 }
 
@@ -1,33 +1,229 @@
 package github.javaguide.remoting.transport.netty.client;
 
+import github.javaguide.enums.RpcErrorMessageEnum;
+import github.javaguide.exception.RpcException;
+import github.javaguide.remoting.constants.RpcConstants;
 import github.javaguide.remoting.dto.RpcResponse;
+import io.netty.util.AttributeKey;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import io.netty.util.collection.LongObjectHashMap;
+import io.netty.util.concurrent.DefaultThreadFactory;
 
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * !优势!
  * 如果在 send 发送完数据之后对 channel 进行手动阻塞等待返回 Response，会导致Event Loop阻塞导致效率下降
  * 优化后使用 CompletableFuture 包装 Response 实现线程同步，避免了 Event Loop 阻塞
+ * <p>
+ * 每个连接一份，挂在 channel 的 {@link #KEY} 属性上。requestId 是连接内自增的 long，写在协议头里，服务端原样带回，
+ * 响应按照它找到对应的 future。未完成的请求按照 requestId 分段存放在以 long 为 key 的开放寻址表里，
+ * 不用生成 UUID，也没有 String 和 Long 的装箱。
+ * 请求可以带超时时间，到期没有收到响应的请求由共享的时间轮移除，丢失的响应不会让调用方一直等待，表也不会无限增长。
+ * 连接断开时通过 {@link #failAll(Throwable)} 一次性让这个连接上的请求全部失败
  *
  * @author shuang.kou
  * @createTime 2020年06月04日 17:30:00
  */
 public class UnprocessedRequests {
-    // <requireId, 用来存储响应的 resultFuture>
-    private static final Map<String, CompletableFuture<RpcResponse<Object>>> UNPROCESSED_RESPONSE_FUTURES = new ConcurrentHashMap<>();
 
-    public void put(String requestId, CompletableFuture<RpcResponse<Object>> future) {
-        UNPROCESSED_RESPONSE_FUTURES.put(requestId, future);
+    public static final AttributeKey<UnprocessedRequests> KEY = AttributeKey.valueOf("unprocessedRequests");
+    // 分段数，必须是 2 的幂。requestId 是连续的，相邻的请求落在不同的分段上
+    private static final int STRIPES = 16;
+    // v1 协议头里的 requestId 只有 4 个字节
+    private static final long V1_ID_MASK = 0xFFFFFFFFL;
+    /**
+     * 所有连接的请求共用一个时间轮检查超时，登记和取消都是 O(1)，不用为每个请求提交一个定时任务。
+     * 精度是一个 tick，超时时间本来就不需要精确到毫秒
+     */
+    private static final HashedWheelTimer TIMEOUT_TIMER = new HashedWheelTimer(
+            new DefaultThreadFactory("rpc-request-timeout", true), 10, TimeUnit.MILLISECONDS);
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final long idMask;
+    // 未完成的请求数，连接池按照它选择连接，不用每次都锁住所有分段去数
+    private final AtomicInteger pending = new AtomicInteger();
+    // 最多的未完成请求数，小于等于 0 时不限制
+    private final int maxPending;
+    // <requestId, 用来存储响应的 resultFuture 和它的超时任务>
+    private final LongObjectHashMap<PendingRequest>[] stripes;
+
+    public UnprocessedRequests(byte version) {
+        this(version, 0);
+    }
+
+    /**
+     * @param maxPending 这个连接上最多的未完成请求数，小于等于 0 时不限制
+     */
+    @SuppressWarnings("unchecked")
+    public UnprocessedRequests(byte version, int maxPending) {
+        this.maxPending = maxPending;
+        this.idMask = version == RpcConstants.VERSION_1 ? V1_ID_MASK : Long.MAX_VALUE;
+        this.stripes = new LongObjectHashMap[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new LongObjectHashMap<>();
+        }
+    }
+
+    /**
+     * 登记一个不会超时的请求
+     *
+     * @return 分配给这个请求的 requestId，不会是 0，0 留给心跳
+     */
+    public long put(CompletableFuture<RpcResponse<Object>> future) {
+        return put(future, 0);
+    }
+
+    /**
+     * 登记一个未完成的请求，超过 timeoutMillis 还没有收到响应时从表里移除，future 以 {@link RpcException} 异常完成
+     *
+     * @param timeoutMillis 小于等于 0 时不超时
+     * @return 分配给这个请求的 requestId，不会是 0，0 留给心跳；未完成的请求已经达到上限时返回 0，请求没有登记
+     */
+    public long put(CompletableFuture<RpcResponse<Object>> future, long timeoutMillis) {
+        if (!reserve()) {
+            return 0;
+        }
+        long requestId;
+        do {
+            requestId = sequence.incrementAndGet() & idMask;
+        } while (requestId == 0);
+        PendingRequest pendingRequest = new PendingRequest(requestId, future, timeoutMillis);
+        LongObjectHashMap<PendingRequest> stripe = stripe(requestId);
+        synchronized (stripe) {
+            stripe.put(requestId, pendingRequest);
+        }
+        if (timeoutMillis > 0) {
+            // 先放进表里再开始计时，超时任务一定能看到这个请求
+            pendingRequest.timeout = TIMEOUT_TIMER.newTimeout(pendingRequest, timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        return requestId;
+    }
+
+    /**
+     * 移除请求并取消它的超时任务
+     */
+    public CompletableFuture<RpcResponse<Object>> remove(long requestId) {
+        PendingRequest pendingRequest = removePending(requestId);
+        if (pendingRequest == null) {
+            return null;
+        }
+        pendingRequest.cancelTimeout();
+        return pendingRequest.future;
+    }
+
+    /**
+     * @return requestId 对应的请求不存在时返回 false，比如已经因为发送失败或者超时被移除了
+     */
+    public boolean complete(long requestId, RpcResponse<Object> rpcResponse) {
+        CompletableFuture<RpcResponse<Object>> future = remove(requestId);
+        if (null == future) {
+            return false;
+        }
+        future.complete(rpcResponse);
+        return true;
+    }
+
+    /**
+     * 连接断开时调用，这个连接上所有未完成的请求立即以 cause 异常完成，调用方不用等到超时
+     *
+     * @return 失败的请求数
+     */
+    public int failAll(Throwable cause) {
+        List<PendingRequest> failed = new ArrayList<>();
+        for (LongObjectHashMap<PendingRequest> stripe : stripes) {
+            synchronized (stripe) {
+                failed.addAll(stripe.values());
+                stripe.clear();
+            }
+        }
+        // 在锁外面完成 future，回调里可能会在别的连接上重试
+        pending.addAndGet(-failed.size());
+        for (PendingRequest pendingRequest : failed) {
+            pendingRequest.cancelTimeout();
+            pendingRequest.future.completeExceptionally(cause);
+        }
+        return failed.size();
+    }
+
+    /**
+     * @return 未完成的请求数
+     */
+    public int size() {
+        return pending.get();
     }
 
-    public void complete(RpcResponse<Object> rpcResponse) {
-        CompletableFuture<RpcResponse<Object>> future = UNPROCESSED_RESPONSE_FUTURES.remove(rpcResponse.getRequestId());
-        if (null != future) {
-            future.complete(rpcResponse);
-        } else {
-            throw new IllegalStateException();
+    /**
+     * 先占一个名额，达到上限时不登记
+     */
+    private boolean reserve() {
+        if (maxPending <= 0) {
+            pending.incrementAndGet();
+            return true;
+        }
+        int current;
+        do {
+            current = pending.get();
+            if (current >= maxPending) {
+                return false;
+            }
+        } while (!pending.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    private PendingRequest removePending(long requestId) {
+        LongObjectHashMap<PendingRequest> stripe = stripe(requestId);
+        PendingRequest pendingRequest;
+        synchronized (stripe) {
+            pendingRequest = stripe.remove(requestId);
+        }
+        if (pendingRequest != null) {
+            pending.decrementAndGet();
+        }
+        return pendingRequest;
+    }
+
+    private LongObjectHashMap<PendingRequest> stripe(long requestId) {
+        return stripes[(int) requestId & (STRIPES - 1)];
+    }
+
+    /**
+     * 未完成的请求，自己就是超时任务，不用再为每个请求创建一个 TimerTask
+     */
+    private final class PendingRequest implements TimerTask {
+        private final long requestId;
+        private final CompletableFuture<RpcResponse<Object>> future;
+        private final long timeoutMillis;
+        // 在 put 的线程里设置，响应可能在设置之前就到了，这时取消不了，到期后超时任务在表里找不到请求，什么也不做
+        private volatile Timeout timeout;
+
+        private PendingRequest(long requestId, CompletableFuture<RpcResponse<Object>> future, long timeoutMillis) {
+            this.requestId = requestId;
+            this.future = future;
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        @Override
+        public void run(Timeout timeout) {
+            // 和响应竞争，谁从表里移除了请求谁来完成 future
+            if (removePending(requestId) == this) {
+                future.completeExceptionally(new RpcException(RpcErrorMessageEnum.REQUEST_TIMEOUT,
+                        "requestId " + requestId + ", timeout " + timeoutMillis + "ms"));
+            }
+        }
+
+        private void cancelTimeout() {
+            Timeout t = timeout;
+            if (t != null) {
+                t.cancel();
+            }
         }
     }
 }
@@ -6,18 +6,26 @@ import github.javaguide.enums.SerializationTypeEnum;
 import github.javaguide.extension.ExtensionLoader;
 import github.javaguide.remoting.constants.RpcConstants;
 import github.javaguide.remoting.dto.RpcMessage;
+import github.javaguide.remoting.dto.RpcInvocation;
 import github.javaguide.remoting.dto.RpcRequest;
 import github.javaguide.remoting.dto.RpcResponse;
 import github.javaguide.serialize.Serializer;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.CorruptedFrameException;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 import lombok.extern.slf4j.Slf4j;
 
+import java.nio.ByteOrder;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
- * custom protocol decoder
+ * custom protocol decoder, accepts both v1 and v2 frames on the same connection
+ * <p>
+ * v1:
  * <pre>
  *   0     1     2     3     4        5     6     7     8         9          10      11     12  13  14   15 16
  *   +-----+-----+-----+-----+--------+----+----+----+------+-----------+-------+----- --+-----+-----+-------+
@@ -32,6 +40,7 @@ import java.util.Arrays;
  * 1B compress（压缩类型） 1B codec（序列化类型）    4B  requestId（请求的Id）
  * body（object类型数据）
  * </pre>
+ * v2 的格式见 {@link RpcMessageEncoder}，full length 是 varint，requestId 是 8 个字节，消息体之前还有 attachments
  * <p>
  * {@link LengthFieldBasedFrameDecoder} is a length-based decoder , used to solve TCP unpacking and sticking problems.
  * </p>
@@ -64,6 +73,19 @@ public class RpcMessageDecoder extends LengthFieldBasedFrameDecoder {
         super(maxFrameLength, lengthFieldOffset, lengthFieldLength, lengthAdjustment, initialBytesToStrip);
     }
 
+    /**
+     * v1 的长度字段是 4 个字节的 int，v2 是最多 4 个字节的 varint。
+     * 父类按照 4 个字节的长度字段计算帧长，两个版本的长度字段都从同一个位置开始，而且记录的都是整个帧的长度，所以只需要换一种读法
+     */
+    @Override
+    protected long getUnadjustedFrameLength(ByteBuf buf, int offset, int length, ByteOrder order) {
+        // 长度字段前面一个字节是版本号
+        if (buf.getByte(offset - 1) == RpcConstants.VERSION_2) {
+            return Varint.getPaddedVarint(buf, offset);
+        }
+        return super.getUnadjustedFrameLength(buf, offset, length, order);
+    }
+
     @Override
     protected Object decode(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
         // 调用了父类LengthFieldBasedFrameDecoder的decode方法，获得解码后的结果。LengthFieldBasedFrameDecoder会根据长度字段的信息，将输入的ByteBuf切割成一帧一帧的消息。
@@ -76,7 +98,7 @@ public class RpcMessageDecoder extends LengthFieldBasedFrameDecoder {
             if (frame.readableBytes() >= RpcConstants.TOTAL_LENGTH) {
                 try {
                     // 如果帧中包含完整的消息，调用decodeFrame方法进行进一步的解码
-                    return decodeFrame(frame);
+                    return decodeFrame(frame, ctx.alloc());
                 } catch (Exception e) {
                     log.error("Decode frame error!", e);
                     throw e;
@@ -92,13 +114,22 @@ public class RpcMessageDecoder extends LengthFieldBasedFrameDecoder {
     }
 
 
-    private Object decodeFrame(ByteBuf in) {
+    private Object decodeFrame(ByteBuf in, ByteBufAllocator alloc) {
+        int frameLength = in.readableBytes();
         // 检查魔术号
         checkMagicNumber(in);
         // 检查版本
-        checkVersion(in);
-        // 传输协议里，消息长度四个字节，正好一个int
-        int fullLength = in.readInt();
+        byte version = checkVersion(in);
+        if (version == RpcConstants.VERSION_2 && frameLength < RpcConstants.V2_MIN_LENGTH) {
+            // v2 的固定头部比 v1 长，不完整的头部直接拒绝，不去读后面不存在的字段
+            throw new RuntimeException("frame is shorter than the v2 header: " + frameLength);
+        }
+        if (version == RpcConstants.VERSION_1) {
+            // 传输协议里，消息长度四个字节，正好一个int
+            in.readInt();
+        } else {
+            Varint.readVarint(in);
+        }
         // build RpcMessage object
         // 一个字节: 消息类型
         byte messageType = in.readByte();
@@ -106,12 +137,17 @@ public class RpcMessageDecoder extends LengthFieldBasedFrameDecoder {
         byte codecType = in.readByte();
         // 一个字节: 压缩类型
         byte compressType = in.readByte();
-        // 一个字节: 请求的Id
-        int requestId = in.readInt();
+        // 请求的Id，v1 四个字节，v2 八个字节
+        long requestId = version == RpcConstants.VERSION_1 ? in.readUnsignedInt() : in.readLong();
         RpcMessage rpcMessage = RpcMessage.builder()
+                .version(version)
                 .codec(codecType)
+                .compress(compressType)
                 .requestId(requestId)
                 .messageType(messageType).build();
+        if (version == RpcConstants.VERSION_2) {
+            rpcMessage.setAttachments(readAttachments(in));
+        }
         // 处理心跳消息
         if (messageType == RpcConstants.HEARTBEAT_REQUEST_TYPE) {
             rpcMessage.setData(RpcConstants.PING);
@@ -122,42 +158,73 @@ public class RpcMessageDecoder extends LengthFieldBasedFrameDecoder {
             return rpcMessage;
         }
         // 处理非心跳消息的数据解析
-        // 计算消息体的长度
-        int bodyLength = fullLength - RpcConstants.HEAD_LENGTH;
+        // 帧里剩下的就是消息体
+        int bodyLength = in.readableBytes();
         if (bodyLength > 0) {
-            byte[] bs = new byte[bodyLength];
-            in.readBytes(bs);
+            // 消息体只是帧的一个切片，后续的解压和反序列化都在原地读取，不再拷贝出 byte[]
+            ByteBuf body = in.readSlice(bodyLength);
+            if (compressType == CompressTypeEnum.NONE.getCode()) {
+                // 没有压缩的消息体直接反序列化
+                rpcMessage.setData(deserialize(body, messageType, rpcMessage.getCodec()));
+                return rpcMessage;
+            }
             // 获取压缩算法的实例
             String compressName = CompressTypeEnum.getName(compressType);
             Compress compress = ExtensionLoader.getExtensionLoader(Compress.class)
                     .getExtension(compressName);
-            // 按这个实例去解压缩
-            bs = compress.decompress(bs);
-            // 通过 SerializationTypeEnum 中的方法获取给定序列化类型的名称。SerializationTypeEnum 应该是一个枚举，其中包含了各种序列化算法的类型
-            String codecName = SerializationTypeEnum.getName(rpcMessage.getCodec());
-            log.info("codec name: [{}] ", codecName);
-            // 扩展加载器模式。ExtensionLoader 加载了实现了 Serializer 接口的序列化算法的具体实现类。
-            Serializer serializer = ExtensionLoader.getExtensionLoader(Serializer.class)
-                    .getExtension(codecName);
-            if (messageType == RpcConstants.REQUEST_TYPE) {
-                // 调用序列化算法的 deserialize 方法将接收到的字节数组 bs 反序列化为 RpcRequest 对象，并将其设置为 rpcMessage 的数据部分
-                RpcRequest tmpValue = serializer.deserialize(bs, RpcRequest.class);
-                rpcMessage.setData(tmpValue);
-            } else {
-                // 调用序列化算法的 deserialize 方法将接收到的字节数组 bs 反序列化为 RpcResponse 对象，并将其设置为 rpcMessage 的数据部分
-                RpcResponse tmpValue = serializer.deserialize(bs, RpcResponse.class);
-                rpcMessage.setData(tmpValue);
+            // 按这个实例去解压缩，解压结果放在池化的缓冲区里
+            ByteBuf decompressed = alloc.heapBuffer();
+            try {
+                compress.decompress(body, decompressed);
+                rpcMessage.setData(deserialize(decompressed, messageType, rpcMessage.getCodec()));
+            } finally {
+                decompressed.release();
             }
         }
         return rpcMessage;
     }
 
-    private void checkVersion(ByteBuf in) {
+    private Object deserialize(ByteBuf body, byte messageType, byte codecType) {
+        // 通过 SerializationTypeEnum 中的方法获取给定序列化类型的名称。SerializationTypeEnum 应该是一个枚举，其中包含了各种序列化算法的类型
+        String codecName = SerializationTypeEnum.getName(codecType);
+        log.info("codec name: [{}] ", codecName);
+        // 扩展加载器模式。ExtensionLoader 加载了实现了 Serializer 接口的序列化算法的具体实现类。
+        Serializer serializer = ExtensionLoader.getExtensionLoader(Serializer.class)
+                .getExtension(codecName);
+        if (messageType == RpcConstants.REQUEST_TYPE) {
+            // 调用序列化算法的 deserialize 方法将消息体反序列化为 RpcRequest 对象
+            return serializer.deserialize(body, RpcRequest.class);
+        }
+        if (messageType == RpcConstants.INVOCATION_TYPE) {
+            return serializer.deserialize(body, RpcInvocation.class);
+        }
+        // 调用序列化算法的 deserialize 方法将消息体反序列化为 RpcResponse 对象
+        return serializer.deserialize(body, RpcResponse.class);
+    }
+
+    private byte checkVersion(ByteBuf in) {
         // read the version and compare
         byte version = in.readByte();
-        if (version != RpcConstants.VERSION) {
+        if (version != RpcConstants.VERSION_1 && version != RpcConstants.VERSION_2) {
             throw new RuntimeException("version isn't compatible" + version);
         }
+        return version;
+    }
+
+    private Map<String, String> readAttachments(ByteBuf in) {
+        int size = Varint.readVarint(in);
+        if (size == 0) {
+            return null;
+        }
+        // 每个 key/value 至少占两个字节，防止错误的数量导致分配过大的 map
+        if (size > in.readableBytes() / 2) {
+            throw new CorruptedFrameException("attachment count " + size + " exceeds frame");
+        }
+        Map<String, String> attachments = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            attachments.put(Varint.readString(in), Varint.readString(in));
+        }
+        return attachments;
     }
 
     private void checkMagicNumber(ByteBuf in) {
@@ -2,24 +2,30 @@ package github.javaguide.remoting.transport.netty.codec;
 
 
 import github.javaguide.compress.Compress;
+import github.javaguide.compress.adaptive.AdaptiveCompressSelector;
+import github.javaguide.compress.zstd.ZstdSampleRecorder;
 import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.enums.RpcConfigEnum;
 import github.javaguide.enums.SerializationTypeEnum;
 import github.javaguide.extension.ExtensionLoader;
+import github.javaguide.factory.SingletonFactory;
 import github.javaguide.remoting.constants.RpcConstants;
 import github.javaguide.remoting.dto.RpcMessage;
 import github.javaguide.serialize.Serializer;
+import github.javaguide.utils.RpcConfigUtil;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Map;
 
 
 /**
  * <p>
- * custom protocol decoder
+ * custom protocol encoder
  * <p>
+ * v1:
  * <pre>
  *   0     1     2     3     4        5     6     7     8         9          10      11     12  13  14   15 16
  *   +-----+-----+-----+-----+--------+----+----+----+------+-----------+-------+----- --+-----+-----+-------+
@@ -34,6 +40,18 @@ import java.util.concurrent.atomic.AtomicInteger;
  * 1B compress（压缩类型） 1B codec（序列化类型）    4B  requestId（请求的Id）
  * body（object类型数据）
  * </pre>
+ * v2:
+ * <pre>
+ *   +-----------------+--------+----------------------+------------+-------+----------+-----------------+
+ *   |   magic code    |version | full length (varint) | messageType| codec | compress | RequestId (8B)  |
+ *   +-----------------+--------+----------------------+------------+-------+----------+-----------------+
+ *   | attachment count (varint) | key length (varint) | key | value length (varint) | value | ...       |
+ *   +---------------------------------------------------------------------------------------------------+
+ *   |                                         body                                                      |
+ *   +---------------------------------------------------------------------------------------------------+
+ * full length 写在消息体之前，编码时固定占 4 个字节（带继续位的 varint），写完消息体再回填；
+ * key 和 value 都是 UTF-8 字符串
+ * </pre>
  *
  * @author WangTao
  * @createTime on 2020/10/2
@@ -42,33 +60,53 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 public class RpcMessageEncoder extends MessageToByteEncoder<RpcMessage> {
-    // 为每个请求生成一个唯一的标识
-    private static final AtomicInteger ATOMIC_INTEGER = new AtomicInteger(0);
+    // 没有指定版本的消息使用的协议版本
+    private static final byte DEFAULT_VERSION = (byte) RpcConfigUtil.getInt(RpcConfigEnum.PROTOCOL_VERSION, RpcConstants.DEFAULT_VERSION);
+    // 序列化后小于这个字节数的消息体不压缩，避免小消息白白付出压缩的开销
+    private static final int COMPRESS_THRESHOLD = RpcConfigUtil.getInt(RpcConfigEnum.COMPRESS_THRESHOLD, RpcConstants.DEFAULT_COMPRESS_THRESHOLD);
+    // 自适应压缩模式下为每条消息选择压缩方式
+    private static final AdaptiveCompressSelector ADAPTIVE_COMPRESS_SELECTOR = SingletonFactory.getInstance(AdaptiveCompressSelector.class);
+    // 采集训练 zstd 字典用的消息体样本，默认不开启
+    private static final ZstdSampleRecorder SAMPLE_RECORDER = SingletonFactory.getInstance(ZstdSampleRecorder.class);
 
     @Override
     protected void encode(ChannelHandlerContext ctx, RpcMessage rpcMessage, ByteBuf out) {
+        // 记录帧的起始位置，out 不一定是从 0 开始写
+        int startIndex = out.writerIndex();
         try {
             // 写入魔术
             out.writeBytes(RpcConstants.MAGIC_NUMBER);
             // 写入版本
-            out.writeByte(RpcConstants.VERSION);
-            // 预留四个byte的地方给总长度
-            out.writerIndex(out.writerIndex() + 4);
+            byte version = rpcMessage.getVersion() == 0 ? DEFAULT_VERSION : rpcMessage.getVersion();
+            if (version != RpcConstants.VERSION_1 && version != RpcConstants.VERSION_2) {
+                throw new IllegalArgumentException("unsupported version: " + version);
+            }
+            out.writeByte(version);
+            // 预留四个byte的地方给总长度，消息体写完后再回填。v1 是 int，v2 是定长的 varint
+            int lengthIndex = out.writerIndex();
+            out.writerIndex(lengthIndex + 4);
             // 得到消息类型
             byte messageType = rpcMessage.getMessageType();
             // 写入信息类型
             out.writeByte(messageType);
             // 写入序列化类型
             out.writeByte(rpcMessage.getCodec());
-            // 写入压缩方式
-            out.writeByte(CompressTypeEnum.GZIP.getCode());
-            // 把唯一的，自增的int值，作为RequestId
-            out.writeInt(ATOMIC_INTEGER.getAndIncrement());
-            // 存放消息体，便于计算长度
-            byte[] bodyBytes = null;
-            // 初始化消息的总长度，初始值为头部长度
-            int fullLength = RpcConstants.HEAD_LENGTH;
-            // 如果不是心跳消息，总长度等于头+消息体
+            // 写入压缩方式，消息体写完后再回填实际使用的压缩方式
+            int compressIndex = out.writerIndex();
+            byte compressType = rpcMessage.getCompress();
+            out.writeByte(compressType);
+            // 写入 RequestId，请求的 id 由客户端按连接分配，响应带回请求的 id
+            long requestId = rpcMessage.getRequestId();
+            if (version == RpcConstants.VERSION_1) {
+                out.writeInt((int) requestId);
+                if (rpcMessage.getAttachments() != null && !rpcMessage.getAttachments().isEmpty()) {
+                    log.warn("v1 does not support attachments, [{}] dropped", rpcMessage.getAttachments());
+                }
+            } else {
+                out.writeLong(requestId);
+                writeAttachments(out, rpcMessage.getAttachments());
+            }
+            // 如果不是心跳消息，写入消息体
             if (messageType != RpcConstants.HEARTBEAT_REQUEST_TYPE
                     && messageType != RpcConstants.HEARTBEAT_RESPONSE_TYPE) {
                 // serialize the object
@@ -77,35 +115,75 @@ public class RpcMessageEncoder extends MessageToByteEncoder<RpcMessage> {
                 // 还是一样的，用 extensionloadre 获取具体的序列化对象,
                 Serializer serializer = ExtensionLoader.getExtensionLoader(Serializer.class)
                         .getExtension(codecName);
-                // 然后进行序列化
-                bodyBytes = serializer.serialize(rpcMessage.getData());
-                // 获取压缩实体类
-                String compressName = CompressTypeEnum.getName(rpcMessage.getCompress());
-                Compress compress = ExtensionLoader.getExtensionLoader(Compress.class)
-                        .getExtension(compressName);
-                // 压缩
-                bodyBytes = compress.compress(bodyBytes);
-                // 加上到总长度
-                fullLength += bodyBytes.length;
+                if (compressType == CompressTypeEnum.NONE.getCode()) {
+                    // 不压缩的话直接序列化到 out 中
+                    int bodyIndex = out.writerIndex();
+                    serializer.serialize(rpcMessage.getData(), out);
+                    SAMPLE_RECORDER.record(messageType, out.slice(bodyIndex, out.writerIndex() - bodyIndex));
+                } else {
+                    // 序列化结果放在池化的缓冲区里，压缩时直接写入 out，全程不产生临时的 byte[]
+                    ByteBuf body = ctx.alloc().heapBuffer();
+                    try {
+                        serializer.serialize(rpcMessage.getData(), body);
+                        SAMPLE_RECORDER.record(messageType, body);
+                        boolean adaptive = compressType == CompressTypeEnum.ADAPTIVE.getCode();
+                        Compress compress = null;
+                        if (adaptive) {
+                            // 消息体太小时压缩得不偿失，否则根据这个服务方法上的统计选择压缩方式
+                            compressType = body.readableBytes() < COMPRESS_THRESHOLD ? CompressTypeEnum.NONE.getCode()
+                                    : ADAPTIVE_COMPRESS_SELECTOR.select(rpcMessage.getRouteKey());
+                        }
+                        if (compressType != CompressTypeEnum.NONE.getCode()) {
+                            // 获取压缩实体类
+                            String compressName = CompressTypeEnum.getName(compressType);
+                            compress = ExtensionLoader.getExtensionLoader(Compress.class).getExtension(compressName);
+                            // 指定了压缩方式时由压缩算法决定阈值，带字典的 zstd 压缩小消息体也有效果
+                            if (!adaptive && body.readableBytes() < compress.compressThreshold(COMPRESS_THRESHOLD)) {
+                                compressType = CompressTypeEnum.NONE.getCode();
+                            }
+                        }
+                        if (compressType == CompressTypeEnum.NONE.getCode()) {
+                            out.writeBytes(body);
+                        } else {
+                            int originalLength = body.readableBytes();
+                            int compressedIndex = out.writerIndex();
+                            long start = System.nanoTime();
+                            compress.compress(body, out);
+                            if (adaptive) {
+                                ADAPTIVE_COMPRESS_SELECTOR.record(rpcMessage.getRouteKey(), compressType, originalLength,
+                                        out.writerIndex() - compressedIndex, System.nanoTime() - start);
+                            }
+                        }
+                    } finally {
+                        body.release();
+                    }
+                }
             }
-
-            if (bodyBytes != null) {
-                out.writeBytes(bodyBytes);
+            // 回填实际使用的压缩方式，解码端按照它来解压
+            out.setByte(compressIndex, compressType);
+            // 把总长度的值回填到预留的位置
+            if (version == RpcConstants.VERSION_1) {
+                out.setInt(lengthIndex, out.writerIndex() - startIndex);
+            } else {
+                Varint.setPaddedVarint(out, lengthIndex, out.writerIndex() - startIndex);
             }
-            // 获取当前的写入位置
-            int writeIndex = out.writerIndex();
-            // 移动到预留空间的位置
-            out.writerIndex(writeIndex - fullLength + RpcConstants.MAGIC_NUMBER.length + 1);
-            // 把总长度的值写到对应的地方
-            out.writeInt(fullLength);
-            // 还原写入位置
-            out.writerIndex(writeIndex);
         } catch (Exception e) {
+            // 丢弃写了一半的帧，否则对端会按照错误的长度解析后面所有的消息
+            out.writerIndex(startIndex);
             log.error("Encode request error!", e);
         }
 
     }
 
-
+    private static void writeAttachments(ByteBuf out, Map<String, String> attachments) {
+        if (attachments == null) {
+            Varint.writeVarint(out, 0);
+            return;
+        }
+        Varint.writeVarint(out, attachments.size());
+        for (Map.Entry<String, String> attachment : attachments.entrySet()) {
+            Varint.writeString(out, attachment.getKey());
+            Varint.writeString(out, attachment.getValue());
+        }
+    }
 }
-
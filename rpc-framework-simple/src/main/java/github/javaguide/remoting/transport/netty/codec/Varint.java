@@ -0,0 +1,96 @@
+package github.javaguide.remoting.transport.netty.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.CorruptedFrameException;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * v2 协议里长度字段使用的无符号 varint（LEB128）：每个字节低 7 位存数据，最高位为 1 表示后面还有字节
+ */
+public final class Varint {
+
+    /**
+     * 回填用的定长 varint 占的字节数，最大能表示 2^28 - 1，远大于 MAX_FRAME_LENGTH
+     */
+    public static final int PADDED_LENGTH = 4;
+    private static final int MAX_PADDED_VALUE = (1 << 7 * PADDED_LENGTH) - 1;
+    // int 最多占 5 个字节
+    private static final int MAX_LENGTH = 5;
+
+    private Varint() {
+    }
+
+    public static void writeVarint(ByteBuf out, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("negative varint: " + value);
+        }
+        while ((value & ~0x7F) != 0) {
+            out.writeByte(value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * 在 index 处写入固定占 {@link #PADDED_LENGTH} 个字节的 varint，用来回填写消息体之前还不知道的长度。
+     * 前面的字节带着继续位，所以标准的 varint 解码也能正确读取
+     */
+    public static void setPaddedVarint(ByteBuf out, int index, int value) {
+        if (value < 0 || value > MAX_PADDED_VALUE) {
+            throw new IllegalArgumentException("padded varint out of range: " + value);
+        }
+        for (int i = 0; i < PADDED_LENGTH - 1; i++) {
+            out.setByte(index + i, value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        out.setByte(index + PADDED_LENGTH - 1, value);
+    }
+
+    public static int readVarint(ByteBuf in) {
+        int value = 0;
+        for (int i = 0; i < MAX_LENGTH; i++) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << 7 * i;
+            if (b >= 0) {
+                // 第 5 个字节只能用低 3 位，否则超出了非负 int 的范围
+                if (i == MAX_LENGTH - 1 && b > 0x07) {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw new CorruptedFrameException("malformed varint");
+    }
+
+    /**
+     * 读取 index 处最多占 {@link #PADDED_LENGTH} 个字节的 varint，不移动 readerIndex，用来读取帧的总长度
+     */
+    public static int getPaddedVarint(ByteBuf in, int index) {
+        int value = 0;
+        for (int i = 0; i < PADDED_LENGTH; i++) {
+            byte b = in.getByte(index + i);
+            value |= (b & 0x7F) << 7 * i;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new CorruptedFrameException("malformed frame length");
+    }
+
+    public static void writeString(ByteBuf out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.writeBytes(bytes);
+    }
+
+    public static String readString(ByteBuf in) {
+        int length = readVarint(in);
+        if (length > in.readableBytes()) {
+            throw new CorruptedFrameException("string length " + length + " exceeds frame");
+        }
+        String value = in.toString(in.readerIndex(), length, StandardCharsets.UTF_8);
+        in.skipBytes(length);
+        return value;
+    }
+}
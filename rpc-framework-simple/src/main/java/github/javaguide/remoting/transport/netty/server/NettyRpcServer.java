@@ -2,13 +2,14 @@ package github.javaguide.remoting.transport.netty.server;
 
 import github.javaguide.config.CustomShutdownHook;
 import github.javaguide.config.RpcServiceConfig;
+import github.javaguide.enums.RpcConfigEnum;
 import github.javaguide.factory.SingletonFactory;
 import github.javaguide.provider.ServiceProvider;
 import github.javaguide.provider.impl.ZkServiceProviderImpl;
+import github.javaguide.remoting.constants.RpcConstants;
 import github.javaguide.remoting.transport.netty.codec.RpcMessageDecoder;
 import github.javaguide.remoting.transport.netty.codec.RpcMessageEncoder;
-import github.javaguide.utils.RuntimeUtil;
-import github.javaguide.utils.concurrent.threadpool.ThreadPoolFactoryUtil;
+import github.javaguide.utils.RpcConfigUtil;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.*;
 import io.netty.channel.nio.NioEventLoopGroup;
@@ -17,7 +18,6 @@ import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
 import io.netty.handler.timeout.IdleStateHandler;
-import io.netty.util.concurrent.DefaultEventExecutorGroup;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
@@ -55,10 +55,6 @@ public class NettyRpcServer {
         EventLoopGroup bossGroup = new NioEventLoopGroup(1);
         // 创建了用于处理客户端请求的工作事件循环组 workerGroup，采用默认线程数
         EventLoopGroup workerGroup = new NioEventLoopGroup();
-        DefaultEventExecutorGroup serviceHandlerGroup = new DefaultEventExecutorGroup(
-                RuntimeUtil.cpus() * 2,
-                ThreadPoolFactoryUtil.createThreadFactory("service-handler-group", false)
-        );
         try {
             ServerBootstrap b = new ServerBootstrap();
             b.group(bossGroup, workerGroup)
@@ -67,6 +63,10 @@ public class NettyRpcServer {
                     .childOption(ChannelOption.TCP_NODELAY, true)
                     // 是否开启 TCP 底层心跳机制
                     .childOption(ChannelOption.SO_KEEPALIVE, true)
+                    // 写缓冲区超过高水位时停止读取这个连接上的请求，降到低水位以下时恢复
+                    .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(
+                            RpcConfigUtil.getInt(RpcConfigEnum.WRITE_BUFFER_LOW_WATER_MARK, RpcConstants.DEFAULT_WRITE_BUFFER_LOW_WATER_MARK),
+                            RpcConfigUtil.getInt(RpcConfigEnum.WRITE_BUFFER_HIGH_WATER_MARK, RpcConstants.DEFAULT_WRITE_BUFFER_HIGH_WATER_MARK)))
                     // 表示系统用于临时存放已完成三次握手的请求的队列的最大长度,如果连接建立频繁，服务器处理创建新连接较慢，可以适当调大这个参数
                     .option(ChannelOption.SO_BACKLOG, 128)
                     .handler(new LoggingHandler(LogLevel.INFO))
@@ -80,8 +80,8 @@ public class NettyRpcServer {
                             p.addLast(new IdleStateHandler(30, 0, 0, TimeUnit.SECONDS));
                             p.addLast(new RpcMessageEncoder());  // ChannelOutboundHandler（发送消息，从下往上）
                             p.addLast(new RpcMessageDecoder());  // ChannelInboundHandler（接收消息，从上往下）
-                            // 这个 handler 就会在 serviceHandlerGroup 上执行
-                            p.addLast(serviceHandlerGroup, new NettyRpcServerHandler());  // ChannelInboundHandler
+                            // 这个 handler 在 IO 线程里解析请求，服务方法交给服务发布时选择的 Dispatcher 执行
+                            p.addLast(new NettyRpcServerHandler());  // ChannelInboundHandler
                         }
                     });
 
@@ -95,7 +95,6 @@ public class NettyRpcServer {
             log.error("shutdown bossGroup and workerGroup");
             bossGroup.shutdownGracefully();
             workerGroup.shutdownGracefully();
-            serviceHandlerGroup.shutdownGracefully();
         }
     }
 
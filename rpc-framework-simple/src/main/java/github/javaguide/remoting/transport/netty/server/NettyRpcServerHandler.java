@@ -1,23 +1,38 @@
 package github.javaguide.remoting.transport.netty.server;
 
 import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.enums.RpcErrorMessageEnum;
 import github.javaguide.enums.RpcResponseCodeEnum;
 import github.javaguide.enums.SerializationTypeEnum;
+import github.javaguide.exception.RpcException;
 import github.javaguide.factory.SingletonFactory;
+import github.javaguide.limiter.ConcurrencyLimiter;
 import github.javaguide.remoting.constants.RpcConstants;
+import github.javaguide.remoting.dto.RpcInvocation;
 import github.javaguide.remoting.dto.RpcMessage;
 import github.javaguide.remoting.dto.RpcRequest;
 import github.javaguide.remoting.dto.RpcResponse;
 import github.javaguide.remoting.handler.RpcRequestHandler;
+import github.javaguide.remoting.handler.ServiceMethod;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.timeout.IdleState;
 import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.util.HashedWheelTimer;
 import io.netty.util.ReferenceCountUtil;
+import io.netty.util.Timeout;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * Customize the ChannelHandler of the server to process the data sent by the client.
  * <p>
@@ -30,10 +45,29 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class NettyRpcServerHandler extends ChannelInboundHandlerAdapter {
 
+    /**
+     * 所有连接上的异步方法共用一个时间轮检查超时，future 一直不完成时也能释放并发限制的许可
+     */
+    private static final HashedWheelTimer TIMEOUT_TIMER = new HashedWheelTimer(
+            new DefaultThreadFactory("rpc-service-timeout", true), 10, TimeUnit.MILLISECONDS);
+
     private final RpcRequestHandler rpcRequestHandler;
+    private final ConcurrencyLimiter concurrencyLimiter;
+    /**
+     * 客户端在这个连接上登记的方法，每个连接有一个 handler，只在这个连接的 IO 线程里访问
+     * key: method id
+     * value: 解析好的方法
+     */
+    private final IntObjectMap<ServiceMethod> methods = new IntObjectHashMap<>();
 
     public NettyRpcServerHandler() {
         this.rpcRequestHandler = SingletonFactory.getInstance(RpcRequestHandler.class);
+        this.concurrencyLimiter = rpcRequestHandler.getConcurrencyLimiter();
+    }
+
+    NettyRpcServerHandler(ConcurrencyLimiter concurrencyLimiter) {
+        this.rpcRequestHandler = SingletonFactory.getInstance(RpcRequestHandler.class);
+        this.concurrencyLimiter = concurrencyLimiter;
     }
 
     @Override
@@ -43,6 +77,10 @@ public class NettyRpcServerHandler extends ChannelInboundHandlerAdapter {
                 log.info("server receive msg: [{}] ", msg);
                 byte messageType = ((RpcMessage) msg).getMessageType();
                 RpcMessage rpcMessage = new RpcMessage();
+                // 按照请求的协议版本响应，新老客户端可以连同一个端口
+                rpcMessage.setVersion(((RpcMessage) msg).getVersion());
+                // 带回请求的 requestId，客户端按照它找到对应的请求
+                rpcMessage.setRequestId(((RpcMessage) msg).getRequestId());
                 rpcMessage.setCodec(SerializationTypeEnum.HESSIAN.getCode());
                 rpcMessage.setCompress(CompressTypeEnum.GZIP.getCode());
                 // 如果是心跳请求，那么就返回个 pong 回去
@@ -51,21 +89,53 @@ public class NettyRpcServerHandler extends ChannelInboundHandlerAdapter {
                     rpcMessage.setData(RpcConstants.PONG);
                     // 否则就是有内容的了
                 } else {
-                    RpcRequest rpcRequest = (RpcRequest) ((RpcMessage) msg).getData();
-                    // 执行目标方法(客户端需要执行的方法)并返回方法结果
-                    Object result = rpcRequestHandler.handle(rpcRequest);
-                    log.info(String.format("server get result: %s", result.toString()));
-                    rpcMessage.setMessageType(RpcConstants.RESPONSE_TYPE);
-                    // 把结果写到response里面
-                    if (ctx.channel().isActive() && ctx.channel().isWritable()) {
-                        RpcResponse<Object> rpcResponse = RpcResponse.success(result, rpcRequest.getRequestId());
-                        rpcMessage.setData(rpcResponse);
-                        // 如果失败了，把失败的结果写到里面
+                    Object data = ((RpcMessage) msg).getData();
+                    ServiceMethod serviceMethod;
+                    Object[] parameters;
+                    if (data instanceof RpcInvocation) {
+                        // 按照连接上登记过的方法 id 直接找到要调用的方法
+                        RpcInvocation rpcInvocation = (RpcInvocation) data;
+                        serviceMethod = methods.get(rpcInvocation.getMethodId());
+                        if (serviceMethod == null) {
+                            throw new RpcException(RpcErrorMessageEnum.SERVICE_CAN_NOT_BE_FOUND, "method id " + rpcInvocation.getMethodId());
+                        }
+                        parameters = rpcInvocation.getParameters();
                     } else {
-                        RpcResponse<Object> rpcResponse = RpcResponse.fail(RpcResponseCodeEnum.FAIL);
-                        rpcMessage.setData(rpcResponse);
-                        log.error("not writable now, message dropped");
+                        RpcRequest rpcRequest = (RpcRequest) data;
+                        try {
+                            serviceMethod = rpcRequestHandler.resolve(rpcRequest);
+                        } catch (RpcException e) {
+                            // 没有这个服务或者方法，返回失败的响应，连接上的其他请求不受影响
+                            rpcMessage.setMessageType(RpcConstants.RESPONSE_TYPE);
+                            writeResponse(ctx, rpcMessage, null, e);
+                            return;
+                        }
+                        if (rpcRequest.getMethodId() != null) {
+                            methods.put(rpcRequest.getMethodId().intValue(), serviceMethod);
+                        }
+                        parameters = rpcRequest.getParameters();
+                    }
+                    rpcMessage.setMessageType(RpcConstants.RESPONSE_TYPE);
+                    // 响应按照服务发布时配置的方式压缩
+                    rpcMessage.setCompress(serviceMethod.getServiceConfig().getCompressCode());
+                    rpcMessage.setRouteKey(serviceMethod.getRouteKey());
+                    if (!concurrencyLimiter.tryAcquire()) {
+                        // 超过了并发限制，立即拒绝，不在线程池里排队到超时
+                        reject(ctx, rpcMessage, RpcResponseCodeEnum.OVERLOADED);
+                        return;
                     }
+                    long start = System.nanoTime();
+                    // 按照服务发布时选择的调度方式执行目标方法
+                    ServiceMethod target = serviceMethod;
+                    Object[] args = parameters;
+                    try {
+                        serviceMethod.getDispatcher().dispatch(ctx.channel(), () -> invoke(ctx, target, args, rpcMessage, start));
+                    } catch (RejectedExecutionException e) {
+                        // 服务的线程池和队列都满了，告诉客户端服务端繁忙，不占用其他服务的线程
+                        concurrencyLimiter.onDropped();
+                        reject(ctx, rpcMessage, RpcResponseCodeEnum.BUSY);
+                    }
+                    return;
                 }
                 ctx.writeAndFlush(rpcMessage).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
             }
@@ -75,12 +145,99 @@ public class NettyRpcServerHandler extends ChannelInboundHandlerAdapter {
         }
     }
 
+    /**
+     * 执行目标方法(客户端需要执行的方法)并把结果写回客户端，在 Dispatcher 选择的线程里执行
+     */
+    private void invoke(ChannelHandlerContext ctx, ServiceMethod serviceMethod, Object[] parameters, RpcMessage rpcMessage, long start) {
+        Object result;
+        try {
+            result = rpcRequestHandler.handle(serviceMethod, parameters);
+        } catch (RpcException e) {
+            // 服务方法抛出了异常，返回失败的响应，客户端不用等到超时
+            complete(ctx, rpcMessage, start, null, e);
+            return;
+        }
+        if (result instanceof CompletionStage) {
+            // 异步方法：不在这里等待结果，future 完成时再写响应，当前线程可以去处理别的请求。
+            // 超过服务的超时时间还没有完成时返回失败的响应，许可按照被丢弃的请求释放，future 之后再完成也不会重复释放
+            AtomicBoolean completed = new AtomicBoolean();
+            Timeout timeout = TIMEOUT_TIMER.newTimeout(t -> {
+                if (completed.compareAndSet(false, true)) {
+                    concurrencyLimiter.onDropped();
+                    writeResponse(ctx, rpcMessage, null, new RpcException(RpcErrorMessageEnum.REQUEST_TIMEOUT, rpcMessage.getRouteKey()));
+                }
+            }, serviceMethod.getServiceConfig().getTimeoutMillis(), TimeUnit.MILLISECONDS);
+            ((CompletionStage<?>) result).whenComplete((value, throwable) -> {
+                if (completed.compareAndSet(false, true)) {
+                    timeout.cancel();
+                    complete(ctx, rpcMessage, start, value, throwable);
+                }
+            });
+        } else {
+            complete(ctx, rpcMessage, start, result, null);
+        }
+    }
+
+    /**
+     * 释放并发限制的许可，成功的请求把响应时间作为一次采样，然后写回结果
+     */
+    private void complete(ChannelHandlerContext ctx, RpcMessage rpcMessage, long start, Object result, Throwable throwable) {
+        if (throwable == null) {
+            concurrencyLimiter.onSuccess(System.nanoTime() - start);
+        } else {
+            concurrencyLimiter.onIgnore();
+        }
+        writeResponse(ctx, rpcMessage, result, throwable);
+    }
+
+    /**
+     * 请求没有执行就被拒绝，客户端可以稍后重试或者换一个服务端
+     */
+    private void reject(ChannelHandlerContext ctx, RpcMessage rpcMessage, RpcResponseCodeEnum rpcResponseCodeEnum) {
+        log.warn("reject [{}]: [{}]", rpcMessage.getRouteKey(), rpcResponseCodeEnum);
+        rpcMessage.setData(RpcResponse.fail(rpcResponseCodeEnum));
+        ctx.writeAndFlush(rpcMessage).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+    }
+
+    /**
+     * 把方法结果写回客户端，异步方法在完成 future 的线程里调用，writeAndFlush 会把写操作交给 channel 的 IO 线程
+     */
+    private void writeResponse(ChannelHandlerContext ctx, RpcMessage rpcMessage, Object result, Throwable throwable) {
+        if (throwable != null) {
+            log.error("service method failed: [{}]", rpcMessage.getRouteKey(), throwable);
+            rpcMessage.setData(RpcResponse.fail(RpcResponseCodeEnum.FAIL));
+        } else {
+            log.info("server get result: [{}]", result);
+            // 把结果写到response里面。不可写时也照常写入，写缓冲区超过高水位后连接停止读取新的请求，见 channelWritabilityChanged
+            rpcMessage.setData(RpcResponse.success(result));
+        }
+        ctx.writeAndFlush(rpcMessage).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+    }
+
+    /**
+     * 客户端读得慢时写缓冲区会超过高水位，这时停止读取这个连接上的新请求，降到低水位以下再恢复。
+     * 请求在客户端堆积，由客户端的未完成请求上限让调用方变慢，已经执行完的结果不会被丢弃
+     */
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        boolean writable = ctx.channel().isWritable();
+        ctx.channel().config().setAutoRead(writable);
+        if (!writable) {
+            log.warn("channel [{}] is not writable, stop reading", ctx.channel().remoteAddress());
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
     @Override
     // 处理当读写空闲时长超过设置的时间范围的回调函数, 和 IdleStateHandler 一起使用
     public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
         if (evt instanceof IdleStateEvent) {
             IdleState state = ((IdleStateEvent) evt).state();
             if (state == IdleState.READER_IDLE) {
+                if (!ctx.channel().config().isAutoRead()) {
+                    // 连接不可写时我们自己停止了读，读不到心跳不是客户端的问题，恢复读之后再按心跳判断
+                    return;
+                }
                 log.info("服务端30秒内没有收到客户端心跳, 即将关闭连接");
                 ctx.close();
             }
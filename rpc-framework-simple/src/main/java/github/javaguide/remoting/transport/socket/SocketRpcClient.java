@@ -1,5 +1,6 @@
 package github.javaguide.remoting.transport.socket;
 
+import github.javaguide.config.RpcServiceConfig;
 import github.javaguide.enums.ServiceDiscoveryEnum;
 import github.javaguide.exception.RpcException;
 import github.javaguide.extension.ExtensionLoader;
@@ -32,9 +33,17 @@ public class SocketRpcClient implements RpcRequestTransport {
 
     @Override
     public Object sendRpcRequest(RpcRequest rpcRequest) {
+        return sendRpcRequest(rpcRequest, new RpcServiceConfig());
+    }
+
+    @Override
+    public Object sendRpcRequest(RpcRequest rpcRequest, RpcServiceConfig rpcServiceConfig) {
         InetSocketAddress inetSocketAddress = serviceDiscovery.lookupService(rpcRequest);
+        int timeout = (int) Math.min(rpcServiceConfig.getTimeoutMillis(), Integer.MAX_VALUE);
         try (Socket socket = new Socket()) {
-            socket.connect(inetSocketAddress);
+            socket.connect(inetSocketAddress, timeout);
+            // 超时还没有读到响应时抛出 SocketTimeoutException
+            socket.setSoTimeout(timeout);
             ObjectOutputStream objectOutputStream = new ObjectOutputStream(socket.getOutputStream());
             // Send data to the server through the output stream
             objectOutputStream.writeObject(rpcRequest);
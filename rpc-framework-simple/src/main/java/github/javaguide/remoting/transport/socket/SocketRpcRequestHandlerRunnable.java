@@ -1,6 +1,8 @@
 package github.javaguide.remoting.transport.socket;
 
+import github.javaguide.enums.RpcResponseCodeEnum;
 import github.javaguide.factory.SingletonFactory;
+import github.javaguide.limiter.ConcurrencyLimiter;
 import github.javaguide.remoting.dto.RpcRequest;
 import github.javaguide.remoting.dto.RpcResponse;
 import github.javaguide.remoting.handler.RpcRequestHandler;
@@ -10,6 +12,7 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.net.Socket;
+import java.util.concurrent.CompletionStage;
 
 /**
  * @author shuang.kou
@@ -32,12 +35,41 @@ public class SocketRpcRequestHandlerRunnable implements Runnable {
         try (ObjectInputStream objectInputStream = new ObjectInputStream(socket.getInputStream());
              ObjectOutputStream objectOutputStream = new ObjectOutputStream(socket.getOutputStream())) {
             RpcRequest rpcRequest = (RpcRequest) objectInputStream.readObject();
-            Object result = rpcRequestHandler.handle(rpcRequest);
-            objectOutputStream.writeObject(RpcResponse.success(result, rpcRequest.getRequestId()));
+            objectOutputStream.writeObject(invoke(rpcRequest));
             objectOutputStream.flush();
         } catch (IOException | ClassNotFoundException e) {
             log.error("occur exception:", e);
         }
     }
 
+    private RpcResponse<Object> invoke(RpcRequest rpcRequest) {
+        ConcurrencyLimiter concurrencyLimiter = rpcRequestHandler.getConcurrencyLimiter();
+        if (!concurrencyLimiter.tryAcquire()) {
+            // 超过了并发限制，立即拒绝
+            return RpcResponse.fail(RpcResponseCodeEnum.OVERLOADED);
+        }
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            Object result = rpcRequestHandler.handle(rpcRequest);
+            if (result instanceof CompletionStage) {
+                // socket 方式每个连接占用一个线程，异步方法直接等待结果
+                result = ((CompletionStage<?>) result).toCompletableFuture().join();
+            }
+            success = true;
+            return RpcResponse.success(result);
+        } catch (RuntimeException e) {
+            // 服务方法抛出了异常，或者异步方法的 future 异常完成（join 抛出 CompletionException），
+            // 返回失败的响应，不能让客户端读到一个关闭的连接
+            log.error("service method failed: [{}]", rpcRequest.getRpcServiceName(), e);
+            return RpcResponse.fail(RpcResponseCodeEnum.FAIL);
+        } finally {
+            if (success) {
+                concurrencyLimiter.onSuccess(System.nanoTime() - start);
+            } else {
+                concurrencyLimiter.onIgnore();
+            }
+        }
+    }
+
 }
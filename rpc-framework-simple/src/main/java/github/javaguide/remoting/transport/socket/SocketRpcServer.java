@@ -2,10 +2,13 @@ package github.javaguide.remoting.transport.socket;
 
 import github.javaguide.config.CustomShutdownHook;
 import github.javaguide.config.RpcServiceConfig;
+import github.javaguide.enums.RpcConfigEnum;
 import github.javaguide.factory.SingletonFactory;
 import github.javaguide.provider.ServiceProvider;
 import github.javaguide.provider.impl.ZkServiceProviderImpl;
+import github.javaguide.utils.RpcConfigUtil;
 import github.javaguide.utils.concurrent.threadpool.ThreadPoolFactoryUtil;
+import github.javaguide.utils.concurrent.threadpool.VirtualThreadUtil;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
@@ -18,6 +21,9 @@ import java.util.concurrent.ExecutorService;
 import static github.javaguide.remoting.transport.netty.server.NettyRpcServer.PORT;
 
 /**
+ * 每个连接交给线程池里的一个线程处理。
+ * 配置 rpc.server.socket.virtual.threads=true 并且运行在 JDK 21+ 上时每个连接一个虚拟线程，阻塞的连接不再受线程池大小的限制
+ *
  * @author shuang.kou
  * @createTime 2020年05月10日 08:01:00
  */
@@ -29,10 +35,21 @@ public class SocketRpcServer {
 
 
     public SocketRpcServer() {
-        threadPool = ThreadPoolFactoryUtil.createCustomThreadPoolIfAbsent("socket-server-rpc-pool");
+        threadPool = createThreadPool();
         serviceProvider = SingletonFactory.getInstance(ZkServiceProviderImpl.class);
     }
 
+    private static ExecutorService createThreadPool() {
+        if (RpcConfigUtil.getBoolean(RpcConfigEnum.SOCKET_SERVER_VIRTUAL_THREADS, false)) {
+            ExecutorService virtualThreadPool = VirtualThreadUtil.newVirtualThreadPerTaskExecutor("socket-server-rpc-virtual");
+            if (virtualThreadPool != null) {
+                return virtualThreadPool;
+            }
+            log.warn("virtual threads require JDK 21+, current is [{}], fall back to thread pool", System.getProperty("java.version"));
+        }
+        return ThreadPoolFactoryUtil.createCustomThreadPoolIfAbsent("socket-server-rpc-pool");
+    }
+
     public void registerService(RpcServiceConfig rpcServiceConfig) {
         serviceProvider.publishService(rpcServiceConfig);
     }
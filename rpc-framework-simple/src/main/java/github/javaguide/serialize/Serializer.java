@@ -1,6 +1,7 @@
 package github.javaguide.serialize;
 
 import github.javaguide.extension.SPI;
+import io.netty.buffer.ByteBuf;
 
 /**
  * 序列化接口，所有序列化类都要实现这个接口
@@ -18,6 +19,17 @@ public interface Serializer {
      */
     byte[] serialize(Object obj);
 
+    /**
+     * 序列化到 netty 的 ByteBuf 中，编码器借此把消息体直接写进池化的出站缓冲区，不再经过中间的字节数组。
+     * 默认实现退化为 {@link #serialize(Object)}，具体的序列化器应当覆盖它
+     *
+     * @param obj 要序列化的对象
+     * @param out 目标缓冲区，序列化结果从它的 writerIndex 开始写入
+     */
+    default void serialize(Object obj, ByteBuf out) {
+        out.writeBytes(serialize(obj));
+    }
+
     /**
      * 反序列化
      *
@@ -28,4 +40,19 @@ public interface Serializer {
      * @return 反序列化的对象
      */
     <T> T deserialize(byte[] bytes, Class<T> clazz);
+
+    /**
+     * 直接从 netty 的 ByteBuf 中反序列化，解码器借此原地读取一帧的消息体，不再拷贝出字节数组。
+     * 默认实现退化为 {@link #deserialize(byte[], Class)}，具体的序列化器应当覆盖它
+     *
+     * @param in    消息体，读取 in 中全部可读的字节
+     * @param clazz 目标类
+     * @param <T>   类的类型
+     * @return 反序列化的对象
+     */
+    default <T> T deserialize(ByteBuf in, Class<T> clazz) {
+        byte[] bytes = new byte[in.readableBytes()];
+        in.readBytes(bytes);
+        return deserialize(bytes, clazz);
+    }
 }
@@ -4,9 +4,13 @@ import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 import github.javaguide.exception.SerializeException;
+import github.javaguide.remoting.dto.RpcInvocation;
 import github.javaguide.remoting.dto.RpcRequest;
 import github.javaguide.remoting.dto.RpcResponse;
 import github.javaguide.serialize.Serializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.ByteArrayInputStream;
@@ -21,6 +25,8 @@ import java.io.ByteArrayOutputStream;
 @Slf4j
 public class KryoSerializer implements Serializer {
 
+    private static final int BUFFER_SIZE = 1024 * 4;
+
     /**
      * Because Kryo is not thread safe. So, use ThreadLocal to store Kryo objects
      */
@@ -28,9 +34,17 @@ public class KryoSerializer implements Serializer {
         Kryo kryo = new Kryo();
         kryo.register(RpcResponse.class);
         kryo.register(RpcRequest.class);
+        kryo.register(RpcInvocation.class);
         return kryo;
     });
 
+    /**
+     * Output keeps an internal buffer, reuse it per thread instead of allocating one for every message
+     */
+    private final ThreadLocal<Output> outputThreadLocal = ThreadLocal.withInitial(() -> new Output(BUFFER_SIZE));
+
+    private final ThreadLocal<Input> inputThreadLocal = ThreadLocal.withInitial(() -> new Input(BUFFER_SIZE));
+
     @Override
     public byte[] serialize(Object obj) {
         try (ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
@@ -45,6 +59,20 @@ public class KryoSerializer implements Serializer {
         }
     }
 
+    @Override
+    public void serialize(Object obj, ByteBuf out) {
+        Output output = outputThreadLocal.get();
+        try {
+            output.setOutputStream(new ByteBufOutputStream(out));
+            kryoThreadLocal.get().writeObject(output, obj);
+            output.flush();
+        } catch (Exception e) {
+            throw new SerializeException("Serialization failed");
+        } finally {
+            output.setOutputStream(null);
+        }
+    }
+
     @Override
     public <T> T deserialize(byte[] bytes, Class<T> clazz) {
         try (ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(bytes);
@@ -59,4 +87,18 @@ public class KryoSerializer implements Serializer {
         }
     }
 
+    @Override
+    public <T> T deserialize(ByteBuf in, Class<T> clazz) {
+        Input input = inputThreadLocal.get();
+        try {
+            input.setInputStream(new ByteBufInputStream(in));
+            Object o = kryoThreadLocal.get().readObject(input, clazz);
+            return clazz.cast(o);
+        } catch (Exception e) {
+            throw new SerializeException("Deserialization failed");
+        } finally {
+            input.setInputStream(null);
+        }
+    }
+
 }
@@ -1,11 +1,17 @@
 package github.javaguide.serialize.protostuff;
 
+import github.javaguide.exception.SerializeException;
 import github.javaguide.serialize.Serializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.protostuff.ByteBufferInput;
 import io.protostuff.LinkedBuffer;
 import io.protostuff.ProtostuffIOUtil;
 import io.protostuff.Schema;
 import io.protostuff.runtime.RuntimeSchema;
 
+import java.io.IOException;
+
 /**
  * @author TangMinXuan
  * @createTime 2020年11月09日 20:13
@@ -30,6 +36,20 @@ public class ProtostuffSerializer implements Serializer {
         return bytes;
     }
 
+    @Override
+    public void serialize(Object obj, ByteBuf out) {
+        Class<?> clazz = obj.getClass();
+        Schema schema = RuntimeSchema.getSchema(clazz);
+        try {
+            // LinkedBuffer 只作为暂存区，写满后直接刷到 out 中
+            ProtostuffIOUtil.writeTo(new ByteBufOutputStream(out), obj, schema, BUFFER);
+        } catch (IOException e) {
+            throw new SerializeException("Serialization failed");
+        } finally {
+            BUFFER.clear();
+        }
+    }
+
     @Override
     public <T> T deserialize(byte[] bytes, Class<T> clazz) {
         Schema<T> schema = RuntimeSchema.getSchema(clazz);
@@ -37,4 +57,20 @@ public class ProtostuffSerializer implements Serializer {
         ProtostuffIOUtil.mergeFrom(bytes, obj, schema);
         return obj;
     }
+
+    @Override
+    public <T> T deserialize(ByteBuf in, Class<T> clazz) {
+        Schema<T> schema = RuntimeSchema.getSchema(clazz);
+        T obj = schema.newMessage();
+        try {
+            // 通过 nioBuffer 视图直接读取，堆内和堆外的 ByteBuf 都不需要拷贝。protostuff 格式中嵌套消息按 group 编码
+            ByteBufferInput input = new ByteBufferInput(in.nioBuffer(), true);
+            schema.mergeFrom(input, obj);
+            input.checkLastTagWas(0);
+        } catch (IOException e) {
+            throw new SerializeException("Deserialization failed");
+        }
+        in.skipBytes(in.readableBytes());
+        return obj;
+    }
 }
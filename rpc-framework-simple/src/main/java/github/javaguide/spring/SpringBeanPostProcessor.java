@@ -17,6 +17,10 @@ import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.stereotype.Component;
 
 import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 在创建bean之前调用此方法，以查看类是否带注释
@@ -31,6 +35,12 @@ public class SpringBeanPostProcessor implements BeanPostProcessor {
 
     private final ServiceProvider serviceProvider;
     private final RpcRequestTransport rpcClient;
+    /**
+     * 相同的接口、group、version、compress、timeout 的引用共用一个 stub
+     * key: [interface name, group, version, compress, timeout]
+     * value: stub
+     */
+    private final Map<List<Object>, Object> clientStubs = new ConcurrentHashMap<>();
 
     public SpringBeanPostProcessor() {
         // zookeeper 提供服务注册的功能
@@ -50,6 +60,10 @@ public class SpringBeanPostProcessor implements BeanPostProcessor {
             RpcServiceConfig rpcServiceConfig = RpcServiceConfig.builder()
                     .group(rpcService.group())
                     .version(rpcService.version())
+                    .compress(rpcService.compress())
+                    .dispatcher(rpcService.dispatcher())
+                    .threads(rpcService.threads())
+                    .queues(rpcService.queues())
                     .service(bean).build();
             serviceProvider.publishService(rpcServiceConfig);
         }
@@ -68,12 +82,16 @@ public class SpringBeanPostProcessor implements BeanPostProcessor {
             if (rpcReference != null) {
                 RpcServiceConfig rpcServiceConfig = RpcServiceConfig.builder()
                         .group(rpcReference.group())
-                        .version(rpcReference.version()).build();
-                // 初始化 RpcClientProxy（实现了 InvocationHandler 接口，可以作为代理类）
-                RpcClientProxy rpcClientProxy = new RpcClientProxy(rpcClient, rpcServiceConfig);
+                        .version(rpcReference.version())
+                        .compress(rpcReference.compress())
+                        .timeout(rpcReference.timeout()).build();
                 // declaredField.getType() 返回 HelloService.class 接口
-                // 生成动态代理类，代理了 HelloService 的方法，每当调用这个方法的时候，都会执行 rpcClientProxy.invoke()
-                Object clientProxy = rpcClientProxy.getProxy(declaredField.getType());
+                // 生成实现了 HelloService 的 stub，每当调用这个方法的时候，都会执行 rpcClientProxy.invoke()
+                // 按字段分别比较，直接拼接字符串时 group "a" + version "bc" 和 group "ab" + version "c" 会共用一个 stub
+                List<Object> stubKey = Arrays.asList(declaredField.getType().getName(), rpcReference.group(),
+                        rpcReference.version(), rpcReference.compress(), rpcReference.timeout());
+                Object clientProxy = clientStubs.computeIfAbsent(stubKey,
+                        k -> new RpcClientProxy(rpcClient, rpcServiceConfig).getProxy(declaredField.getType()));
                 // 通过反射调用类的私有方法时，要先在这个私有方法对应的 Method 对象上调用 setAccessible(true) 来取消对这个方法的访问检查，再调用 invoke() 方法来执行这个私有方法
                 declaredField.setAccessible(true);
                 try {
@@ -1,5 +1,11 @@
 package github.javaguide;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface DemoRpcService {
     String hello();
+
+    String hello(String name);
+
+    CompletableFuture<String> helloAsync(String name);
 }
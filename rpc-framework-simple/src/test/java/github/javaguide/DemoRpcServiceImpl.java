@@ -3,6 +3,8 @@ package github.javaguide;
 import github.javaguide.annotation.RpcService;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * @author shuang.kou
  * @createTime 2020年05月10日 07:52:00
@@ -15,4 +17,20 @@ public class DemoRpcServiceImpl implements DemoRpcService {
     public String hello() {
         return "hello";
     }
+
+    @Override
+    public String hello(String name) {
+        return "hello " + name;
+    }
+
+    @Override
+    public CompletableFuture<String> helloAsync(String name) {
+        // 在另一个线程里完成，模拟调用下游服务
+        return CompletableFuture.supplyAsync(() -> {
+            if (name == null) {
+                throw new IllegalArgumentException("name is null");
+            }
+            return "hello " + name;
+        });
+    }
 }
@@ -0,0 +1,127 @@
+package github.javaguide.benchmark;
+
+import github.javaguide.dispatcher.Dispatcher;
+import github.javaguide.extension.ExtensionLoader;
+import github.javaguide.utils.RuntimeUtil;
+import io.netty.channel.Channel;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.EventExecutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 各种调度方式的开销，pinned 是原来的 DefaultEventExecutorGroup，每个连接绑定一个线程：
+ * <ul>
+ *     <li>handoff：8 个连接上的 1000 个很快的请求从提交到全部执行完的时间，也就是交接的开销</li>
+ *     <li>headOfLine：一个连接上先来一个最多 2ms 的慢请求，再来 50 个很快的请求，这些快的请求全部执行完的时间</li>
+ * </ul>
+ * 运行：先 mvn test-compile，然后用 test classpath 执行这个类的 main 方法
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DispatcherBenchmark {
+
+    private static final int CHANNELS = 8;
+    private static final int TASKS = 1000;
+    private static final int FAST_TASKS = 50;
+    private static final AttributeKey<EventExecutor> PINNED = AttributeKey.valueOf("pinnedExecutor");
+
+    @Param({"pinned", "direct", "pool", "ordered", "ringbuffer", "virtual"})
+    private String dispatcherName;
+
+    private Dispatcher dispatcher;
+    private DefaultEventExecutorGroup pinnedGroup;
+    private Channel[] channels;
+
+    @Setup
+    public void setup() {
+        if ("pinned".equals(dispatcherName)) {
+            pinnedGroup = new DefaultEventExecutorGroup(RuntimeUtil.cpus() * 2);
+            dispatcher = (channel, task) -> {
+                EventExecutor executor = channel.attr(PINNED).get();
+                if (executor == null) {
+                    executor = pinnedGroup.next();
+                    channel.attr(PINNED).set(executor);
+                }
+                executor.execute(task);
+            };
+        } else {
+            dispatcher = ExtensionLoader.getExtensionLoader(Dispatcher.class).getExtension(dispatcherName);
+        }
+        channels = new Channel[CHANNELS];
+        for (int i = 0; i < CHANNELS; i++) {
+            channels[i] = new EmbeddedChannel();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (pinnedGroup != null) {
+            pinnedGroup.shutdownGracefully();
+        }
+    }
+
+    @Benchmark
+    public void handoff() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(TASKS);
+        Runnable task = latch::countDown;
+        for (int i = 0; i < TASKS; i++) {
+            dispatcher.dispatch(channels[i & (CHANNELS - 1)], task);
+        }
+        latch.await();
+    }
+
+    @Benchmark
+    public void headOfLine() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch slow = new CountDownLatch(1);
+        CountDownLatch fast = new CountDownLatch(FAST_TASKS);
+        // 慢请求最多执行 2ms，快的请求全部执行完之后提前结束，这样测到的只是快的请求有没有被慢请求挡住
+        dispatcher.dispatch(channels[0], () -> {
+            await(release);
+            slow.countDown();
+        });
+        Runnable task = fast::countDown;
+        for (int i = 0; i < FAST_TASKS; i++) {
+            dispatcher.dispatch(channels[0], task);
+        }
+        fast.await();
+        release.countDown();
+        // 等慢请求结束再开始下一次，避免它占着的线程影响下一次的测量
+        slow.await();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(2, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(DispatcherBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,74 @@
+package github.javaguide.benchmark;
+
+import github.javaguide.DemoRpcService;
+import github.javaguide.DemoRpcServiceImpl;
+import github.javaguide.config.RpcServiceConfig;
+import github.javaguide.remoting.handler.ServiceMethod;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 服务端调用目标方法的开销：每次反射查找 Method、缓存 Method 之后反射调用、服务发布时创建的 MethodHandle 调用
+ * <p>
+ * 运行：先 mvn test-compile，然后用 test classpath 执行这个类的 main 方法
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ServiceInvokeBenchmark {
+
+    private static final Class<?>[] PARAM_TYPES = {String.class};
+
+    private Object service;
+    private Object[] parameters;
+    private Method method;
+    private ServiceMethod serviceMethod;
+
+    @Setup
+    public void setup() throws NoSuchMethodException {
+        service = new DemoRpcServiceImpl();
+        parameters = new Object[]{"world"};
+        method = service.getClass().getMethod("hello", PARAM_TYPES);
+        serviceMethod = new ServiceMethod(RpcServiceConfig.builder().group("test1").version("version1").service(service).build(),
+                DemoRpcService.class.getMethod("hello", PARAM_TYPES));
+    }
+
+    /**
+     * 原来的调用方式
+     */
+    @Benchmark
+    public Object lookupAndReflect() throws Exception {
+        return service.getClass().getMethod("hello", PARAM_TYPES).invoke(service, parameters);
+    }
+
+    @Benchmark
+    public Object cachedReflect() throws Exception {
+        return method.invoke(service, parameters);
+    }
+
+    @Benchmark
+    public Object methodHandle() throws Throwable {
+        return serviceMethod.invoke(parameters);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ServiceInvokeBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,148 @@
+package github.javaguide.compress;
+
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.serialize.hessian.HessianSerializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 所有 Compress 扩展都要通过的一致性测试，以及一个简单的吞吐量对比
+ */
+public abstract class AbstractCompressTest {
+
+    private static final int THROUGHPUT_ROUNDS = 2000;
+
+    protected abstract Compress newCompress();
+
+    @Test
+    void compressThenDecompressBytes() {
+        Compress compress = newCompress();
+        byte[] bytes = rpcRequestBytes();
+        assertArrayEquals(bytes, compress.decompress(compress.compress(bytes)));
+    }
+
+    @Test
+    void compressThenDecompressEmptyBytes() {
+        Compress compress = newCompress();
+        assertArrayEquals(new byte[0], compress.decompress(compress.compress(new byte[0])));
+    }
+
+    @Test
+    void compressThenDecompressRandomBytes() {
+        Compress compress = newCompress();
+        byte[] bytes = new byte[64 * 1024];
+        new Random(7).nextBytes(bytes);
+        assertArrayEquals(bytes, compress.decompress(compress.compress(bytes)));
+    }
+
+    @Test
+    void compressRepetitiveBytes() {
+        Compress compress = newCompress();
+        byte[] bytes = repetitiveBytes(1024 * 1024);
+        byte[] compressed = compress.compress(bytes);
+        assertTrue(compressed.length < bytes.length / 4);
+        assertArrayEquals(bytes, compress.decompress(compressed));
+    }
+
+    @Test
+    void compressThenDecompressHeapAndDirectByteBuf() {
+        Compress compress = newCompress();
+        byte[] bytes = repetitiveBytes(256 * 1024);
+        for (boolean direct : new boolean[]{false, true}) {
+            ByteBuf in = buffer(direct);
+            ByteBuf compressed = buffer(direct);
+            ByteBuf decompressed = buffer(direct);
+            try {
+                // 读写位置都不从 0 开始，确保实现没有假设 readerIndex/writerIndex 为 0
+                in.writeLong(1L).writeBytes(bytes).skipBytes(8);
+                compressed.writeLong(2L);
+                compress.compress(in, compressed);
+                assertEquals(0, in.readableBytes());
+                compressed.skipBytes(8);
+                // 和 byte[] 版本的格式必须一致，两端才能混用
+                byte[] compressedBytes = new byte[compressed.readableBytes()];
+                compressed.getBytes(compressed.readerIndex(), compressedBytes);
+                assertArrayEquals(bytes, compress.decompress(compressedBytes));
+
+                compress.decompress(compressed, decompressed);
+                assertEquals(0, compressed.readableBytes());
+                byte[] actual = new byte[decompressed.readableBytes()];
+                decompressed.readBytes(actual);
+                assertArrayEquals(bytes, actual);
+            } finally {
+                in.release();
+                compressed.release();
+                decompressed.release();
+            }
+        }
+    }
+
+    @Test
+    void throughput() {
+        Compress compress = newCompress();
+        byte[] bytes = repetitiveBytes(16 * 1024);
+        ByteBuf in = buffer(true);
+        ByteBuf compressed = buffer(true);
+        ByteBuf decompressed = buffer(true);
+        try {
+            long compressNanos = 0;
+            long decompressNanos = 0;
+            for (int i = 0; i < THROUGHPUT_ROUNDS; i++) {
+                in.clear().writeBytes(bytes);
+                compressed.clear();
+                decompressed.clear();
+                long start = System.nanoTime();
+                compress.compress(in, compressed);
+                long middle = System.nanoTime();
+                compress.decompress(compressed, decompressed);
+                long end = System.nanoTime();
+                compressNanos += middle - start;
+                decompressNanos += end - middle;
+            }
+            assertEquals(bytes.length, decompressed.readableBytes());
+            double megabytes = (double) bytes.length * THROUGHPUT_ROUNDS / (1024 * 1024);
+            System.out.printf("%s ratio: %.3f, compress: %.1f MB/s, decompress: %.1f MB/s%n",
+                    compress.getClass().getSimpleName(),
+                    (double) compress.compress(bytes).length / bytes.length,
+                    megabytes / (compressNanos / 1e9), megabytes / (decompressNanos / 1e9));
+        } finally {
+            in.release();
+            compressed.release();
+            decompressed.release();
+        }
+    }
+
+    private static ByteBuf buffer(boolean direct) {
+        return direct ? PooledByteBufAllocator.DEFAULT.directBuffer() : PooledByteBufAllocator.DEFAULT.heapBuffer();
+    }
+
+    private static byte[] rpcRequestBytes() {
+        RpcRequest rpcRequest = RpcRequest.builder().methodName("hello")
+                .parameters(new Object[]{"sayhelooloo", "sayhelooloosayhelooloo"})
+                .interfaceName("github.javaguide.HelloService")
+                .paramTypes(new Class<?>[]{String.class, String.class})
+                .group("group1")
+                .version("version1")
+                .build();
+        return new HessianSerializer().serialize(rpcRequest);
+    }
+
+    private static byte[] repetitiveBytes(int length) {
+        StringBuilder sb = new StringBuilder(length);
+        Random random = new Random(42);
+        while (sb.length() < length) {
+            sb.append("github.javaguide.HelloService#hello(").append(random.nextInt(100)).append(")\n");
+        }
+        byte[] bytes = new byte[length];
+        System.arraycopy(sb.toString().getBytes(StandardCharsets.UTF_8), 0, bytes, 0, length);
+        return bytes;
+    }
+}
@@ -0,0 +1,145 @@
+package github.javaguide.compress.adaptive;
+
+import github.javaguide.compress.Compress;
+import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.extension.ExtensionLoader;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveCompressSelectorTest {
+
+    private static final byte[] CANDIDATES = {CompressTypeEnum.LZ4.getCode(), CompressTypeEnum.GZIP.getCode()};
+    private static final String TEXT_ROUTE = "github.javaguide.HelloService#text";
+    private static final String RANDOM_ROUTE = "github.javaguide.HelloService#random";
+
+    @Test
+    void compressCompressibleRoute() {
+        AdaptiveCompressSelector selector = newSelector(16, 100);
+        byte[] bytes = textBytes();
+        for (int i = 0; i < 200; i++) {
+            send(selector, TEXT_ROUTE, bytes);
+        }
+        AdaptiveCompressSelector.RouteStatistics statistics = statistics(selector, TEXT_ROUTE);
+        assertNotEquals(CompressTypeEnum.NONE.getName(), statistics.getCurrent());
+        assertTrue(statistics.getCodecs().get(CompressTypeEnum.LZ4.getName()).getRatio() < 0.5);
+    }
+
+    @Test
+    void skipIncompressibleRoute() {
+        AdaptiveCompressSelector selector = newSelector(16, 100);
+        byte[] bytes = new byte[64 * 1024];
+        new Random(1).nextBytes(bytes);
+        int none = 0;
+        for (int i = 0; i < 200; i++) {
+            if (send(selector, RANDOM_ROUTE, bytes) == CompressTypeEnum.NONE.getCode()) {
+                none++;
+            }
+        }
+        assertEquals(CompressTypeEnum.NONE.getName(), statistics(selector, RANDOM_ROUTE).getCurrent());
+        // 除了预热和定期的试探，其余的消息都不压缩
+        assertTrue(none > 150);
+    }
+
+    @Test
+    void skipCompressionOnFastNetwork() {
+        AdaptiveCompressSelector selector = newSelector(16, 1_000_000);
+        byte[] bytes = textBytes();
+        for (int i = 0; i < 50; i++) {
+            send(selector, TEXT_ROUTE, bytes);
+        }
+        assertEquals(CompressTypeEnum.NONE.getName(), statistics(selector, TEXT_ROUTE).getCurrent());
+    }
+
+    @Test
+    void keepProbingAllCandidates() {
+        AdaptiveCompressSelector selector = newSelector(4, 100);
+        byte[] bytes = textBytes();
+        for (int i = 0; i < 200; i++) {
+            send(selector, TEXT_ROUTE, bytes);
+        }
+        Map<String, AdaptiveCompressSelector.CodecStatistics> codecs = statistics(selector, TEXT_ROUTE).getCodecs();
+        // 每 4 条消息试探一次，两种压缩方式轮流，即使不是最优的那个也能持续得到样本
+        assertTrue(codecs.get(CompressTypeEnum.LZ4.getName()).getSamples() >= 20);
+        assertTrue(codecs.get(CompressTypeEnum.GZIP.getName()).getSamples() >= 20);
+    }
+
+    @Test
+    void separateStatisticsForEachRoute() {
+        AdaptiveCompressSelector selector = newSelector(16, 100);
+        byte[] random = new byte[64 * 1024];
+        new Random(2).nextBytes(random);
+        for (int i = 0; i < 100; i++) {
+            send(selector, TEXT_ROUTE, textBytes());
+            send(selector, RANDOM_ROUTE, random);
+        }
+        assertEquals(2, selector.getStatistics().size());
+        assertNotEquals(CompressTypeEnum.NONE.getName(), statistics(selector, TEXT_ROUTE).getCurrent());
+        assertEquals(CompressTypeEnum.NONE.getName(), statistics(selector, RANDOM_ROUTE).getCurrent());
+        assertThrows(IllegalArgumentException.class,
+                () -> selector.record(TEXT_ROUTE, CompressTypeEnum.SNAPPY.getCode(), 100, 10, 1000));
+    }
+
+    @Test
+    void preferFasterCompressWhenCpuIsBusy() {
+        // 1 MB/s 的慢速网络：空闲时 gzip 更省时间，CPU 繁忙时 lz4 更省时间
+        AdaptiveCompressSelector idle = new AdaptiveCompressSelector(CANDIDATES, 1000, 1, () -> 0);
+        AdaptiveCompressSelector busy = new AdaptiveCompressSelector(CANDIDATES, 1000, 1, () -> 0.95);
+        for (AdaptiveCompressSelector selector : new AdaptiveCompressSelector[]{idle, busy}) {
+            for (int i = 0; i < 8; i++) {
+                selector.record(TEXT_ROUTE, CompressTypeEnum.GZIP.getCode(), 10000, 1000, 200000);
+                selector.record(TEXT_ROUTE, CompressTypeEnum.LZ4.getCode(), 10000, 3000, 10000);
+            }
+        }
+        assertEquals(CompressTypeEnum.GZIP.getCode(), idle.select(TEXT_ROUTE));
+        assertEquals(CompressTypeEnum.LZ4.getCode(), busy.select(TEXT_ROUTE));
+        assertEquals(20.0, statistics(busy, TEXT_ROUTE).getCpuWeight(), 0.001);
+    }
+
+    /**
+     * 模拟编码器：选择压缩方式，压缩，记录结果
+     */
+    private static byte send(AdaptiveCompressSelector selector, String routeKey, byte[] bytes) {
+        byte compressType = selector.select(routeKey);
+        if (compressType != CompressTypeEnum.NONE.getCode()) {
+            Compress compress = ExtensionLoader.getExtensionLoader(Compress.class)
+                    .getExtension(CompressTypeEnum.getName(compressType));
+            long start = System.nanoTime();
+            byte[] compressed = compress.compress(bytes);
+            selector.record(routeKey, compressType, bytes.length, compressed.length, System.nanoTime() - start);
+        }
+        return compressType;
+    }
+
+    /**
+     * 测试不受机器负载的影响
+     */
+    private static AdaptiveCompressSelector newSelector(int probeInterval, double bandwidth) {
+        return new AdaptiveCompressSelector(CANDIDATES, probeInterval, bandwidth, () -> 0);
+    }
+
+    private static AdaptiveCompressSelector.RouteStatistics statistics(AdaptiveCompressSelector selector, String routeKey) {
+        List<AdaptiveCompressSelector.RouteStatistics> statistics = selector.getStatistics().stream()
+                .filter(route -> route.getRouteKey().equals(routeKey))
+                .collect(Collectors.toList());
+        assertEquals(1, statistics.size());
+        return statistics.get(0);
+    }
+
+    private static byte[] textBytes() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            sb.append("github.javaguide.HelloService#hello(").append(i % 97).append(")\n");
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
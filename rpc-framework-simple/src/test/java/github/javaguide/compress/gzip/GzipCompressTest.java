@@ -1,15 +1,32 @@
 package github.javaguide.compress.gzip;
 
+import github.javaguide.compress.AbstractCompressTest;
 import github.javaguide.compress.Compress;
 import github.javaguide.remoting.dto.RpcRequest;
 import github.javaguide.serialize.kyro.KryoSerializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import org.junit.jupiter.api.Test;
 
-import java.util.UUID;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GzipCompressTest extends AbstractCompressTest {
+
+    @Override
+    protected Compress newCompress() {
+        return new GzipCompress();
+    }
 
-class GzipCompressTest {
     @Test
     void gzipCompressTest() {
         Compress gzipCompress = new GzipCompress();
@@ -17,7 +34,6 @@ class GzipCompressTest {
                 .parameters(new Object[]{"sayhelooloo", "sayhelooloosayhelooloo"})
                 .interfaceName("github.javaguide.HelloService")
                 .paramTypes(new Class<?>[]{String.class, String.class})
-                .requestId(UUID.randomUUID().toString())
                 .group("group1")
                 .version("version1")
                 .build();
@@ -28,5 +44,76 @@ class GzipCompressTest {
         assertEquals(rpcRequestBytes.length, decompressRpcRequestBytes.length);
     }
 
+    @Test
+    void compatibleWithJdkGzipStreams() throws IOException {
+        Compress gzipCompress = new GzipCompress();
+        byte[] bytes = textBytes();
+        // 我们压缩的数据 GZIPInputStream 能解压
+        try (GZIPInputStream gunzip = new GZIPInputStream(new ByteArrayInputStream(gzipCompress.compress(bytes)))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = gunzip.read(buffer)) > -1) {
+                out.write(buffer, 0, n);
+            }
+            assertArrayEquals(bytes, out.toByteArray());
+        }
+        // GZIPOutputStream 压缩的数据我们能解压
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        assertArrayEquals(bytes, gzipCompress.decompress(out.toByteArray()));
+    }
+
+    @Test
+    void compressWithLevel() {
+        byte[] bytes = textBytes();
+        byte[] fastest = new GzipCompress(1).compress(bytes);
+        byte[] best = new GzipCompress(9).compress(bytes);
+        assertTrue(best.length <= fastest.length);
+        // 压缩级别不影响解压
+        assertArrayEquals(bytes, new GzipCompress(1).decompress(best));
+        assertThrows(IllegalArgumentException.class, () -> new GzipCompress(10));
+    }
+
+    @Test
+    void decompressCorruptData() {
+        Compress gzipCompress = new GzipCompress();
+        byte[] compressed = gzipCompress.compress(textBytes());
+        // 破坏 CRC32
+        compressed[compressed.length - 8] ^= 1;
+        assertThrows(RuntimeException.class, () -> gzipCompress.decompress(compressed));
+        assertThrows(RuntimeException.class, () -> gzipCompress.decompress(new byte[]{1, 2, 3}));
+    }
+
+    @Test
+    void rejectForgedLength() {
+        Compress gzipCompress = new GzipCompress();
+        byte[] compressed = gzipCompress.compress(new byte[8 * 1024 * 1024]);
+        // ISIZE 超过上限
+        byte[] tooLarge = compressed.clone();
+        setIsize(tooLarge, -1);
+        assertThrows(RuntimeException.class, () -> gzipCompress.decompress(tooLarge));
+        // ISIZE 比实际解压出的数据短，解压到 ISIZE 就停下来，不会继续扩容
+        byte[] tooSmall = compressed.clone();
+        setIsize(tooSmall, 100);
+        assertThrows(RuntimeException.class, () -> gzipCompress.decompress(tooSmall));
+        ByteBuf out = Unpooled.buffer(0);
+        assertThrows(RuntimeException.class, () -> gzipCompress.decompress(Unpooled.wrappedBuffer(tooSmall), out));
+        assertEquals(100, out.writerIndex());
+        assertTrue(out.capacity() < 64 * 1024);
+    }
 
-}
\ No newline at end of file
+    private static void setIsize(byte[] compressed, int isize) {
+        Unpooled.wrappedBuffer(compressed).setIntLE(compressed.length - 4, isize);
+    }
+
+    private static byte[] textBytes() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            sb.append("github.javaguide.HelloService#hello(").append(i % 97).append(")\n");
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,50 @@
+package github.javaguide.compress.lz4;
+
+import github.javaguide.compress.AbstractCompressTest;
+import github.javaguide.compress.Compress;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class Lz4CompressTest extends AbstractCompressTest {
+
+    @Override
+    protected Compress newCompress() {
+        return new Lz4Compress();
+    }
+
+    @Test
+    void rejectForgedLength() {
+        Compress compress = newCompress();
+        for (int length : new int[]{Integer.MAX_VALUE - 8, -1}) {
+            // 一个很短的消息声称原始长度接近 2GB，不能按照它分配内存
+            byte[] forged = ByteBuffer.allocate(20).putInt(length).array();
+            assertThrows(RuntimeException.class, () -> compress.decompress(forged));
+            ByteBuf out = Unpooled.buffer(16);
+            assertThrows(RuntimeException.class, () -> compress.decompress(Unpooled.wrappedBuffer(forged), out));
+            assertEquals(16, out.capacity());
+        }
+    }
+
+    @Test
+    void rejectLengthMismatch() {
+        Compress compress = newCompress();
+        byte[] compressed = compress.compress(new byte[1000]);
+        // 头部记录的原始长度比实际解压出的短或者长
+        for (int length : new int[]{999, 1001}) {
+            byte[] forged = compressed.clone();
+            ByteBuffer.wrap(forged).putInt(length);
+            assertThrows(RuntimeException.class, () -> compress.decompress(forged));
+            assertThrows(RuntimeException.class, () -> compress.decompress(Unpooled.wrappedBuffer(forged), Unpooled.buffer()));
+        }
+        // 压缩数据被破坏，不能读到输入之外的内存
+        byte[] truncated = Arrays.copyOf(compressed, compressed.length - 2);
+        assertThrows(RuntimeException.class, () -> compress.decompress(truncated));
+    }
+}
@@ -0,0 +1,53 @@
+package github.javaguide.compress.snappy;
+
+import github.javaguide.compress.AbstractCompressTest;
+import github.javaguide.compress.Compress;
+import github.javaguide.compress.CompressUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnappyCompressTest extends AbstractCompressTest {
+
+    @Override
+    protected Compress newCompress() {
+        return new SnappyCompress();
+    }
+
+    @Test
+    void rejectForgedPreamble() {
+        Compress compress = newCompress();
+        // 一个 6 字节的块声称原始长度是 2^28 - 1
+        byte[] forged = Unpooled.buffer().writeInt(6).writeBytes(new byte[]{(byte) 0xff, (byte) 0xff, (byte) 0xff, 0x7f, 0, 0}).array();
+        ByteBuf out = Unpooled.buffer(16);
+        assertThrows(RuntimeException.class, () -> compress.decompress(Unpooled.wrappedBuffer(forged, 0, 10), out));
+        assertEquals(16, out.capacity());
+        // 原始长度超过上限（varint 5 个字节，接近 2^32）
+        byte[] tooLarge = Unpooled.buffer().writeInt(6).writeBytes(new byte[]{(byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x0f, 0}).array();
+        assertThrows(RuntimeException.class, () -> compress.decompress(Unpooled.wrappedBuffer(tooLarge, 0, 10), Unpooled.buffer(16)));
+        assertThrows(RuntimeException.class, () -> compress.decompress(Arrays.copyOf(tooLarge, 10)));
+        // 原始长度在块的最大长度以内，但是和实际解压出的长度不一致：声称 100 个字节，只有一个 3 字节的 literal
+        byte[] mismatch = Unpooled.buffer().writeInt(5).writeBytes(new byte[]{100, 2 << 2, 'a', 'b', 'c'}).array();
+        assertThrows(RuntimeException.class, () -> compress.decompress(Arrays.copyOf(mismatch, 9)));
+    }
+
+    @Test
+    void rejectBlocksAboveTotalLimit() {
+        // 每个块都合法，但是所有块加起来超过上限
+        byte[] block = newCompress().compress(new byte[Short.MAX_VALUE]);
+        int blocks = CompressUtil.MAX_DECOMPRESSED_SIZE / Short.MAX_VALUE + 1;
+        ByteBuf in = Unpooled.buffer(block.length * blocks);
+        for (int i = 0; i < blocks; i++) {
+            in.writeBytes(block);
+        }
+        ByteBuf out = Unpooled.buffer();
+        assertThrows(RuntimeException.class, () -> newCompress().decompress(in, out));
+        assertTrue(out.writerIndex() <= CompressUtil.MAX_DECOMPRESSED_SIZE);
+    }
+}
@@ -0,0 +1,156 @@
+package github.javaguide.compress.zstd;
+
+import com.github.luben.zstd.Zstd;
+import github.javaguide.compress.AbstractCompressTest;
+import github.javaguide.compress.Compress;
+import github.javaguide.compress.gzip.GzipCompress;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.serialize.hessian.HessianSerializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ZstdCompressTest extends AbstractCompressTest {
+
+    private static final String[] METHODS = {"hello", "sayHello", "queryUser", "updateOrder", "listItems"};
+
+    private static byte[] dictionary;
+
+    @BeforeAll
+    static void trainDictionary() {
+        dictionary = ZstdDictionaryTrainer.train(samples(new Random(1), 2000), ZstdDictionaryTrainer.DEFAULT_DICTIONARY_SIZE);
+    }
+
+    @Override
+    protected Compress newCompress() {
+        return new ZstdCompress(3, Collections.emptyList());
+    }
+
+    @Test
+    void dictionaryShrinksSmallPayloads() {
+        ZstdCompress zstd = new ZstdCompress(3, Collections.singletonList(dictionary));
+        byte[] bytes = samples(new Random(2), 1).get(0);
+        byte[] compressed = zstd.compress(bytes);
+        System.out.printf("hessian request: %d bytes, gzip: %d bytes, zstd without dictionary: %d bytes, zstd with dictionary: %d bytes%n",
+                bytes.length, new GzipCompress().compress(bytes).length, newCompress().compress(bytes).length, compressed.length);
+        assertTrue(compressed.length * 3 < bytes.length);
+        assertEquals(Zstd.getDictIdFromDict(dictionary), Zstd.getDictIdFromFrame(compressed));
+        assertArrayEquals(bytes, zstd.decompress(compressed));
+    }
+
+    @Test
+    void decompressWithDictionaryFromFrame() {
+        byte[] newDictionary = ZstdDictionaryTrainer.train(samples(new Random(3), 2000), ZstdDictionaryTrainer.DEFAULT_DICTIONARY_SIZE);
+        assertNotEquals(Zstd.getDictIdFromDict(dictionary), Zstd.getDictIdFromDict(newDictionary));
+        ZstdCompress oldZstd = new ZstdCompress(3, Collections.singletonList(dictionary));
+        // 新字典已经下发，但是还在用旧字典压缩的节点
+        ZstdCompress newZstd = new ZstdCompress(3, Arrays.asList(newDictionary, dictionary));
+        byte[] bytes = samples(new Random(4), 1).get(0);
+        assertArrayEquals(bytes, newZstd.decompress(oldZstd.compress(bytes)));
+        assertArrayEquals(bytes, newZstd.decompress(newZstd.compress(bytes)));
+        // 还没有拿到新字典的节点无法解压
+        assertThrows(RuntimeException.class, () -> oldZstd.decompress(newZstd.compress(bytes)));
+    }
+
+    @Test
+    void compressByteBufWithDictionary() {
+        ZstdCompress zstd = new ZstdCompress(3, Collections.singletonList(dictionary));
+        byte[] bytes = samples(new Random(6), 1).get(0);
+        for (boolean direct : new boolean[]{false, true}) {
+            ByteBuf compressed = direct ? PooledByteBufAllocator.DEFAULT.directBuffer() : PooledByteBufAllocator.DEFAULT.heapBuffer();
+            ByteBuf decompressed = direct ? PooledByteBufAllocator.DEFAULT.directBuffer() : PooledByteBufAllocator.DEFAULT.heapBuffer();
+            try {
+                zstd.compress(Unpooled.wrappedBuffer(bytes), compressed);
+                byte[] compressedBytes = new byte[compressed.readableBytes()];
+                compressed.getBytes(compressed.readerIndex(), compressedBytes);
+                // ByteBuf 和 byte[] 写出的是同一种帧
+                assertEquals(Zstd.getDictIdFromDict(dictionary), Zstd.getDictIdFromFrame(compressedBytes));
+                assertArrayEquals(bytes, zstd.decompress(compressedBytes));
+                // 同一个线程先解压带字典的帧，再解压不带字典的帧
+                zstd.decompress(compressed, decompressed);
+                byte[] actual = new byte[decompressed.readableBytes()];
+                decompressed.readBytes(actual);
+                assertArrayEquals(bytes, actual);
+                decompressed.clear();
+                zstd.decompress(Unpooled.wrappedBuffer(newCompress().compress(bytes)), decompressed);
+                assertEquals(bytes.length, decompressed.readableBytes());
+            } finally {
+                compressed.release();
+                decompressed.release();
+            }
+        }
+    }
+
+    @Test
+    void skipThresholdWithDictionary() {
+        assertEquals(0, new ZstdCompress(3, Collections.singletonList(dictionary)).compressThreshold(1024));
+        assertEquals(1024, newCompress().compressThreshold(1024));
+    }
+
+    @Test
+    void rejectForgedLength() {
+        Compress zstd = newCompress();
+        // magic + 帧头描述符（单段帧，4 字节原始长度）+ 原始长度 1GB，后面跟一些垃圾数据
+        byte[] forged = Unpooled.buffer(32).writeIntLE(0xFD2FB528).writeByte(0xA0).writeIntLE(1 << 30)
+                .writeBytes(new byte[16]).array();
+        assertEquals(1 << 30, Zstd.getFrameContentSize(forged));
+        assertThrows(RuntimeException.class, () -> zstd.decompress(forged));
+        ByteBuf out = Unpooled.buffer(16);
+        assertThrows(RuntimeException.class, () -> zstd.decompress(Unpooled.wrappedBuffer(forged), out));
+        assertEquals(16, out.capacity());
+    }
+
+    @Test
+    void trainDictionaryFromSampleDir(@TempDir Path tempDir) throws IOException {
+        Path sampleDir = Files.createDirectory(tempDir.resolve("samples"));
+        List<byte[]> samples = samples(new Random(5), 1000);
+        for (int i = 0; i < samples.size(); i++) {
+            Files.write(sampleDir.resolve("request-" + i + ".bin"), samples.get(i));
+        }
+        Path dictionaryFile = tempDir.resolve("rpc.dict");
+        ZstdDictionaryTrainer.main(new String[]{sampleDir.toString(), dictionaryFile.toString()});
+        byte[] trained = Files.readAllBytes(dictionaryFile);
+        assertNotEquals(0, Zstd.getDictIdFromDict(trained));
+        ZstdCompress zstd = new ZstdCompress(3, Collections.singletonList(trained));
+        byte[] bytes = samples.get(0);
+        assertArrayEquals(bytes, zstd.decompress(zstd.compress(bytes)));
+    }
+
+    /**
+     * 模拟线上流量：接口、方法、参数类型固定，参数值不同
+     */
+    private static List<byte[]> samples(Random random, int count) {
+        HessianSerializer serializer = new HessianSerializer();
+        List<byte[]> samples = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            RpcRequest rpcRequest = RpcRequest.builder()
+                    .interfaceName("github.javaguide.HelloService")
+                    .methodName(METHODS[random.nextInt(METHODS.length)])
+                    .parameters(new Object[]{"user-" + random.nextInt(100000), random.nextInt(1000), random.nextLong()})
+                    .paramTypes(new Class<?>[]{String.class, Integer.class, Long.class})
+                    .group("group" + random.nextInt(3))
+                    .version("version1")
+                    .build();
+            samples.add(serializer.serialize(rpcRequest));
+        }
+        return samples;
+    }
+}
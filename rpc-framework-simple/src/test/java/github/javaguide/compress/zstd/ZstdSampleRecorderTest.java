@@ -0,0 +1,59 @@
+package github.javaguide.compress.zstd;
+
+import github.javaguide.remoting.constants.RpcConstants;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ZstdSampleRecorderTest {
+
+    @Test
+    void prefixByMessageType(@TempDir Path tempDir) throws Exception {
+        ZstdSampleRecorder recorder = new ZstdSampleRecorder(tempDir.toString(), 10);
+        ByteBuf body = Unpooled.wrappedBuffer(new byte[]{1, 2, 3});
+        recorder.record(RpcConstants.REQUEST_TYPE, body);
+        recorder.record(RpcConstants.INVOCATION_TYPE, body);
+        recorder.record(RpcConstants.RESPONSE_TYPE, body);
+        awaitFiles(tempDir, 3);
+        assertTrue(Files.exists(tempDir.resolve("request-0.bin")));
+        assertTrue(Files.exists(tempDir.resolve("invocation-1.bin")));
+        assertTrue(Files.exists(tempDir.resolve("response-2.bin")));
+        // 不改变 body 的 readerIndex
+        assertEquals(3, body.readableBytes());
+    }
+
+    @Test
+    void skipSamplesInsteadOfFailingUnderBurst(@TempDir Path tempDir) throws Exception {
+        int samples = 2000;
+        ZstdSampleRecorder recorder = new ZstdSampleRecorder(tempDir.toString(), samples);
+        ByteBuf body = Unpooled.wrappedBuffer(new byte[1024]);
+        // 写文件的线程忙不过来时丢掉样本，record 不能抛出异常，否则编码器会丢掉这条消息
+        for (int i = 0; i < samples; i++) {
+            recorder.record(RpcConstants.REQUEST_TYPE, body);
+        }
+        assertTrue(recorder.getSkippedCount() > 0);
+        awaitFiles(tempDir, samples - recorder.getSkippedCount());
+    }
+
+    private static void awaitFiles(Path dir, int count) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            try (Stream<Path> files = Files.list(dir)) {
+                if (files.count() >= count) {
+                    return;
+                }
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("expected " + count + " samples");
+    }
+}
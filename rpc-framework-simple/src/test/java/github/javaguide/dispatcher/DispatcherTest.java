@@ -0,0 +1,131 @@
+package github.javaguide.dispatcher;
+
+import github.javaguide.enums.DispatcherEnum;
+import github.javaguide.dispatcher.ringbuffer.RingBufferDispatcher;
+import github.javaguide.extension.ExtensionLoader;
+import github.javaguide.utils.concurrent.threadpool.VirtualThreadUtil;
+import io.netty.channel.Channel;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DispatcherTest {
+
+    @Test
+    void runAllTasks() throws InterruptedException {
+        for (DispatcherEnum dispatcherEnum : DispatcherEnum.values()) {
+            Dispatcher dispatcher = ExtensionLoader.getExtensionLoader(Dispatcher.class).getExtension(dispatcherEnum.getName());
+            Channel[] channels = {new EmbeddedChannel(), new EmbeddedChannel()};
+            CountDownLatch latch = new CountDownLatch(10000);
+            for (int i = 0; i < 10000; i++) {
+                dispatcher.dispatch(channels[i & 1], latch::countDown);
+            }
+            assertTrue(latch.await(10, TimeUnit.SECONDS), dispatcherEnum.getName());
+        }
+    }
+
+    @Test
+    void orderedKeepsOrderPerChannel() throws InterruptedException {
+        Dispatcher dispatcher = ExtensionLoader.getExtensionLoader(Dispatcher.class).getExtension(DispatcherEnum.ORDERED.getName());
+        Channel first = new EmbeddedChannel();
+        Channel second = new EmbeddedChannel();
+        List<Integer> firstOrder = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> secondOrder = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch latch = new CountDownLatch(2000);
+        for (int i = 0; i < 1000; i++) {
+            int n = i;
+            dispatcher.dispatch(first, () -> {
+                firstOrder.add(n);
+                latch.countDown();
+            });
+            dispatcher.dispatch(second, () -> {
+                secondOrder.add(n);
+                latch.countDown();
+            });
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, firstOrder.get(i).intValue());
+            assertEquals(i, secondOrder.get(i).intValue());
+        }
+    }
+
+    @Test
+    void poolIsNotBlockedBySlowTaskOnSameChannel() throws InterruptedException {
+        Dispatcher dispatcher = ExtensionLoader.getExtensionLoader(Dispatcher.class).getExtension(DispatcherEnum.POOL.getName());
+        Channel channel = new EmbeddedChannel();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger fast = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1);
+        dispatcher.dispatch(channel, () -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        dispatcher.dispatch(channel, () -> {
+            fast.incrementAndGet();
+            done.countDown();
+        });
+        // 慢请求还没有结束，同一个连接上后面的请求已经执行完了
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(1, fast.get());
+        release.countDown();
+    }
+
+    @Test
+    void virtualRunsOnVirtualThreadsWhenSupported() throws InterruptedException {
+        Dispatcher dispatcher = ExtensionLoader.getExtensionLoader(Dispatcher.class).getExtension(DispatcherEnum.VIRTUAL.getName());
+        AtomicReference<String> threadName = new AtomicReference<>();
+        CountDownLatch latch = new CountDownLatch(1);
+        dispatcher.dispatch(new EmbeddedChannel(), () -> {
+            threadName.set(Thread.currentThread().getName());
+            latch.countDown();
+        });
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        String expectedPrefix = VirtualThreadUtil.isSupported() ? "dispatcher-virtual-" : "dispatcher-pool-";
+        assertTrue(threadName.get().startsWith(expectedPrefix), threadName.get());
+    }
+
+    @Test
+    void ringBufferRejectsWhenFull() throws InterruptedException {
+        RingBufferDispatcher dispatcher = new RingBufferDispatcher(1, 2);
+        Channel channel = new EmbeddedChannel();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        dispatcher.dispatch(channel, () -> {
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        CountDownLatch done = new CountDownLatch(2);
+        dispatcher.dispatch(channel, done::countDown);
+        dispatcher.dispatch(channel, done::countDown);
+        // 唯一的工作线程在忙，缓冲区也满了，不在 IO 线程里等待
+        assertThrows(RejectedExecutionException.class, () -> dispatcher.dispatch(channel, done::countDown));
+        release.countDown();
+        // park 的工作线程被后面的任务唤醒
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        CountDownLatch woken = new CountDownLatch(1);
+        dispatcher.dispatch(channel, woken::countDown);
+        assertTrue(woken.await(10, TimeUnit.SECONDS));
+    }
+}
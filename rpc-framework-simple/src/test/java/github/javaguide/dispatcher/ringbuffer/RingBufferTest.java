@@ -0,0 +1,80 @@
+package github.javaguide.dispatcher.ringbuffer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RingBufferTest {
+
+    @Test
+    void offerAndPollInOrder() {
+        RingBuffer<Integer> ringBuffer = new RingBuffer<>(3);
+        assertEquals(4, ringBuffer.capacity());
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 4; i++) {
+                assertTrue(ringBuffer.offer(i));
+            }
+            // 满了
+            assertFalse(ringBuffer.offer(4));
+            for (int i = 0; i < 4; i++) {
+                assertEquals(i, ringBuffer.poll().intValue());
+            }
+            assertNull(ringBuffer.poll());
+        }
+    }
+
+    @Test
+    void concurrentProducersAndConsumers() throws Exception {
+        RingBuffer<Integer> ringBuffer = new RingBuffer<>(64);
+        int producers = 2;
+        int perProducer = 50000;
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        Set<Integer> seen = ConcurrentHashMap.newKeySet();
+        AtomicInteger consumed = new AtomicInteger();
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                int base = p * perProducer;
+                tasks.add(executor.submit(() -> {
+                    for (int i = 0; i < perProducer; i++) {
+                        while (!ringBuffer.offer(base + i)) {
+                            Thread.yield();
+                        }
+                    }
+                }));
+            }
+            for (int c = 0; c < 2; c++) {
+                tasks.add(executor.submit(() -> {
+                    while (consumed.get() < producers * perProducer) {
+                        Integer element = ringBuffer.poll();
+                        if (element == null) {
+                            Thread.yield();
+                            continue;
+                        }
+                        assertTrue(seen.add(element));
+                        consumed.incrementAndGet();
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        // 每个元素恰好被取出一次
+        assertEquals(producers * perProducer, seen.size());
+    }
+}
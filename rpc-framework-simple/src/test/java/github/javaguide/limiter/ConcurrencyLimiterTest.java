@@ -0,0 +1,77 @@
+package github.javaguide.limiter;
+
+import github.javaguide.limiter.gradient.GradientConcurrencyLimiter;
+import github.javaguide.limiter.vegas.VegasConcurrencyLimiter;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrencyLimiterTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Test
+    void rejectBeyondLimit() {
+        ConcurrencyLimiter concurrencyLimiter = new VegasConcurrencyLimiter(2, 1, 10);
+        assertTrue(concurrencyLimiter.tryAcquire());
+        assertTrue(concurrencyLimiter.tryAcquire());
+        assertFalse(concurrencyLimiter.tryAcquire());
+        assertEquals(2, concurrencyLimiter.getInFlight());
+        concurrencyLimiter.onIgnore();
+        assertTrue(concurrencyLimiter.tryAcquire());
+    }
+
+    @Test
+    void vegasFollowsLatency() {
+        assertFollowsLatency(new VegasConcurrencyLimiter(20, 1, 1000));
+    }
+
+    @Test
+    void gradientFollowsLatency() {
+        assertFollowsLatency(new GradientConcurrencyLimiter(20, 1, 1000));
+    }
+
+    @Test
+    void shrinkWhenDropped() {
+        for (ConcurrencyLimiter concurrencyLimiter : new ConcurrencyLimiter[]{
+                new VegasConcurrencyLimiter(100, 1, 1000), new GradientConcurrencyLimiter(100, 1, 1000)}) {
+            assertTrue(concurrencyLimiter.tryAcquire());
+            concurrencyLimiter.onDropped();
+            assertTrue(concurrencyLimiter.getLimit() < 100, concurrencyLimiter.getClass().getSimpleName());
+            assertEquals(0, concurrencyLimiter.getInFlight());
+        }
+    }
+
+    private static void assertFollowsLatency(ConcurrencyLimiter concurrencyLimiter) {
+        String name = concurrencyLimiter.getClass().getSimpleName();
+        // 响应时间稳定时限制增大
+        runAtFullConcurrency(concurrencyLimiter, FAST, 20);
+        int grown = concurrencyLimiter.getLimit();
+        assertTrue(grown > 20, name + " limit " + grown);
+        // 响应时间突然变长说明请求在排队，限制减小
+        runAtFullConcurrency(concurrencyLimiter, SLOW, 1);
+        int shrunk = concurrencyLimiter.getLimit();
+        assertTrue(shrunk < grown, name + " limit " + grown + " -> " + shrunk);
+        assertEquals(0, concurrencyLimiter.getInFlight());
+    }
+
+    /**
+     * 每一轮把许可用满，再让这些请求按照给定的响应时间完成
+     */
+    private static void runAtFullConcurrency(ConcurrencyLimiter concurrencyLimiter, long rttNanos, int rounds) {
+        for (int round = 0; round < rounds; round++) {
+            int acquired = 0;
+            while (concurrencyLimiter.tryAcquire()) {
+                acquired++;
+            }
+            for (int i = 0; i < acquired; i++) {
+                concurrencyLimiter.onSuccess(rttNanos);
+            }
+        }
+    }
+}
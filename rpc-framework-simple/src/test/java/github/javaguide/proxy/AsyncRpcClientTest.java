@@ -0,0 +1,140 @@
+package github.javaguide.proxy;
+
+import github.javaguide.config.RpcServiceConfig;
+import github.javaguide.enums.RpcErrorMessageEnum;
+import github.javaguide.enums.RpcResponseCodeEnum;
+import github.javaguide.exception.RpcException;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.remoting.transport.RpcRequestTransport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncRpcClientTest {
+
+    public interface AsyncHelloService {
+        CompletableFuture<String> hello(String name);
+    }
+
+    private final List<RpcRequest> requests = new CopyOnWriteArrayList<>();
+    private final List<CompletableFuture<RpcResponse<Object>>> responses = new CopyOnWriteArrayList<>();
+    private final ExecutorService callbackExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "rpc-callback"));
+
+    @AfterEach
+    void shutdown() {
+        callbackExecutor.shutdownNow();
+    }
+
+    @Test
+    void futureReturningMethodDoesNotBlock() {
+        AsyncHelloService stub = new RpcClientProxy(pendingTransport(), new RpcServiceConfig()).getProxy(AsyncHelloService.class);
+        CompletableFuture<String> future = stub.hello("world");
+        // 请求已经发出，响应还没有到
+        assertEquals(1, requests.size());
+        assertFalse(future.isDone());
+        responses.get(0).complete(RpcResponse.success("hello world"));
+        assertEquals("hello world", future.join());
+
+        CompletableFuture<String> failed = stub.hello("world");
+        responses.get(1).complete(RpcResponse.fail(RpcResponseCodeEnum.FAIL));
+        CompletionException e = assertThrows(CompletionException.class, failed::join);
+        assertTrue(e.getCause() instanceof RpcException);
+    }
+
+    @Test
+    void busyAndOverloadedResponsesFailWithDistinctErrors() {
+        AsyncHelloService stub = new RpcClientProxy(pendingTransport(), new RpcServiceConfig()).getProxy(AsyncHelloService.class);
+        CompletableFuture<String> future = stub.hello("world");
+        responses.get(0).complete(RpcResponse.fail(RpcResponseCodeEnum.BUSY));
+        CompletionException e = assertThrows(CompletionException.class, future::join);
+        // 和调用失败区分开，调用方知道请求没有执行，可以重试
+        assertTrue(e.getCause().getMessage().startsWith(RpcErrorMessageEnum.SERVICE_BUSY.getMessage()), e.getCause().getMessage());
+
+        CompletableFuture<String> overloaded = stub.hello("world");
+        responses.get(1).complete(RpcResponse.fail(RpcResponseCodeEnum.OVERLOADED));
+        e = assertThrows(CompletionException.class, overloaded::join);
+        assertTrue(e.getCause().getMessage().startsWith(RpcErrorMessageEnum.SERVICE_OVERLOADED.getMessage()), e.getCause().getMessage());
+    }
+
+    @Test
+    void completeOnCallbackExecutor() throws Exception {
+        AsyncHelloService stub = new RpcClientProxy(pendingTransport(), new RpcServiceConfig(), callbackExecutor)
+                .getProxy(AsyncHelloService.class);
+        CompletableFuture<String> thread = stub.hello("world").thenApply(data -> Thread.currentThread().getName());
+        responses.get(0).complete(RpcResponse.success("hello world"));
+        assertEquals("rpc-callback", thread.get(5, TimeUnit.SECONDS));
+
+        // 失败的结果也在 callbackExecutor 里通知
+        CompletableFuture<String> failedThread = stub.hello("world").handle((data, throwable) -> Thread.currentThread().getName());
+        responses.get(1).completeExceptionally(new IllegalStateException("channel closed"));
+        assertEquals("rpc-callback", failedThread.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void genericClientWithCallback() throws Exception {
+        AsyncRpcClient client = new AsyncRpcClient(pendingTransport(), new RpcServiceConfig(), callbackExecutor);
+        CompletableFuture<String> result = new CompletableFuture<>();
+        client.<String>invoke(AsyncHelloService.class.getName(), "hello", new Class<?>[]{String.class}, new Object[]{"world"},
+                (data, throwable) -> result.complete(Thread.currentThread().getName() + ":" + data));
+        RpcRequest rpcRequest = requests.get(0);
+        assertEquals("hello", rpcRequest.getMethodName());
+        assertEquals(AsyncHelloService.class.getName() + "#hello", rpcRequest.getRouteKey());
+        responses.get(0).complete(RpcResponse.success("hello world"));
+        assertEquals("rpc-callback:hello world", result.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void sendFailureCompletesFutureExceptionally() {
+        RpcRequestTransport broken = rpcRequest -> {
+            throw new IllegalStateException("no connection");
+        };
+        CompletableFuture<Object> future = new AsyncRpcClient(broken, new RpcServiceConfig())
+                .invoke(AsyncHelloService.class.getName(), "hello", new Class<?>[]{String.class}, new Object[]{"world"});
+        CompletionException e = assertThrows(CompletionException.class, future::join);
+        assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+
+    @Test
+    void asyncInvocationsUseNonBlockingSend() {
+        RpcRequestTransport transport = new RpcRequestTransport() {
+            @Override
+            public Object sendRpcRequest(RpcRequest rpcRequest) {
+                throw new AssertionError("async invocation must not use the blocking send");
+            }
+
+            @Override
+            public Object sendRpcRequestAsync(RpcRequest rpcRequest, RpcServiceConfig rpcServiceConfig) {
+                return pendingTransport().sendRpcRequest(rpcRequest);
+            }
+        };
+        new RpcClientProxy(transport, new RpcServiceConfig()).getProxy(AsyncHelloService.class).hello("world");
+        new AsyncRpcClient(transport, new RpcServiceConfig())
+                .invoke(AsyncHelloService.class.getName(), "hello", new Class<?>[]{String.class}, new Object[]{"world"});
+        assertEquals(2, requests.size());
+    }
+
+    /**
+     * 和 NettyRpcClient 一样立即返回还没有完成的 future，由测试模拟收到响应
+     */
+    private RpcRequestTransport pendingTransport() {
+        return rpcRequest -> {
+            requests.add(rpcRequest);
+            CompletableFuture<RpcResponse<Object>> response = new CompletableFuture<>();
+            responses.add(response);
+            return response;
+        };
+    }
+}
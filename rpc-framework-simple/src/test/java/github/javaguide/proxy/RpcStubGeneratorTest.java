@@ -0,0 +1,156 @@
+package github.javaguide.proxy;
+
+import github.javaguide.config.RpcServiceConfig;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.remoting.transport.RpcRequestTransport;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RpcStubGeneratorTest {
+
+    public interface CalculatorService {
+        int add(int a, int b);
+
+        long add(long a, long b);
+
+        double scale(double value, float factor);
+
+        String join(String[] values, char separator);
+
+        int[] range(int n);
+
+        void reset();
+
+        Boolean isReady();
+
+        default String describe() {
+            return "calculator";
+        }
+    }
+
+    interface PackagePrivateService {
+        String hello(String name);
+    }
+
+    public static class CalculatorServiceImpl implements CalculatorService, PackagePrivateService {
+        @Override
+        public int add(int a, int b) {
+            return a + b;
+        }
+
+        @Override
+        public long add(long a, long b) {
+            return a + b;
+        }
+
+        @Override
+        public double scale(double value, float factor) {
+            return value * factor;
+        }
+
+        @Override
+        public String join(String[] values, char separator) {
+            return String.join(String.valueOf(separator), values);
+        }
+
+        @Override
+        public int[] range(int n) {
+            int[] range = new int[n];
+            for (int i = 0; i < n; i++) {
+                range[i] = i;
+            }
+            return range;
+        }
+
+        @Override
+        public void reset() {
+        }
+
+        @Override
+        public Boolean isReady() {
+            return null;
+        }
+
+        @Override
+        public String hello(String name) {
+            return "hello " + name;
+        }
+    }
+
+    @Test
+    void generatedStubSendsPrecomputedMetadata() {
+        List<RpcRequest> requests = new ArrayList<>();
+        RpcServiceConfig rpcServiceConfig = RpcServiceConfig.builder().group("group1").version("version1").build();
+        CalculatorService stub = new RpcClientProxy(localTransport(requests), rpcServiceConfig).getProxy(CalculatorService.class);
+        assertFalse(Proxy.isProxyClass(stub.getClass()));
+
+        assertEquals(3, stub.add(1, 2));
+        assertEquals(3L << 40, stub.add(1L << 40, 2L << 40));
+        assertEquals(5.0, stub.scale(2.0, 2.5f));
+        assertEquals("a-b", stub.join(new String[]{"a", "b"}, '-'));
+        assertArrayEquals(new int[]{0, 1, 2}, stub.range(3));
+        stub.reset();
+        assertNull(stub.isReady());
+        // default 方法不发请求
+        assertEquals("calculator", stub.describe());
+
+        assertEquals(7, requests.size());
+        RpcRequest first = requests.get(0);
+        assertEquals(CalculatorService.class.getName(), first.getInterfaceName());
+        assertArrayEquals(new Class<?>[]{int.class, int.class}, first.getParamTypes());
+        assertEquals(CalculatorService.class.getName() + "group1version1#add", first.getRouteKey());
+        assertEquals("group1", first.getGroup());
+        assertEquals("version1", first.getVersion());
+        // 没有参数时和 JDK 动态代理一样传 null
+        assertNull(requests.get(5).getParameters());
+    }
+
+    @Test
+    void reuseGeneratedClassForEveryConfig() {
+        RpcRequestTransport transport = localTransport(new ArrayList<>());
+        CalculatorService first = new RpcClientProxy(transport, RpcServiceConfig.builder().group("group1").version("version1").build())
+                .getProxy(CalculatorService.class);
+        CalculatorService second = new RpcClientProxy(transport, RpcServiceConfig.builder().group("group2").version("version1").build())
+                .getProxy(CalculatorService.class);
+        assertSame(first.getClass(), second.getClass());
+    }
+
+    @Test
+    void fallbackToJdkProxyForNonPublicInterface() {
+        assertFalse(RpcStubGenerator.isSupported(PackagePrivateService.class));
+        assertThrows(IllegalArgumentException.class,
+                () -> RpcStubGenerator.newStub(PackagePrivateService.class, new RpcClientProxy(localTransport(new ArrayList<>()))));
+        PackagePrivateService proxy = new RpcClientProxy(localTransport(new ArrayList<>())).getProxy(PackagePrivateService.class);
+        assertTrue(Proxy.isProxyClass(proxy.getClass()));
+        assertEquals("hello world", proxy.hello("world"));
+    }
+
+    /**
+     * 在本地调用服务实现，记录发送的请求
+     */
+    private static RpcRequestTransport localTransport(List<RpcRequest> requests) {
+        CalculatorServiceImpl service = new CalculatorServiceImpl();
+        return rpcRequest -> {
+            requests.add(rpcRequest);
+            try {
+                Method method = CalculatorServiceImpl.class.getMethod(rpcRequest.getMethodName(), rpcRequest.getParamTypes());
+                return RpcResponse.success(method.invoke(service, rpcRequest.getParameters()));
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+}
@@ -0,0 +1,54 @@
+package github.javaguide.remoting.handler;
+
+import github.javaguide.DemoRpcService;
+import github.javaguide.DemoRpcServiceImpl;
+import github.javaguide.config.RpcServiceConfig;
+import github.javaguide.exception.RpcException;
+import github.javaguide.factory.SingletonFactory;
+import github.javaguide.provider.impl.ZkServiceProviderImpl;
+import github.javaguide.remoting.dto.RpcRequest;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RpcRequestHandlerTest {
+
+    @BeforeAll
+    static void addService() {
+        SingletonFactory.getInstance(ZkServiceProviderImpl.class).addService(RpcServiceConfig.builder()
+                .group("test1").version("version1").service(new DemoRpcServiceImpl()).build());
+    }
+
+    @Test
+    void invokeOverloadedMethods() {
+        RpcRequestHandler rpcRequestHandler = SingletonFactory.getInstance(RpcRequestHandler.class);
+        assertEquals("hello", rpcRequestHandler.handle(request("hello", null)));
+        assertEquals("hello world", rpcRequestHandler.handle(request("hello", new Object[]{"world"}, String.class)));
+        // 同一个方法每次解析到的都是发布时创建的那个
+        ServiceMethod serviceMethod = rpcRequestHandler.resolve(request("hello", null, String.class));
+        assertSame(serviceMethod, rpcRequestHandler.resolve(request("hello", null, String.class)));
+        assertEquals(DemoRpcService.class.getName() + "test1version1#hello", serviceMethod.getRouteKey());
+    }
+
+    @Test
+    void failOnUnknownMethod() {
+        RpcRequestHandler rpcRequestHandler = SingletonFactory.getInstance(RpcRequestHandler.class);
+        assertThrows(RpcException.class, () -> rpcRequestHandler.handle(request("hello", new Object[]{1}, Integer.class)));
+        assertThrows(RpcException.class, () -> rpcRequestHandler.handle(request("toString", null)));
+        // 参数和参数类型不匹配
+        assertThrows(RpcException.class, () -> rpcRequestHandler.handle(request("hello", new Object[]{1}, String.class)));
+    }
+
+    private static RpcRequest request(String methodName, Object[] parameters, Class<?>... paramTypes) {
+        return RpcRequest.builder().methodName(methodName)
+                .parameters(parameters)
+                .interfaceName(DemoRpcService.class.getName())
+                .paramTypes(paramTypes)
+                .group("test1")
+                .version("version1")
+                .build();
+    }
+}
@@ -0,0 +1,148 @@
+package github.javaguide.remoting.transport.netty.client;
+
+import github.javaguide.exception.RpcException;
+import github.javaguide.remoting.constants.RpcConstants;
+import github.javaguide.remoting.dto.RpcResponse;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChannelPoolTest {
+
+    @Test
+    void selectLeastPendingChannel() {
+        ChannelPool channelPool = newPool();
+        assertNull(channelPool.select());
+        EmbeddedChannel first = newChannel();
+        EmbeddedChannel second = newChannel();
+        channelPool.add(first);
+        channelPool.add(second);
+        pend(first);
+        assertSame(second, channelPool.select());
+        pend(second);
+        pend(second);
+        assertSame(first, channelPool.select());
+        // 关闭的连接从池里移除
+        first.close();
+        assertEquals(1, channelPool.size());
+        assertSame(second, channelPool.select());
+    }
+
+    @Test
+    void preferWritableChannel() {
+        ChannelPool channelPool = newPool();
+        EmbeddedChannel first = newChannel();
+        EmbeddedChannel second = newChannel();
+        channelPool.add(first);
+        channelPool.add(second);
+        pend(second);
+        // 写缓冲区超过高水位的连接即使更空闲也不选
+        first.unsafe().outboundBuffer().setUserDefinedWritability(1, false);
+        assertSame(second, channelPool.select());
+        second.unsafe().outboundBuffer().setUserDefinedWritability(1, false);
+        assertSame(first, channelPool.select());
+    }
+
+    @Test
+    void growWhenBusy() {
+        ChannelPool channelPool = newPool();
+        List<EmbeddedChannel> connected = new ArrayList<>();
+        Function<InetSocketAddress, ChannelFuture> connector = address -> {
+            EmbeddedChannel channel = newChannel();
+            connected.add(channel);
+            return channel.newSucceededFuture();
+        };
+        Channel first = channelPool.acquire(connector).join();
+        pend(first);
+        assertSame(first, channelPool.acquire(connector).join());
+        assertEquals(1, connected.size());
+        // 最空闲的连接也达到了阈值，在后台建立新连接
+        pend(first);
+        assertSame(first, channelPool.acquire(connector).join());
+        assertEquals(2, connected.size());
+        Channel second = channelPool.select();
+        assertSame(connected.get(1), second);
+        pend(second);
+        pend(second);
+        // 池满了
+        channelPool.acquire(connector).join();
+        assertEquals(2, connected.size());
+    }
+
+    @Test
+    void concurrentAcquireShareOneConnect() {
+        ChannelPool channelPool = newPool();
+        EmbeddedChannel channel = newChannel();
+        ChannelPromise promise = channel.newPromise();
+        AtomicInteger connects = new AtomicInteger();
+        Function<InetSocketAddress, ChannelFuture> connector = address -> {
+            connects.incrementAndGet();
+            return promise;
+        };
+        CompletableFuture<Channel> first = channelPool.acquire(connector);
+        CompletableFuture<Channel> second = channelPool.acquire(connector);
+        assertFalse(first.isDone());
+        assertEquals(1, connects.get());
+        promise.setSuccess();
+        assertSame(channel, first.join());
+        assertSame(channel, second.join());
+        assertEquals(1, channelPool.size());
+    }
+
+    @Test
+    void backOffAfterConnectFailure() throws InterruptedException {
+        ChannelPool channelPool = newPool();
+        AtomicInteger connects = new AtomicInteger();
+        AtomicBoolean fail = new AtomicBoolean(true);
+        Function<InetSocketAddress, ChannelFuture> connector = address -> {
+            connects.incrementAndGet();
+            EmbeddedChannel channel = newChannel();
+            return fail.get() ? channel.newFailedFuture(new ConnectException("refused")) : channel.newSucceededFuture();
+        };
+        CompletionException e = assertThrows(CompletionException.class, () -> channelPool.acquire(connector).join());
+        assertTrue(e.getCause() instanceof RpcException);
+        assertTrue(channelPool.isCircuitOpen());
+        // 熔断打开期间不再连接，直接失败
+        assertThrows(CompletionException.class, () -> channelPool.acquire(connector).join());
+        assertEquals(1, connects.get());
+
+        Thread.sleep(60);
+        fail.set(false);
+        assertTrue(channelPool.acquire(connector).join().isActive());
+        assertEquals(2, connects.get());
+        assertFalse(channelPool.isCircuitOpen());
+    }
+
+    private static ChannelPool newPool() {
+        return new ChannelPool(new InetSocketAddress("127.0.0.1", 9998), 2, 2, 50, 1000);
+    }
+
+    private static EmbeddedChannel newChannel() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        channel.attr(UnprocessedRequests.KEY).set(new UnprocessedRequests(RpcConstants.VERSION_2));
+        return channel;
+    }
+
+    private static void pend(Channel channel) {
+        channel.attr(UnprocessedRequests.KEY).get().put(new CompletableFuture<RpcResponse<Object>>());
+    }
+}
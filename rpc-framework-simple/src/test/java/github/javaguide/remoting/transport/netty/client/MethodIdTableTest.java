@@ -0,0 +1,49 @@
+package github.javaguide.remoting.transport.netty.client;
+
+import github.javaguide.remoting.dto.MethodKey;
+import github.javaguide.remoting.dto.RpcRequest;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MethodIdTableTest {
+
+    @Test
+    void sameMethodGetsSameId() {
+        MethodIdTable methodIdTable = new MethodIdTable();
+        MethodIdTable.MethodId hello = methodIdTable.get(request("hello", String.class));
+        assertSame(hello, methodIdTable.get(request("hello", String.class)));
+        assertFalse(hello.isRegistered());
+        hello.markRegistered();
+        assertTrue(methodIdTable.get(request("hello", String.class)).isRegistered());
+        // 重载的方法、不同的 group 都是不同的方法
+        assertNotEquals(hello.getId(), methodIdTable.get(request("hello")).getId());
+        assertNotEquals(hello.getId(), methodIdTable.get(request("hello", Integer.class)).getId());
+        RpcRequest otherGroup = RpcRequest.builder().interfaceName("github.javaguide.HelloService").methodName("hello")
+                .paramTypes(new Class<?>[]{String.class}).group("group2").version("version1").build();
+        assertNotEquals(hello.getId(), methodIdTable.get(otherGroup).getId());
+        // 每个连接单独编号
+        assertEquals(hello.getId(), new MethodIdTable().get(request("hello", String.class)).getId());
+    }
+
+    @Test
+    void usePrecomputedMethodKey() {
+        MethodIdTable methodIdTable = new MethodIdTable();
+        MethodKey methodKey = new MethodKey("github.javaguide.HelloService", "hello", "group1", "version1", new Class<?>[]{String.class});
+        // 代理发出的请求带着 RpcMethod 里算好的 key，和按照请求字段算出的 key 是同一个方法
+        RpcRequest fromProxy = RpcRequest.builder().interfaceName("github.javaguide.HelloService").methodName("hello")
+                .paramTypes(new Class<?>[]{String.class}).group("group1").version("version1").methodKey(methodKey).build();
+        assertSame(methodKey, fromProxy.getMethodKey());
+        assertSame(methodIdTable.get(fromProxy), methodIdTable.get(request("hello", String.class)));
+        assertEquals(methodKey, request("hello", String.class).getMethodKey());
+    }
+
+    private static RpcRequest request(String methodName, Class<?>... paramTypes) {
+        return RpcRequest.builder().interfaceName("github.javaguide.HelloService").methodName(methodName)
+                .paramTypes(paramTypes).group("group1").version("version1").build();
+    }
+}
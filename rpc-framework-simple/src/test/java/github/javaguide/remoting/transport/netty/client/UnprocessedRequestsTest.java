@@ -0,0 +1,121 @@
+package github.javaguide.remoting.transport.netty.client;
+
+import github.javaguide.enums.RpcErrorMessageEnum;
+import github.javaguide.exception.RpcException;
+import github.javaguide.remoting.constants.RpcConstants;
+import github.javaguide.remoting.dto.RpcResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UnprocessedRequestsTest {
+
+    @Test
+    void completeByRequestId() {
+        UnprocessedRequests unprocessedRequests = new UnprocessedRequests(RpcConstants.VERSION_2);
+        CompletableFuture<RpcResponse<Object>> first = new CompletableFuture<>();
+        CompletableFuture<RpcResponse<Object>> second = new CompletableFuture<>();
+        long firstId = unprocessedRequests.put(first);
+        long secondId = unprocessedRequests.put(second);
+        assertNotEquals(firstId, secondId);
+        assertEquals(2, unprocessedRequests.size());
+
+        RpcResponse<Object> response = RpcResponse.success("hello");
+        assertTrue(unprocessedRequests.complete(secondId, response));
+        assertSame(response, second.join());
+        assertFalse(first.isDone());
+        // 同一个响应不会完成两次
+        assertFalse(unprocessedRequests.complete(secondId, response));
+        assertSame(first, unprocessedRequests.remove(firstId));
+        assertEquals(0, unprocessedRequests.size());
+    }
+
+    @Test
+    void failAndRemoveTimedOutRequest() {
+        UnprocessedRequests unprocessedRequests = new UnprocessedRequests(RpcConstants.VERSION_2);
+        CompletableFuture<RpcResponse<Object>> timedOut = new CompletableFuture<>();
+        CompletableFuture<RpcResponse<Object>> answered = new CompletableFuture<>();
+        long timedOutId = unprocessedRequests.put(timedOut, 50);
+        long answeredId = unprocessedRequests.put(answered, 50);
+        assertTrue(unprocessedRequests.complete(answeredId, RpcResponse.success("hello")));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> timedOut.get(5, TimeUnit.SECONDS));
+        assertEquals(RpcException.class, e.getCause().getClass());
+        assertEquals(0, unprocessedRequests.size());
+        // 超时之后到达的响应被丢弃
+        assertFalse(unprocessedRequests.complete(timedOutId, RpcResponse.success("late")));
+        assertEquals("hello", answered.join().getData());
+    }
+
+    @Test
+    void rejectWhenFull() {
+        UnprocessedRequests unprocessedRequests = new UnprocessedRequests(RpcConstants.VERSION_2, 2);
+        long first = unprocessedRequests.put(new CompletableFuture<>());
+        assertNotEquals(0, first);
+        assertNotEquals(0, unprocessedRequests.put(new CompletableFuture<>()));
+        assertEquals(0, unprocessedRequests.put(new CompletableFuture<>()));
+        assertEquals(2, unprocessedRequests.size());
+        // 完成一个之后又有名额了
+        assertTrue(unprocessedRequests.complete(first, RpcResponse.success("hello")));
+        assertNotEquals(0, unprocessedRequests.put(new CompletableFuture<>()));
+    }
+
+    @Test
+    void failAllPendingRequests() {
+        UnprocessedRequests unprocessedRequests = new UnprocessedRequests(RpcConstants.VERSION_2);
+        List<CompletableFuture<RpcResponse<Object>>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            CompletableFuture<RpcResponse<Object>> future = new CompletableFuture<>();
+            unprocessedRequests.put(future, i % 2 == 0 ? 0 : 60000);
+            futures.add(future);
+        }
+        RpcException cause = new RpcException(RpcErrorMessageEnum.CHANNEL_CLOSED);
+        assertEquals(100, unprocessedRequests.failAll(cause));
+        assertEquals(0, unprocessedRequests.size());
+        for (CompletableFuture<RpcResponse<Object>> future : futures) {
+            CompletionException e = assertThrows(CompletionException.class, future::join);
+            assertSame(cause, e.getCause());
+        }
+        assertEquals(0, unprocessedRequests.failAll(cause));
+    }
+
+    @Test
+    void concurrentPutAndComplete() throws Exception {
+        UnprocessedRequests unprocessedRequests = new UnprocessedRequests(RpcConstants.VERSION_2);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                tasks.add(executor.submit(() -> {
+                    for (int i = 0; i < 10000; i++) {
+                        CompletableFuture<RpcResponse<Object>> future = new CompletableFuture<>();
+                        long requestId = unprocessedRequests.put(future);
+                        assertTrue(unprocessedRequests.complete(requestId, RpcResponse.success(requestId)));
+                        assertEquals(requestId, future.join().getData());
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(0, unprocessedRequests.size());
+    }
+}
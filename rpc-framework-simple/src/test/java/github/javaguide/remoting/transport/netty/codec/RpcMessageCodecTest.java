@@ -0,0 +1,273 @@
+package github.javaguide.remoting.transport.netty.codec;
+
+import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.enums.SerializationTypeEnum;
+import github.javaguide.remoting.constants.RpcConstants;
+import github.javaguide.remoting.dto.RpcInvocation;
+import github.javaguide.remoting.dto.RpcMessage;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DecoderException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RpcMessageCodecTest {
+    // magic code(4B) + version(1B) + full length(4B) + messageType(1B) + codec(1B)
+    private static final int COMPRESS_INDEX = 11;
+
+    @Test
+    void encodeThenDecodeRequest() {
+        for (SerializationTypeEnum serialization : SerializationTypeEnum.values()) {
+            RpcRequest target = RpcRequest.builder().methodName("hello")
+                    .parameters(new Object[]{"sayhelooloo", "sayhelooloosayhelooloo"})
+                    .interfaceName("github.javaguide.HelloService")
+                    .paramTypes(new Class<?>[]{String.class, String.class})
+                    .group("group1")
+                    .version("version1")
+                    .build();
+            // 64 位的 requestId 需要 v2
+            RpcMessage actual = roundTrip(RpcMessage.builder()
+                    .version(RpcConstants.VERSION_2)
+                    .messageType(RpcConstants.REQUEST_TYPE)
+                    .codec(serialization.getCode())
+                    .compress(CompressTypeEnum.GZIP.getCode())
+                    .requestId(Long.MAX_VALUE)
+                    .data(target).build());
+            RpcRequest request = (RpcRequest) actual.getData();
+            assertEquals(Long.MAX_VALUE, actual.getRequestId());
+            assertEquals(target.getMethodName(), request.getMethodName());
+            assertEquals(target.getRpcServiceName(), request.getRpcServiceName());
+            assertArrayEquals(target.getParameters(), request.getParameters());
+        }
+    }
+
+    @Test
+    void invocationIsSmallerThanFullRequest() {
+        Object[] parameters = {"sayhelooloo", "sayhelooloosayhelooloo"};
+        for (SerializationTypeEnum serialization : SerializationTypeEnum.values()) {
+            RpcRequest rpcRequest = RpcRequest.builder().methodName("hello")
+                    .parameters(parameters)
+                    .interfaceName("github.javaguide.HelloService")
+                    .paramTypes(new Class<?>[]{String.class, String.class})
+                    .group("group1")
+                    .version("version1")
+                    .methodId(1)
+                    .build();
+            RpcMessage request = RpcMessage.builder()
+                    .messageType(RpcConstants.REQUEST_TYPE)
+                    .codec(serialization.getCode())
+                    .compress(CompressTypeEnum.NONE.getCode())
+                    .data(rpcRequest).build();
+            RpcMessage invocation = RpcMessage.builder()
+                    .messageType(RpcConstants.INVOCATION_TYPE)
+                    .codec(serialization.getCode())
+                    .compress(CompressTypeEnum.NONE.getCode())
+                    .data(new RpcInvocation(1, parameters)).build();
+            assertEquals(1, ((RpcRequest) roundTrip(request).getData()).getMethodId());
+            RpcInvocation actual = (RpcInvocation) roundTrip(invocation).getData();
+            assertEquals(1, actual.getMethodId());
+            assertArrayEquals(parameters, actual.getParameters());
+
+            ByteBuf requestFrame = encode(request);
+            ByteBuf invocationFrame = encode(invocation);
+            assertTrue(invocationFrame.readableBytes() < requestFrame.readableBytes(), serialization.getName());
+            requestFrame.release();
+            invocationFrame.release();
+        }
+    }
+
+    @Test
+    void decodeLargeResponseInPlace() {
+        StringBuilder data = new StringBuilder();
+        for (int i = 0; i < 64 * 1024; i++) {
+            data.append(i % 10);
+        }
+        for (SerializationTypeEnum serialization : SerializationTypeEnum.values()) {
+            RpcMessage actual = roundTrip(RpcMessage.builder()
+                    .messageType(RpcConstants.RESPONSE_TYPE)
+                    .codec(serialization.getCode())
+                    .compress(CompressTypeEnum.GZIP.getCode())
+                    .data(RpcResponse.success(data.toString())).build());
+            RpcResponse<?> response = (RpcResponse<?>) actual.getData();
+            assertEquals(data.toString(), response.getData());
+        }
+    }
+
+    @Test
+    void compressOnlyBodiesAboveThreshold() {
+        RpcMessage small = RpcMessage.builder()
+                .messageType(RpcConstants.RESPONSE_TYPE)
+                .codec(SerializationTypeEnum.HESSIAN.getCode())
+                .compress(CompressTypeEnum.GZIP.getCode())
+                .data(RpcResponse.success("hello")).build();
+        assertEquals(CompressTypeEnum.NONE.getCode(), encode(small).getByte(COMPRESS_INDEX));
+
+        char[] chars = new char[RpcConstants.DEFAULT_COMPRESS_THRESHOLD * 2];
+        Arrays.fill(chars, 'a');
+        RpcMessage large = RpcMessage.builder()
+                .messageType(RpcConstants.RESPONSE_TYPE)
+                .codec(SerializationTypeEnum.HESSIAN.getCode())
+                .compress(CompressTypeEnum.GZIP.getCode())
+                .data(RpcResponse.success(new String(chars))).build();
+        ByteBuf frame = encode(large);
+        assertEquals(CompressTypeEnum.GZIP.getCode(), frame.getByte(COMPRESS_INDEX));
+        assertTrue(frame.readableBytes() < chars.length);
+        frame.release();
+
+        RpcMessage uncompressed = RpcMessage.builder()
+                .messageType(RpcConstants.RESPONSE_TYPE)
+                .codec(SerializationTypeEnum.HESSIAN.getCode())
+                .compress(CompressTypeEnum.NONE.getCode())
+                .data(RpcResponse.success(new String(chars))).build();
+        RpcResponse<?> response = (RpcResponse<?>) roundTrip(uncompressed).getData();
+        assertEquals(new String(chars), response.getData());
+    }
+
+    @Test
+    void adaptiveCompressWritesActualCompressType() {
+        char[] chars = new char[RpcConstants.DEFAULT_COMPRESS_THRESHOLD * 4];
+        Arrays.fill(chars, 'a');
+        for (int i = 0; i < 32; i++) {
+            RpcMessage rpcMessage = RpcMessage.builder()
+                    .messageType(RpcConstants.RESPONSE_TYPE)
+                    .codec(SerializationTypeEnum.HESSIAN.getCode())
+                    .compress(CompressTypeEnum.ADAPTIVE.getCode())
+                    .routeKey("github.javaguide.HelloService#hello")
+                    .data(RpcResponse.success(new String(chars))).build();
+            ByteBuf frame = encode(rpcMessage);
+            assertNotEquals(CompressTypeEnum.ADAPTIVE.getCode(), frame.getByte(COMPRESS_INDEX));
+            frame.release();
+            RpcResponse<?> response = (RpcResponse<?>) roundTrip(rpcMessage).getData();
+            assertEquals(new String(chars), response.getData());
+        }
+    }
+
+    @Test
+    void decodeV1AndV2OnTheSameChannel() {
+        EmbeddedChannel encoder = new EmbeddedChannel(new RpcMessageEncoder());
+        EmbeddedChannel decoder = new EmbeddedChannel(new RpcMessageDecoder());
+        Map<String, String> attachments = new HashMap<>();
+        attachments.put("deadline", "1700000000000");
+        attachments.put("trace-id", "链路-0af7651916cd43dd8448eb211c80319c");
+        for (byte version : new byte[]{RpcConstants.VERSION_1, RpcConstants.VERSION_2, RpcConstants.VERSION_1, RpcConstants.VERSION_2}) {
+            encoder.writeOutbound(RpcMessage.builder()
+                    .version(version)
+                    .messageType(RpcConstants.RESPONSE_TYPE)
+                    .codec(SerializationTypeEnum.HESSIAN.getCode())
+                    .compress(CompressTypeEnum.GZIP.getCode())
+                    .requestId(requestId(version))
+                    .attachments(attachments)
+                    .data(RpcResponse.success("hello v" + version)).build());
+            encoder.writeOutbound(RpcMessage.builder()
+                    .version(version)
+                    .messageType(RpcConstants.HEARTBEAT_REQUEST_TYPE)
+                    .codec(SerializationTypeEnum.HESSIAN.getCode())
+                    .compress(CompressTypeEnum.GZIP.getCode())
+                    .data(RpcConstants.PING).build());
+        }
+        // 所有的帧拼在一起，再一个字节一个字节地喂给解码器，检查拆包
+        ByteBuf stream = encoder.alloc().buffer();
+        ByteBuf frame;
+        while ((frame = encoder.readOutbound()) != null) {
+            stream.writeBytes(frame);
+            frame.release();
+        }
+        while (stream.isReadable()) {
+            decoder.writeInbound(stream.readRetainedSlice(1));
+        }
+        stream.release();
+        for (byte version : new byte[]{RpcConstants.VERSION_1, RpcConstants.VERSION_2, RpcConstants.VERSION_1, RpcConstants.VERSION_2}) {
+            RpcMessage response = decoder.readInbound();
+            assertEquals(version, response.getVersion());
+            assertEquals(requestId(version), response.getRequestId());
+            assertEquals("hello v" + version, ((RpcResponse<?>) response.getData()).getData());
+            if (version == RpcConstants.VERSION_2) {
+                assertEquals(attachments, response.getAttachments());
+            } else {
+                assertNull(response.getAttachments());
+            }
+            RpcMessage heartbeat = decoder.readInbound();
+            assertEquals(version, heartbeat.getVersion());
+            assertEquals(RpcConstants.PING, heartbeat.getData());
+        }
+        assertNull(decoder.readInbound());
+        encoder.finish();
+        decoder.finish();
+    }
+
+    @Test
+    void encodeV1ByDefault() {
+        // 没有配置 rpc.protocol.version 时使用旧版本服务端也认识的 v1
+        RpcMessage rpcMessage = RpcMessage.builder()
+                .messageType(RpcConstants.HEARTBEAT_REQUEST_TYPE)
+                .codec(SerializationTypeEnum.HESSIAN.getCode())
+                .compress(CompressTypeEnum.GZIP.getCode())
+                .data(RpcConstants.PING).build();
+        ByteBuf frame = encode(rpcMessage);
+        assertEquals(RpcConstants.VERSION_1, frame.getByte(RpcConstants.MAGIC_NUMBER.length));
+        assertEquals(RpcConstants.TOTAL_LENGTH, frame.readableBytes());
+        frame.release();
+        assertEquals(RpcConstants.VERSION_1, roundTrip(rpcMessage).getVersion());
+
+        rpcMessage.setVersion(RpcConstants.VERSION_2);
+        frame = encode(rpcMessage);
+        assertEquals(RpcConstants.VERSION_2, frame.getByte(RpcConstants.MAGIC_NUMBER.length));
+        assertEquals(RpcConstants.V2_MIN_LENGTH + Varint.PADDED_LENGTH - 1, frame.readableBytes());
+        frame.release();
+    }
+
+    @Test
+    void rejectTruncatedV2Header() {
+        // 长度字段声称整个帧只有 17 个字节，放不下 v2 的固定头部（少了 attachment count）
+        ByteBuf frame = Unpooled.buffer()
+                .writeBytes(RpcConstants.MAGIC_NUMBER)
+                .writeByte(RpcConstants.VERSION_2)
+                .writeByte(17)
+                .writeByte(RpcConstants.REQUEST_TYPE)
+                .writeByte(SerializationTypeEnum.HESSIAN.getCode())
+                .writeByte(CompressTypeEnum.NONE.getCode())
+                .writeLong(1);
+        EmbeddedChannel channel = new EmbeddedChannel(new RpcMessageDecoder());
+        DecoderException e = assertThrows(DecoderException.class, () -> channel.writeInbound(frame));
+        assertTrue(e.getMessage().contains("v2 header"), e.getMessage());
+        channel.finishAndReleaseAll();
+    }
+
+    private ByteBuf encode(RpcMessage rpcMessage) {
+        EmbeddedChannel channel = new EmbeddedChannel(new RpcMessageEncoder());
+        channel.writeOutbound(rpcMessage);
+        ByteBuf frame = channel.readOutbound();
+        channel.finish();
+        return frame;
+    }
+
+    private RpcMessage roundTrip(RpcMessage rpcMessage) {
+        EmbeddedChannel channel = new EmbeddedChannel(new RpcMessageEncoder(), new RpcMessageDecoder());
+        channel.writeOutbound(rpcMessage);
+        ByteBuf frame = channel.readOutbound();
+        channel.writeInbound(frame);
+        RpcMessage decoded = channel.readInbound();
+        channel.finish();
+        return decoded;
+    }
+
+    /**
+     * v1 的 requestId 是 4 个字节的无符号数，v2 是 8 个字节
+     */
+    private static long requestId(byte version) {
+        return version == RpcConstants.VERSION_1 ? 0xFFFFFFFFL : 1L << 40;
+    }
+}
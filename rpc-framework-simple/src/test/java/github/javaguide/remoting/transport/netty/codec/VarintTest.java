@@ -0,0 +1,51 @@
+package github.javaguide.remoting.transport.netty.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.CorruptedFrameException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class VarintTest {
+
+    @Test
+    void writeThenReadVarint() {
+        ByteBuf buf = Unpooled.buffer();
+        int[] values = {0, 1, 127, 128, 16383, 16384, 1 << 21, (1 << 28) - 1, 1 << 28, Integer.MAX_VALUE};
+        int[] lengths = {1, 1, 1, 2, 2, 3, 4, 4, 5, 5};
+        for (int i = 0; i < values.length; i++) {
+            buf.clear();
+            Varint.writeVarint(buf, values[i]);
+            assertEquals(lengths[i], buf.readableBytes());
+            assertEquals(values[i], Varint.readVarint(buf));
+        }
+        assertThrows(IllegalArgumentException.class, () -> Varint.writeVarint(buf, -1));
+    }
+
+    @Test
+    void paddedVarintIsAlsoAStandardVarint() {
+        ByteBuf buf = Unpooled.buffer();
+        for (int value : new int[]{0, 18, 300, 8 * 1024 * 1024, (1 << 28) - 1}) {
+            buf.clear().writeZero(Varint.PADDED_LENGTH);
+            Varint.setPaddedVarint(buf, 0, value);
+            assertEquals(value, Varint.getPaddedVarint(buf, 0));
+            assertEquals(value, Varint.readVarint(buf));
+            assertEquals(0, buf.readableBytes());
+        }
+        assertThrows(IllegalArgumentException.class, () -> Varint.setPaddedVarint(buf.clear().writeZero(4), 0, 1 << 28));
+    }
+
+    @Test
+    void rejectMalformedVarint() {
+        ByteBuf tooLong = Unpooled.wrappedBuffer(new byte[]{(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0});
+        assertThrows(CorruptedFrameException.class, () -> Varint.readVarint(tooLong));
+        ByteBuf overflow = Unpooled.wrappedBuffer(new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x08});
+        assertThrows(CorruptedFrameException.class, () -> Varint.readVarint(overflow));
+        ByteBuf stringTooLong = Unpooled.buffer();
+        Varint.writeVarint(stringTooLong, 100);
+        stringTooLong.writeByte('a');
+        assertThrows(CorruptedFrameException.class, () -> Varint.readString(stringTooLong));
+    }
+}
@@ -0,0 +1,308 @@
+package github.javaguide.remoting.transport.netty.server;
+
+import github.javaguide.DemoRpcService;
+import github.javaguide.DemoRpcServiceImpl;
+import github.javaguide.config.RpcServiceConfig;
+import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.enums.RpcResponseCodeEnum;
+import github.javaguide.enums.SerializationTypeEnum;
+import github.javaguide.factory.SingletonFactory;
+import github.javaguide.limiter.vegas.VegasConcurrencyLimiter;
+import github.javaguide.provider.impl.ZkServiceProviderImpl;
+import github.javaguide.remoting.constants.RpcConstants;
+import github.javaguide.remoting.dto.RpcInvocation;
+import github.javaguide.remoting.dto.RpcMessage;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.timeout.IdleStateEvent;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NettyRpcServerHandlerTest {
+
+    @BeforeAll
+    static void addService() {
+        SingletonFactory.getInstance(ZkServiceProviderImpl.class).addService(RpcServiceConfig.builder()
+                .group("test1").version("version1").service(new DemoRpcServiceImpl()).build());
+    }
+
+    @Test
+    void invokeByRegisteredMethodId() throws InterruptedException {
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyRpcServerHandler());
+        RpcRequest rpcRequest = RpcRequest.builder().methodName("hello")
+                .parameters(new Object[]{"world"})
+                .interfaceName(DemoRpcService.class.getName())
+                .paramTypes(new Class<?>[]{String.class})
+                .group("test1")
+                .version("version1")
+                .methodId(7)
+                .build();
+        assertEquals("hello world", call(channel, 1, RpcConstants.REQUEST_TYPE, rpcRequest));
+        assertEquals("hello again", call(channel, 2, RpcConstants.INVOCATION_TYPE, new RpcInvocation(7, new Object[]{"again"})));
+        channel.finish();
+    }
+
+    @Test
+    void closeConnectionOnUnknownMethodId() {
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyRpcServerHandler());
+        // 方法 id 只在登记它的连接上有效
+        channel.writeInbound(RpcMessage.builder()
+                .requestId(1)
+                .messageType(RpcConstants.INVOCATION_TYPE)
+                .codec(SerializationTypeEnum.HESSIAN.getCode())
+                .compress(CompressTypeEnum.NONE.getCode())
+                .data(new RpcInvocation(7, new Object[]{"again"})).build());
+        assertNull(channel.readOutbound());
+        assertFalse(channel.isOpen());
+    }
+
+    @Test
+    void failResponseForUnknownMethod() {
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyRpcServerHandler());
+        channel.writeInbound(RpcMessage.builder()
+                .requestId(1)
+                .messageType(RpcConstants.REQUEST_TYPE)
+                .codec(SerializationTypeEnum.HESSIAN.getCode())
+                .compress(CompressTypeEnum.NONE.getCode())
+                .data(RpcRequest.builder().methodName("goodbye")
+                        .parameters(new Object[0])
+                        .interfaceName(DemoRpcService.class.getName())
+                        .paramTypes(new Class<?>[0])
+                        .group("test1")
+                        .version("version1")
+                        .build()).build());
+        RpcMessage response = channel.readOutbound();
+        assertEquals(1, response.getRequestId());
+        assertEquals(RpcResponseCodeEnum.FAIL.getCode(), ((RpcResponse<?>) response.getData()).getCode());
+        assertTrue(channel.isOpen());
+        channel.finish();
+    }
+
+    @Test
+    void writeResponseWhenFutureCompletes() throws InterruptedException {
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyRpcServerHandler());
+        channel.writeInbound(request(1, "world"));
+        channel.writeInbound(request(2, null));
+        RpcMessage first = awaitResponse(channel);
+        RpcMessage second = awaitResponse(channel);
+        RpcMessage success = first.getRequestId() == 1 ? first : second;
+        RpcMessage failure = first.getRequestId() == 1 ? second : first;
+        assertEquals(RpcResponseCodeEnum.SUCCESS.getCode(), ((RpcResponse<?>) success.getData()).getCode());
+        assertEquals("hello world", ((RpcResponse<?>) success.getData()).getData());
+        // 异步方法异常完成时返回失败的响应，连接仍然可用
+        assertEquals(2, failure.getRequestId());
+        assertEquals(RpcResponseCodeEnum.FAIL.getCode(), ((RpcResponse<?>) failure.getData()).getCode());
+        assertTrue(channel.isOpen());
+        channel.finish();
+    }
+
+    @Test
+    void busyResponseWhenBulkheadIsFull() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // 只有一个线程、不排队的服务，第一个请求占着线程时第二个请求直接被拒绝
+        SingletonFactory.getInstance(ZkServiceProviderImpl.class).addService(RpcServiceConfig.builder()
+                .group("bulkhead").version("version1").threads(1).service(new SlowRpcService(started, release)).build());
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyRpcServerHandler());
+        channel.writeInbound(slowRequest(1, "bulkhead"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        channel.writeInbound(slowRequest(2, "bulkhead"));
+        RpcMessage busy = channel.readOutbound();
+        assertEquals(2, busy.getRequestId());
+        assertEquals(RpcResponseCodeEnum.BUSY.getCode(), ((RpcResponse<?>) busy.getData()).getCode());
+        // 其他服务不受影响
+        assertEquals("hello world", call(channel, 3, RpcConstants.REQUEST_TYPE, RpcRequest.builder().methodName("hello")
+                .parameters(new Object[]{"world"})
+                .interfaceName(DemoRpcService.class.getName())
+                .paramTypes(new Class<?>[]{String.class})
+                .group("test1")
+                .version("version1")
+                .build()));
+        release.countDown();
+        RpcMessage slow = awaitResponse(channel);
+        assertEquals(1, slow.getRequestId());
+        assertEquals("slow", ((RpcResponse<?>) slow.getData()).getData());
+        channel.finish();
+    }
+
+    @Test
+    void overloadedResponseWhenConcurrencyLimitReached() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SingletonFactory.getInstance(ZkServiceProviderImpl.class).addService(RpcServiceConfig.builder()
+                .group("limiter").version("version1").service(new SlowRpcService(started, release)).build());
+        VegasConcurrencyLimiter concurrencyLimiter = new VegasConcurrencyLimiter(1, 1, 1);
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyRpcServerHandler(concurrencyLimiter));
+        channel.writeInbound(slowRequest(1, "limiter"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        // 只允许一个请求同时执行，第二个请求不排队，直接拒绝
+        channel.writeInbound(slowRequest(2, "limiter"));
+        RpcMessage overloaded = channel.readOutbound();
+        assertEquals(2, overloaded.getRequestId());
+        assertEquals(RpcResponseCodeEnum.OVERLOADED.getCode(), ((RpcResponse<?>) overloaded.getData()).getCode());
+        release.countDown();
+        assertEquals(1, awaitResponse(channel).getRequestId());
+        // 完成之后释放许可
+        assertEquals(0, concurrencyLimiter.getInFlight());
+        assertTrue(concurrencyLimiter.tryAcquire());
+        channel.finish();
+    }
+
+    @Test
+    void failAndReleasePermitWhenAsyncMethodNeverCompletes() throws InterruptedException {
+        SingletonFactory.getInstance(ZkServiceProviderImpl.class).addService(RpcServiceConfig.builder()
+                .group("timeout").version("version1").timeout(100).service(new NeverCompleteRpcService()).build());
+        VegasConcurrencyLimiter concurrencyLimiter = new VegasConcurrencyLimiter(1, 1, 1);
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyRpcServerHandler(concurrencyLimiter));
+        channel.writeInbound(request(1, "world", "timeout"));
+        RpcMessage response = awaitResponse(channel);
+        assertEquals(1, response.getRequestId());
+        assertEquals(RpcResponseCodeEnum.FAIL.getCode(), ((RpcResponse<?>) response.getData()).getCode());
+        assertEquals(0, concurrencyLimiter.getInFlight());
+        channel.finish();
+    }
+
+    @Test
+    void stopReadingWhenNotWritable() {
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyRpcServerHandler());
+        channel.unsafe().outboundBuffer().setUserDefinedWritability(1, false);
+        channel.runPendingTasks();
+        assertFalse(channel.config().isAutoRead());
+        channel.unsafe().outboundBuffer().setUserDefinedWritability(1, true);
+        channel.runPendingTasks();
+        assertTrue(channel.config().isAutoRead());
+        channel.finish();
+    }
+
+    @Test
+    void ignoreReaderIdleWhileNotReading() {
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyRpcServerHandler());
+        channel.unsafe().outboundBuffer().setUserDefinedWritability(1, false);
+        channel.runPendingTasks();
+        channel.pipeline().fireUserEventTriggered(IdleStateEvent.READER_IDLE_STATE_EVENT);
+        assertTrue(channel.isOpen());
+        channel.unsafe().outboundBuffer().setUserDefinedWritability(1, true);
+        channel.runPendingTasks();
+        channel.pipeline().fireUserEventTriggered(IdleStateEvent.READER_IDLE_STATE_EVENT);
+        assertFalse(channel.isOpen());
+    }
+
+    private static RpcMessage request(long requestId, String name) {
+        return request(requestId, name, "test1");
+    }
+
+    private static RpcMessage request(long requestId, String name, String group) {
+        return RpcMessage.builder()
+                .requestId(requestId)
+                .messageType(RpcConstants.REQUEST_TYPE)
+                .codec(SerializationTypeEnum.HESSIAN.getCode())
+                .compress(CompressTypeEnum.NONE.getCode())
+                .data(RpcRequest.builder().methodName("helloAsync")
+                        .parameters(new Object[]{name})
+                        .interfaceName(DemoRpcService.class.getName())
+                        .paramTypes(new Class<?>[]{String.class})
+                        .group(group)
+                        .version("version1")
+                        .build()).build();
+    }
+
+    private static RpcMessage slowRequest(long requestId, String group) {
+        return RpcMessage.builder()
+                .requestId(requestId)
+                .messageType(RpcConstants.REQUEST_TYPE)
+                .codec(SerializationTypeEnum.HESSIAN.getCode())
+                .compress(CompressTypeEnum.NONE.getCode())
+                .data(RpcRequest.builder().methodName("hello")
+                        .parameters(new Object[0])
+                        .interfaceName(DemoRpcService.class.getName())
+                        .paramTypes(new Class<?>[0])
+                        .group(group)
+                        .version("version1")
+                        .build()).build();
+    }
+
+    private static RpcMessage awaitResponse(EmbeddedChannel channel) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            // 其他线程里的 writeAndFlush 会作为任务提交到 EmbeddedChannel 的 event loop
+            channel.runPendingTasks();
+            RpcMessage response = channel.readOutbound();
+            if (response != null) {
+                return response;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("no response");
+    }
+
+    private static Object call(EmbeddedChannel channel, long requestId, byte messageType, Object data) throws InterruptedException {
+        channel.writeInbound(RpcMessage.builder()
+                .requestId(requestId)
+                .messageType(messageType)
+                .codec(SerializationTypeEnum.HESSIAN.getCode())
+                .compress(CompressTypeEnum.NONE.getCode())
+                .data(data).build());
+        // 服务方法由 Dispatcher 在别的线程里执行
+        RpcMessage response = awaitResponse(channel);
+        assertEquals(requestId, response.getRequestId());
+        return ((RpcResponse<?>) response.getData()).getData();
+    }
+
+    private static class SlowRpcService implements DemoRpcService {
+        private final CountDownLatch started;
+        private final CountDownLatch release;
+
+        SlowRpcService(CountDownLatch started, CountDownLatch release) {
+            this.started = started;
+            this.release = release;
+        }
+
+        @Override
+        public String hello() {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "slow";
+        }
+
+        @Override
+        public String hello(String name) {
+            return hello();
+        }
+
+        @Override
+        public CompletableFuture<String> helloAsync(String name) {
+            return CompletableFuture.completedFuture(hello());
+        }
+    }
+
+    private static class NeverCompleteRpcService implements DemoRpcService {
+        @Override
+        public String hello() {
+            return "hello";
+        }
+
+        @Override
+        public String hello(String name) {
+            return "hello " + name;
+        }
+
+        @Override
+        public CompletableFuture<String> helloAsync(String name) {
+            return new CompletableFuture<>();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package github.javaguide.utils.concurrent.threadpool;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DynamicThreadPoolExecutorTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final DynamicThreadPoolExecutor threadPool = new DynamicThreadPoolExecutor("test", 1, 1, 1, TimeUnit.MINUTES, 0,
+            Executors.defaultThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
+
+    @AfterEach
+    void shutdown() {
+        release.countDown();
+        threadPool.shutdownNow();
+    }
+
+    @Test
+    void resizeAtRuntime() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(2);
+        threadPool.execute(() -> block(started));
+        // 只有一个线程并且不排队
+        assertThrows(RejectedExecutionException.class, () -> threadPool.execute(() -> block(started)));
+        assertEquals(1, threadPool.getMetrics().getRejectedCount());
+
+        threadPool.resize(2, 2, 1);
+        threadPool.execute(() -> block(started));
+        threadPool.execute(() -> block(started));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        ThreadPoolMetrics metrics = threadPool.getMetrics();
+        assertEquals(2, metrics.getCorePoolSize());
+        assertEquals(2, metrics.getMaximumPoolSize());
+        assertEquals(2, metrics.getActiveCount());
+        assertEquals(1, metrics.getQueueSize());
+        assertEquals(1, metrics.getQueueCapacity());
+        assertThrows(RejectedExecutionException.class, () -> threadPool.execute(() -> block(started)));
+        assertEquals(2, threadPool.getMetrics().getRejectedCount());
+
+        // 缩小时先改核心线程数，不会出现 core > max
+        threadPool.resize(1, 1, 0);
+        assertEquals(1, threadPool.getCorePoolSize());
+        assertEquals(1, threadPool.getMaximumPoolSize());
+    }
+
+    @Test
+    void recordWaitAndRunTime() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(2);
+        threadPool.resize(1, 1, 1);
+        threadPool.execute(() -> {
+            sleep(20);
+            done.countDown();
+        });
+        // 在队列里等第一个任务执行完
+        threadPool.execute(done::countDown);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        ThreadPoolMetrics metrics = waitForCompleted(2);
+        assertTrue(metrics.getMaxRunMicros() >= 15000, metrics.toString());
+        assertTrue(metrics.getMaxWaitMicros() >= 15000, metrics.toString());
+        assertTrue(metrics.getAverageRunMicros() > 0, metrics.toString());
+    }
+
+    private ThreadPoolMetrics waitForCompleted(long tasks) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        ThreadPoolMetrics metrics = threadPool.getMetrics();
+        while (metrics.getCompletedTaskCount() < tasks && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            metrics = threadPool.getMetrics();
+        }
+        return metrics;
+    }
+
+    private void block(CountDownLatch started) {
+        started.countDown();
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package github.javaguide.utils.concurrent.threadpool;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResizableBlockingQueueTest {
+
+    @Test
+    void changeCapacity() throws Exception {
+        ResizableBlockingQueue<Integer> queue = new ResizableBlockingQueue<>(1);
+        assertTrue(queue.offer(1));
+        assertFalse(queue.offer(2));
+        assertEquals(0, queue.remainingCapacity());
+        // 等待放入的线程在容量变大后继续
+        CompletableFuture<Void> put = CompletableFuture.runAsync(() -> {
+            try {
+                queue.put(2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Thread.sleep(50);
+        assertFalse(put.isDone());
+        queue.setCapacity(2);
+        put.get(5, TimeUnit.SECONDS);
+        assertEquals(2, queue.size());
+        // 容量变小时已经在队列里的元素不受影响
+        queue.setCapacity(1);
+        assertFalse(queue.offer(3));
+        assertEquals(1, queue.poll().intValue());
+        assertEquals(2, queue.poll().intValue());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    void handOffToWaitingConsumerWhenCapacityIsZero() throws Exception {
+        ResizableBlockingQueue<Integer> queue = new ResizableBlockingQueue<>(0);
+        assertFalse(queue.offer(1));
+        CompletableFuture<Integer> take = CompletableFuture.supplyAsync(() -> {
+            try {
+                return queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        });
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!queue.offer(1) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, take.get(5, TimeUnit.SECONDS).intValue());
+        // 没有等待的消费者时又不能放入了
+        assertFalse(queue.offer(2));
+    }
+}